@@ -0,0 +1,77 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.tools.javac.file.ArchiveFileSystemCache;
+import openjdk.tools.javac.file.JavacFileManager;
+
+public class ArchiveFileSystemCacheTest extends TestCase {
+
+    public ArchiveFileSystemCacheTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    public void testArchiveSharedBetweenFileManagers() throws IOException {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+
+        Path work = Files.createTempDirectory("archive-cache");
+        Path classes = Files.createDirectories(work.resolve("classes"));
+        assertTrue(tool.getTask(null, null, null,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8", "-d", classes.toString()), null,
+                Arrays.asList(new MyFileObject("A", "package lib; public class A {}"))).call());
+        Path jar = work.resolve("lib.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("lib/"));
+            out.putNextEntry(new JarEntry("lib/A.class"));
+            out.write(Files.readAllBytes(classes.resolve("lib/A.class")));
+        }
+
+        ArchiveFileSystemCache cache = ArchiveFileSystemCache.instance();
+        cache.clear();
+        assertEquals(0, cache.size());
+        int open = -1;
+        List<String> options = Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-classpath", jar.toString(),
+                "-d", classes.toString());
+        for (int i = 0; i < 2; i++) {
+            JavacFileManager fm = (JavacFileManager) tool.getStandardFileManager(null, null, null);
+            fm.setSharedArchiveCache(true);
+            assertTrue(tool.getTask(null, fm, null, options, null,
+                    Arrays.asList(new MyFileObject("T", "class T { lib.A a; }"))).call());
+            fm.close();
+            // the file manager is closed, the archives stay open for reuse
+            assertTrue(cache.size() > 0);
+            if (open != -1) {
+                assertEquals(open, cache.size());
+            }
+            open = cache.size();
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,145 @@
+package global;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import com.itsaky.androidide.zipfs2.ZipFileSystemProvider;
+import junit.framework.TestCase;
+import openjdk.tools.javac.file.CachingJarPackageProvider;
+
+public class CachingJarPackageProviderTest extends TestCase {
+
+    public CachingJarPackageProviderTest(String name) {
+        super(name);
+    }
+
+    private static void writeJar(Path jar, String... names) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+            }
+        }
+    }
+
+    private static FileSystem open(Path jar) throws IOException {
+        return new ZipFileSystemProvider().newFileSystem(jar, new HashMap<String, Object>());
+    }
+
+    private static Set<String> dirs(Map<? extends Object, Path> map) {
+        Set<String> result = new TreeSet<>();
+        for (Path p : map.values()) {
+            result.add(p.toString());
+        }
+        return result;
+    }
+
+    public void testLookupAndInvalidation() throws IOException {
+        CachingJarPackageProvider provider = CachingJarPackageProvider.instance();
+        provider.clear();
+        Path jar = Files.createTempDirectory("package-provider").resolve("lib.jar");
+        writeJar(jar, "a/b/C.class", "d/E.class");
+        try (FileSystem fs = open(jar)) {
+            Map<? extends Object, Path> map = provider.getPackages(jar, fs);
+            assertTrue(dirs(map).toString(), dirs(map).contains("/a/b"));
+            // a shared file system gets the same map
+            assertSame(map, provider.getPackages(jar, fs));
+
+            // another context opens the archive again, the unchanged archive
+            // is not walked again, the packages refer to the new file system
+            FileTime mtime = Files.getLastModifiedTime(jar);
+            long size = Files.size(jar);
+            writeJar(jar, "x/y/C.class", "d/E.class");
+            assertEquals(size, Files.size(jar));
+            Files.setLastModifiedTime(jar, mtime);
+            try (FileSystem other = open(jar)) {
+                Map<? extends Object, Path> otherMap = provider.getPackages(jar, other);
+                assertNotSame(map, otherMap);
+                assertEquals(dirs(map), dirs(otherMap));
+                for (Path p : otherMap.values()) {
+                    assertSame(other, p.getFileSystem());
+                }
+            }
+
+            // a changed archive is walked again
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(mtime.toMillis() + 10000));
+            try (FileSystem changed = open(jar)) {
+                Set<String> dirs = dirs(provider.getPackages(jar, changed));
+                assertTrue(dirs.toString(), dirs.contains("/x/y"));
+                assertFalse(dirs.toString(), dirs.contains("/a/b"));
+            }
+        }
+        provider.clear();
+    }
+
+    public void testMultiReleaseSettings() throws IOException {
+        CachingJarPackageProvider provider = CachingJarPackageProvider.instance();
+        provider.clear();
+        Path work = Files.createTempDirectory("package-provider");
+        Path index = work.resolve("index");
+        provider.setIndexDirectory(index);
+        try {
+            Path jar = work.resolve("mr.jar");
+            writeJar(jar, "META-INF/MANIFEST.MF", "a/b/C.class", "META-INF/versions/9/a/b/C.class");
+            try (FileSystem fs = open(jar)) {
+                assertTrue(dirs(provider.getPackages(jar, fs, "8")).contains("/a/b"));
+            }
+
+            // the packages a multi-release archive exposes depend on the release,
+            // an archive with the same size and time but other packages is walked
+            // again for another release only
+            FileTime mtime = Files.getLastModifiedTime(jar);
+            writeJar(jar, "META-INF/MANIFEST.MF", "x/y/C.class", "META-INF/versions/9/x/y/C.class");
+            Files.setLastModifiedTime(jar, mtime);
+            provider.clear();
+            try (FileSystem fs = open(jar)) {
+                Set<String> dirs = dirs(provider.getPackages(jar, fs, "9"));
+                assertTrue(dirs.toString(), dirs.contains("/x/y"));
+                assertFalse(dirs.toString(), dirs.contains("/a/b"));
+            }
+            try (FileSystem fs = open(jar)) {
+                assertTrue(dirs(provider.getPackages(jar, fs, "8")).contains("/a/b"));
+                assertTrue(dirs(provider.getPackages(jar, fs, "9")).contains("/x/y"));
+                assertTrue(dirs(provider.getPackages(jar, fs)).contains("/x/y"));
+            }
+            try (Stream<Path> files = Files.list(index)) {
+                assertEquals(3, files.count());
+            }
+        } finally {
+            provider.setIndexDirectory(null);
+            provider.clear();
+        }
+    }
+
+    public void testFileSystemNotRetained() throws IOException, InterruptedException {
+        CachingJarPackageProvider provider = CachingJarPackageProvider.instance();
+        provider.clear();
+        Path jar = Files.createTempDirectory("package-provider").resolve("lib.jar");
+        writeJar(jar, "a/b/C.class");
+        FileSystem fs = open(jar);
+        assertFalse(provider.getPackages(jar, fs).isEmpty());
+        fs.close();
+        WeakReference<FileSystem> ref = new WeakReference<>(fs);
+        fs = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+
+        // the package directories are still known
+        try (FileSystem other = open(jar)) {
+            assertTrue(dirs(provider.getPackages(jar, other)).contains("/a/b"));
+        }
+        provider.clear();
+    }
+}
@@ -0,0 +1,198 @@
+package global;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import jdkx.lang.model.element.Element;
+import jdkx.lang.model.element.TypeElement;
+import jdkx.lang.model.element.VariableElement;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.StandardJavaFileManager;
+import jdkx.tools.ToolProvider;
+import com.itsaky.androidide.zipfs2.ZipFileSystemProvider;
+import junit.framework.TestCase;
+import openjdk.source.util.JavacTask;
+import openjdk.tools.javac.file.FSInfo;
+import openjdk.tools.javac.file.JavacFileManager;
+import openjdk.tools.javac.file.PathFileObject;
+import openjdk.tools.javac.util.Context;
+
+public class ClassFileBytesTest extends TestCase {
+
+    public ClassFileBytesTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String LIB =
+            "package lib;\n" +
+            "public class A<T extends Comparable<T>> {\n" +
+            "    public static final int C = 42;\n" +
+            "    public static final String S = \"text\";\n" +
+            "    @Deprecated public T value;\n" +
+            "    public <E extends Exception> T get(java.util.List<? super T> l) throws E { return null; }\n" +
+            "    public static class Inner { public int x; }\n" +
+            "}\n";
+
+    private static final String B =
+            "package lib;\n" +
+            "public class B extends A<String> implements Runnable {\n" +
+            "    public void run() { }\n" +
+            "    public int m(long... l) { return 0; }\n" +
+            "}\n";
+
+    private static final String USER =
+            "class T { int x = lib.A.C + new lib.B().m(1L); String s = lib.A.S; lib.A.Inner i; }";
+
+    private Path work;
+    private Path jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        work = Files.createTempDirectory("class-file-bytes");
+        Path classes = Files.createDirectories(work.resolve("classes"));
+        assertTrue(tool.getTask(null, null, null,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8", "-d", classes.toString()), null,
+                Arrays.asList(new MyFileObject("A", LIB), new MyFileObject("B", B))).call());
+        jar = work.resolve("lib.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : new String[] {"lib/A.class", "lib/A$Inner.class", "lib/B.class"}) {
+                byte[] data = Files.readAllBytes(classes.resolve(name));
+                ZipEntry e = new ZipEntry(name);
+                if (name.startsWith("lib/B")) {
+                    e.setMethod(ZipEntry.STORED);
+                    e.setSize(data.length);
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    e.setCrc(crc.getValue());
+                }
+                out.putNextEntry(e);
+                out.write(data);
+            }
+        }
+    }
+
+    private static byte[] readStream(JavaFileObject fo) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = fo.openInputStream()) {
+            byte[] b = new byte[1024];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                out.write(b, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Reads the file object the way ClassReader does, into a reused buffer
+    // that may be larger than the file.
+    private static byte[] readBytes(PathFileObject fo, byte[][] buf) throws IOException {
+        int length = fo.readAllBytes(size -> buf[0] = buf[0].length >= size ? buf[0] : new byte[size * 2]);
+        return length < 0 ? null : Arrays.copyOf(buf[0], length);
+    }
+
+    public void testSameBytesAsStream() throws IOException {
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        JavacFileManager fm = (JavacFileManager) tool.getStandardFileManager(null, null, null);
+        byte[][] buf = {new byte[16]};
+        try (FileSystem zipfs2 = new ZipFileSystemProvider().newFileSystem(jar, new HashMap<String, Object>());
+             FileSystem jdkfs = FileSystems.newFileSystem(jar, (ClassLoader) null)) {
+            for (String name : new String[] {"/lib/A.class", "/lib/A$Inner.class", "/lib/B.class"}) {
+                PathFileObject fo = PathFileObject.forJarPath(fm, zipfs2.getPath(name), jar);
+                byte[] expected = readStream(fo);
+                assertTrue(expected.length > 0);
+                assertTrue(name, Arrays.equals(expected, readBytes(fo, buf)));
+
+                // other file systems than the default one fall back to the stream
+                PathFileObject other = PathFileObject.forJarPath(fm, jdkfs.getPath(name), jar);
+                assertTrue(name, Arrays.equals(expected, readStream(other)));
+                assertEquals(-1, other.readAllBytes(size -> {
+                    throw new AssertionError();
+                }));
+
+                PathFileObject plain = (PathFileObject) fm.getJavaFileObjects(
+                        work.resolve("classes").resolve(name.substring(1))).iterator().next();
+                assertTrue(name, Arrays.equals(expected, readBytes(plain, buf)));
+            }
+        }
+        fm.close();
+    }
+
+    private List<String> describe(StandardJavaFileManager fm) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        JavacTask task = (JavacTask) tool.getTask(null, fm, diags,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8", "-classpath", jar.toString()), null,
+                Arrays.asList(new MyFileObject("T", USER)));
+        try {
+            task.analyze();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        List<String> result = new ArrayList<>();
+        result.add(diags.getDiagnostics().toString());
+        for (String name : new String[] {"lib.A", "lib.A.Inner", "lib.B"}) {
+            TypeElement type = task.getElements().getTypeElement(name);
+            result.add(type + " " + type.getTypeParameters() + " " + type.getSuperclass() + " " + type.getInterfaces());
+            for (Element e : type.getEnclosedElements()) {
+                String s = e.getKind() + " " + e + " " + e.getModifiers() + " " + e.asType() + " " + e.getAnnotationMirrors();
+                if (e instanceof VariableElement) {
+                    s += " " + ((VariableElement) e).getConstantValue();
+                }
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    public void testClassReaderReadsSameClasses() throws IOException {
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager plain = tool.getStandardFileManager(null, null, null);
+        List<String> expected = describe(plain);
+        plain.close();
+        assertTrue(expected.toString(), expected.contains("FIELD C [public, static, final] int  42"));
+
+        // a file manager that opens archives with zipfs2, whose class files
+        // are read straight into the ClassReader buffer
+        Context context = new Context();
+        new FSInfo(context) {
+            @Override
+            public synchronized FileSystemProvider getJarFSProvider() {
+                return new ZipFileSystemProvider();
+            }
+        };
+        JavacFileManager zipfs2 = new JavacFileManager(context, true, null);
+        assertEquals(expected, describe(zipfs2));
+        zipfs2.close();
+    }
+}
@@ -0,0 +1,260 @@
+package global;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import jdkx.lang.model.element.Element;
+import jdkx.lang.model.element.TypeElement;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTool;
+import openjdk.tools.javac.jvm.ClassFilePrefetcher;
+import openjdk.tools.javac.util.Context;
+
+public class ClassFilePrefetchTest extends TestCase {
+
+    public ClassFilePrefetchTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    // Records the class files read ahead and taken by ClassReader, and fails
+    // to read the class files whose names contain fail.
+    static class RecordingPrefetcher extends ClassFilePrefetcher {
+        final String fail;
+        final Set<JavaFileObject> read = Collections.synchronizedSet(new HashSet<>());
+        final Set<JavaFileObject> taken = new HashSet<>();
+
+        RecordingPrefetcher(Context context, String fail) {
+            super(context);
+            this.fail = fail;
+        }
+
+        static void preRegister(Context context, String fail, RecordingPrefetcher[] result) {
+            context.put(classFilePrefetcherKey, (Context.Factory<ClassFilePrefetcher>) c ->
+                    result[0] = new RecordingPrefetcher(c, fail));
+        }
+
+        @Override
+        protected byte[] read(JavaFileObject file) throws IOException {
+            if (fail != null && file.getName().contains(fail)) {
+                throw new IOException(file.getName());
+            }
+            byte[] bytes = super.read(file);
+            read.add(file);
+            return bytes;
+        }
+
+        @Override
+        public byte[] take(JavaFileObject file) {
+            byte[] bytes = super.take(file);
+            if (bytes != null) {
+                taken.add(file);
+            }
+            return bytes;
+        }
+    }
+
+    private static final String[] LIB = {
+        "package lib; public interface I { int C = 1; void i(); }",
+        "package lib; public interface J<T> extends I { T j(); }",
+        "package lib; public abstract class A<T> implements J<T> { public static final String S = \"s\"; protected T t; }",
+        "package lib; public abstract class B extends A<String> { public String j() { return t; } @Deprecated public void b() { } }",
+        "package lib; public class C extends B implements Runnable { public void i() { } public void run() { } }",
+        "package lib; public class D { public static C c() { return new C(); } }",
+        "package lib; public class E extends F { }",
+        "package lib; public class F implements java.io.Serializable { public int f; }",
+        "package lib; public class G extends H { }",
+        "package lib; public class H { public int h; }",
+    };
+
+    private static final String WIDE_USER = "import wide.Wide; class T { Wide w; }";
+
+    private static final String USER =
+            "import lib.D;\n" +
+            "class T extends lib.C {\n" +
+            "    String s = j() + S + C;\n" +
+            "    lib.E e;\n" +
+            "    lib.G g;\n" +
+            "    void m() { b(); D.c().run(); undefined(); }\n" +
+            "    int f() { return e.f + e.g + g.h; }\n" +
+            "}\n";
+
+    private Path jar;
+
+    @Override
+    protected void setUp() throws Exception {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        Path work = Files.createTempDirectory("class-file-prefetch");
+        Path classes = Files.createDirectories(work.resolve("classes"));
+        List<JavaFileObject> files = new ArrayList<>();
+        for (String source : LIB) {
+            String name = source.substring(source.indexOf(" class ") != -1 ? source.indexOf(" class ") + 7
+                    : source.indexOf(" interface ") + 11).split("[ <]")[0];
+            files.add(new MyFileObject(name, source));
+        }
+        assertTrue(tool.getTask(null, null, null,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8", "-d", classes.toString()), null,
+                files).call());
+        jar = work.resolve("lib.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : new String[] {"I", "J", "A", "B", "C", "D", "E", "F", "G", "H"}) {
+                out.putNextEntry(new ZipEntry("lib/" + name + ".class"));
+                out.write(Files.readAllBytes(classes.resolve("lib/" + name + ".class")));
+            }
+        }
+    }
+
+    private List<String> compile(String source, List<String> extraOptions, RecordingPrefetcher[] prefetcher,
+                                 String fail, String... describe) throws IOException {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-Xlint:deprecation", "-classpath", jar.toString()));
+        options.addAll(extraOptions);
+        Context context = new Context();
+        if (prefetcher != null) {
+            RecordingPrefetcher.preRegister(context, fail, prefetcher);
+        }
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        JavacTaskImpl task = (JavacTaskImpl) JavacTool.create().getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("T", source)), context);
+        task.analyze();
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getLineNumber() + " " + d.getCode() + " " + d.getMessage(null));
+        }
+        for (String name : describe) {
+            TypeElement type = task.getElements().getTypeElement(name);
+            result.add(type + " " + type.getSuperclass() + " " + type.getInterfaces());
+            for (Element e : type.getEnclosedElements()) {
+                result.add(e.getKind() + " " + e + " " + e.getModifiers() + " " + e.asType());
+            }
+        }
+        task.cleanup();
+        return result;
+    }
+
+    public void testSameResultsAsWithoutPrefetch() throws IOException {
+        String[] describe = {"lib.I", "lib.J", "lib.A", "lib.B", "lib.C", "lib.D", "lib.E", "lib.F", "lib.G", "lib.H"};
+        List<String> expected = compile(USER, Collections.<String>emptyList(), null, null, describe);
+        assertTrue(expected.toString(), expected.get(0).contains("compiler.warn.has.been.deprecated"));
+        assertTrue(expected.toString(), expected.get(1).contains("compiler.err.cant.resolve"));
+        assertTrue(expected.toString(), expected.get(2).contains("compiler.err.cant.resolve"));
+
+        RecordingPrefetcher[] prefetcher = new RecordingPrefetcher[1];
+        List<String> prefetch = Arrays.asList("-XDprefetchClassFiles=2");
+        assertEquals(expected, compile(USER, prefetch, prefetcher, null, describe));
+        assertTrue(prefetcher[0].taken.toString(), prefetcher[0].taken.toString().contains("lib/F.class"));
+        assertTrue(prefetcher[0].read.containsAll(prefetcher[0].taken));
+        // the contents not taken are dropped when the compiler is closed
+        for (JavaFileObject file : prefetcher[0].read) {
+            assertNull(file.getName(), prefetcher[0].take(file));
+        }
+
+        // the class files that fail to be read ahead are read as usual
+        assertEquals(expected, compile(USER, prefetch, prefetcher, "lib/F.class", describe));
+        assertTrue(prefetcher[0].taken.toString(), prefetcher[0].taken.toString().contains("lib/H.class"));
+        for (JavaFileObject file : prefetcher[0].taken) {
+            assertFalse(file.getName(), file.getName().contains("lib/F.class"));
+        }
+    }
+
+    // A minimal class file of a public interface with the given superinterfaces.
+    private static byte[] interfaceFile(String name, List<String> interfaces) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(5 + interfaces.size() * 2);
+        out.writeByte(7);
+        out.writeShort(2);
+        out.writeByte(1);
+        out.writeUTF(name);
+        out.writeByte(7);
+        out.writeShort(4);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        for (int i = 0; i < interfaces.size(); i++) {
+            out.writeByte(7);
+            out.writeShort(6 + i * 2);
+            out.writeByte(1);
+            out.writeUTF(interfaces.get(i));
+        }
+        out.writeShort(0x0601);     // public interface abstract
+        out.writeShort(1);
+        out.writeShort(3);
+        out.writeShort(interfaces.size());
+        for (int i = 0; i < interfaces.size(); i++) {
+            out.writeShort(5 + i * 2);
+        }
+        out.writeShort(0);          // fields
+        out.writeShort(0);          // methods
+        out.writeShort(0);          // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public void testClassLimit() throws IOException {
+        // more classes than read ahead in one prefetch, in a shallow hierarchy
+        int width = 100;
+        List<String> names = new ArrayList<>();
+        Path wide = Files.createTempDirectory("class-file-prefetch").resolve("wide.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(wide))) {
+            for (int i = 0; i < width; i++) {
+                List<String> leaves = new ArrayList<>();
+                for (int j = 0; j < width; j++) {
+                    String name = "wide/L" + i + "_" + j;
+                    leaves.add(name);
+                    out.putNextEntry(new ZipEntry(name + ".class"));
+                    out.write(interfaceFile(name, Collections.<String>emptyList()));
+                }
+                String name = "wide/M" + i;
+                names.add(name);
+                out.putNextEntry(new ZipEntry(name + ".class"));
+                out.write(interfaceFile(name, leaves));
+            }
+            out.putNextEntry(new ZipEntry("wide/Wide.class"));
+            out.write(interfaceFile("wide/Wide", names));
+        }
+        assertTrue(width * width > ClassFilePrefetcher.MAX_CLASSES);
+        jar = wide;
+
+        String[] describe = {"wide.Wide", "wide.M0", "wide.L0_0", "wide.L99_99"};
+        List<String> expected = compile(WIDE_USER, Collections.<String>emptyList(), null, null, describe);
+        RecordingPrefetcher[] prefetcher = new RecordingPrefetcher[1];
+        assertEquals(expected, compile(WIDE_USER, Arrays.asList("-XDprefetchClassFiles=2"), prefetcher, null, describe));
+        int read = prefetcher[0].read.size();
+        assertTrue(String.valueOf(read), read > width && read <= ClassFilePrefetcher.MAX_CLASSES);
+        assertFalse(prefetcher[0].taken.isEmpty());
+    }
+}
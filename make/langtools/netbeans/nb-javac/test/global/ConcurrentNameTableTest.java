@@ -0,0 +1,112 @@
+package global;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import junit.framework.TestCase;
+import openjdk.tools.javac.util.ConcurrentNameTable;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Convert;
+import openjdk.tools.javac.util.Name;
+import openjdk.tools.javac.util.Names;
+import openjdk.tools.javac.util.Options;
+
+public class ConcurrentNameTableTest extends TestCase {
+
+    public ConcurrentNameTableTest(String name) {
+        super(name);
+    }
+
+    private static Names names() {
+        Context context = new Context();
+        Options.instance(context).put("useConcurrentTable", "true");
+        Names names = Names.instance(context);
+        assertTrue(names.table instanceof ConcurrentNameTable);
+        return names;
+    }
+
+    private static List<String> strings() {
+        List<String> strings = new ArrayList<>();
+        strings.add("");
+        strings.add("\u0000");
+        strings.add("caf\u00e9");
+        strings.add("\u65e5\u672c");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            strings.add("name" + i);
+            strings.add("java.lang.Name" + (i % 300));
+            sb.append((char) ('a' + i % 26));
+        }
+        // longer than a chunk
+        strings.add(sb.toString());
+        strings.add(sb.toString().substring(1000));
+        return strings;
+    }
+
+    public void testNames() {
+        Names names = names();
+        for (String s : strings()) {
+            Name n = names.fromString(s);
+            assertEquals(s, n.toString());
+            assertSame(n, names.fromString(s));
+            assertSame(n, names.fromUtf(Convert.string2utf(s)));
+            byte[] padded = ("xx" + s).getBytes(StandardCharsets.UTF_8);
+            if (s.indexOf('\u0000') < 0) {
+                assertSame(n, names.table.fromUtf(padded, 2, padded.length - 2));
+            }
+            char[] cs = ("[" + s + "]").toCharArray();
+            assertSame(n, names.fromChars(cs, 1, s.length()));
+        }
+        assertSame(names._class, names.fromString("class"));
+    }
+
+    public void testConcurrentInterning() throws Exception {
+        Names names = names();
+        List<String> strings = strings();
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        Name[][] results = new Name[threads][];
+        Throwable[] failure = new Throwable[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    Name[] result = new Name[strings.size()];
+                    barrier.await();
+                    for (int i = 0; i < strings.size(); i++) {
+                        // each thread interns in a different order
+                        int k = (i * (id * 2 + 1) + id * 7) % strings.size();
+                        result[k] = names.fromString(strings.get(k));
+                    }
+                    results[id] = result;
+                } catch (Throwable ex) {
+                    failure[0] = ex;
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+        Set<String> seen = new HashSet<>();
+        Set<Integer> indices = new HashSet<>();
+        for (int i = 0; i < strings.size(); i++) {
+            Name n = results[0][i];
+            assertEquals(strings.get(i), n.toString());
+            for (int t = 1; t < threads; t++) {
+                assertSame(n, results[t][i]);
+            }
+            if (seen.add(strings.get(i))) {
+                assertTrue(indices.add(n.getIndex()));
+            }
+        }
+    }
+}
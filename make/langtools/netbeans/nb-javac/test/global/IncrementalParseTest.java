@@ -0,0 +1,106 @@
+package global;
+
+import java.net.URI;
+import java.util.Arrays;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.source.tree.CompilationUnitTree;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.TreeInfo;
+import openjdk.tools.javac.tree.TreeScanner;
+
+public class IncrementalParseTest extends TestCase {
+
+    public IncrementalParseTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "public class Test {\n" +
+            "    void a() {\n" +
+            "        int i = 0;\n" +
+            "    }\n" +
+            "    /** Doc of b. */\n" +
+            "    void b(int x, int y) {\n" +
+            "        switch (x) { case 1: break; }\n" +
+            "    }\n" +
+            "    int c = 1, d = 2;\n" +
+            "}\n";
+
+    private static JavacTaskImpl task(MyFileObject file, DiagnosticCollector<JavaFileObject> diags) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+        return (JavacTaskImpl) tool.getTask(null, null, diags,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8"), null, Arrays.asList(file));
+    }
+
+    private static String dump(final JCCompilationUnit unit) {
+        final StringBuilder sb = new StringBuilder();
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree != null) {
+                    sb.append(tree.getTag()).append(' ').append(tree.pos).append(' ')
+                      .append(TreeInfo.getEndPos(tree, unit.endPositions)).append(' ')
+                      .append(unit.docComments.getCommentText(tree)).append('\n');
+                    tree.accept(this);
+                }
+            }
+        }.scan(unit);
+        return sb.append(unit.lineMap.getLineNumber(CODE.length() - 1)).toString();
+    }
+
+    private void assertReparse(String code, int offset, int removed, String inserted, boolean inPlace) throws Exception {
+        MyFileObject file = new MyFileObject("Test", code);
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        JavacTaskImpl task = task(file, diags);
+        CompilationUnitTree unit = task.parse().iterator().next();
+        file.text = code.substring(0, offset) + inserted + code.substring(offset + removed);
+        CompilationUnitTree reparsed = task.reparse(unit, file.text, offset, removed, inserted.length());
+        assertEquals(inPlace, reparsed == unit);
+
+        DiagnosticCollector<JavaFileObject> expectedDiags = new DiagnosticCollector<>();
+        JCCompilationUnit expected = (JCCompilationUnit) task(new MyFileObject("Test", file.text), expectedDiags)
+                .parse().iterator().next();
+        assertEquals(dump(expected), dump((JCCompilationUnit) reparsed));
+        assertEquals(expectedDiags.getDiagnostics().toString(),
+                diags.getDiagnostics().toString());
+    }
+
+    public void testEditInMethodBody() throws Exception {
+        int offset = CODE.indexOf("int i = 0;");
+        assertReparse(CODE, offset, 0, "foo(1, 2);\n        ", true);
+        assertReparse(CODE, offset, "int i = 0;".length(), "", true);
+        assertReparse(CODE, CODE.indexOf("break;"), 0, "x = 1; ", true);
+    }
+
+    public void testSyntaxErrorInMethodBody() throws Exception {
+        assertReparse(CODE, CODE.indexOf("int i = 0;"), 0, "int = ;", true);
+    }
+
+    public void testEditOutsideMethodBody() throws Exception {
+        assertReparse(CODE, CODE.indexOf("int c"), 0, "long e;\n    ", false);
+        // an inserted brace ends the body early
+        assertReparse(CODE, CODE.indexOf("int i = 0;"), 0, "}", false);
+    }
+}
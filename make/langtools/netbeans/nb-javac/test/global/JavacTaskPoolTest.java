@@ -0,0 +1,86 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.api.JavacTaskPool.Statistics;
+
+public class JavacTaskPoolTest extends TestCase {
+
+    public JavacTaskPoolTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static void run(JavacTaskPool pool, String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8"));
+        options.addAll(Arrays.asList(extraOptions));
+        pool.getTask(null, null, null, options, null,
+                Arrays.asList(new MyFileObject("T", "class T { String s; }")),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    return null;
+                });
+    }
+
+    public void testStatistics() {
+        JavacTaskPool pool = new JavacTaskPool(2, 1);
+        run(pool);
+        run(pool);
+        run(pool, "-g");
+        run(pool, "-g:none");
+        Statistics stats = pool.getStatistics();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(0, stats.getPolluted());
+        // the context without debug options was the least recently used one
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getSize());
+        assertEquals(2, stats.getOptionsCount());
+        run(pool, "-g:none");
+        stats = pool.getStatistics();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getSize());
+    }
+
+    public void testPerOptionsLimit() throws Exception {
+        JavacTaskPool pool = new JavacTaskPool(10, 1);
+        // a nested task can't reuse the context of the outer one, so both are
+        // returned with the same options; only one of them is kept
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = Arrays.asList("-bootclasspath", bootPath, "-source", "1.8");
+        pool.getTask(null, null, null, options, null,
+                Arrays.asList(new MyFileObject("T", "class T {}")),
+                task -> {
+                    run(pool);
+                    return null;
+                });
+        Statistics stats = pool.getStatistics();
+        assertEquals(0, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(1, stats.getSize());
+    }
+}
@@ -0,0 +1,116 @@
+package global;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.code.Flags;
+import openjdk.tools.javac.tree.DCTree.DCDocComment;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCClassDecl;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.JCTree.JCMethodDecl;
+
+public class LazyCommentsTest extends TestCase {
+
+    public LazyCommentsTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "/** Test class.\n" +
+            " *  Second {@code line}. */\n" +
+            "public class Test {\n" +
+            "    /** @deprecated */\n" +
+            "    public void a() {}\n" +
+            "    /** \\u0040deprecated use a */\n" +
+            "    public void b() {}\n" +
+            "    /** @deprecatedNot */\n" +
+            "    public void c() {}\n" +
+            "    /* @deprecated */\n" +
+            "    public void d() {}\n" +
+            "    /**\n" +
+            "     * Text with a \\u0074ab.\n" +
+            "     * @deprecated*/\n" +
+            "    public void e() {}\n" +
+            "}\n";
+
+    private static JavacTaskImpl task(String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8"));
+        options.addAll(Arrays.asList(extraOptions));
+        return (JavacTaskImpl) tool.getTask(null, null, null, options, null,
+                Arrays.asList(new MyFileObject("Test", CODE)));
+    }
+
+    private static String dump(JavacTaskImpl task) throws Exception {
+        JCCompilationUnit unit = (JCCompilationUnit) task.parse().iterator().next();
+        task.analyze();
+        StringBuilder sb = new StringBuilder();
+        JCClassDecl clazz = (JCClassDecl) unit.defs.last();
+        List<JCTree> trees = new ArrayList<>();
+        trees.add(clazz);
+        trees.addAll(clazz.defs);
+        for (JCTree tree : trees) {
+            if (tree instanceof JCMethodDecl) {
+                JCMethodDecl m = (JCMethodDecl) tree;
+                sb.append(m.name).append(' ').append((m.sym.flags() & Flags.DEPRECATED) != 0);
+            }
+            String text = unit.docComments.getCommentText(tree);
+            sb.append(" [").append(text).append("]");
+            if (text != null) {
+                sb.append(' ').append(unit.docComments.getComment(tree).getSourcePos(0))
+                  .append(' ').append(unit.docComments.getComment(tree).getSourcePos(text.length() - 1))
+                  .append(' ').append(unit.docComments.getCommentTree(tree));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void testLazyComments() throws Exception {
+        String expected = dump(task());
+        assertTrue(expected, expected.contains("a true"));
+        assertTrue(expected, expected.contains("b true"));
+        assertTrue(expected, expected.contains("c false"));
+        assertTrue(expected, expected.contains("e true"));
+        assertEquals(expected, dump(task("-XDlazyComments")));
+        assertEquals(expected, dump(task("-XDlazyComments", "-XDdocCommentTreeCacheSize=1")));
+    }
+
+    public void testTreeCache() throws Exception {
+        JavacTaskImpl task = task("-XDdocCommentTreeCacheSize=1");
+        JCCompilationUnit unit = (JCCompilationUnit) task.parse().iterator().next();
+        JCClassDecl clazz = (JCClassDecl) unit.defs.last();
+        JCTree a = clazz.defs.head;
+        DCDocComment classDoc = unit.docComments.getCommentTree(clazz);
+        assertSame(classDoc, unit.docComments.getCommentTree(clazz));
+        DCDocComment aDoc = unit.docComments.getCommentTree(a);
+        assertSame(aDoc, unit.docComments.getCommentTree(a));
+        // the class comment was evicted and is parsed again
+        DCDocComment reparsed = unit.docComments.getCommentTree(clazz);
+        assertNotSame(classDoc, reparsed);
+        assertEquals(classDoc.toString(), reparsed.toString());
+    }
+}
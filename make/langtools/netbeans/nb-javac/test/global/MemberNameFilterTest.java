@@ -0,0 +1,151 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.code.Flags;
+import openjdk.tools.javac.code.Scope.NameFilter;
+import openjdk.tools.javac.code.Scope.WriteableScope;
+import openjdk.tools.javac.code.Symbol.ClassSymbol;
+import openjdk.tools.javac.code.Symbol.PackageSymbol;
+import openjdk.tools.javac.code.Symbol.VarSymbol;
+import openjdk.tools.javac.code.Symtab;
+import openjdk.tools.javac.code.Type;
+import openjdk.tools.javac.code.Types;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Name;
+import openjdk.tools.javac.util.Names;
+
+public class MemberNameFilterTest extends TestCase {
+
+    public MemberNameFilterTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import static java.lang.Math.*;\n" +
+            "public class Test {\n" +
+            "    interface I { int X = 1; class Inner { } void i(); }\n" +
+            "    interface J { int X = 2; class Inner { } }\n" +
+            "    static abstract class A implements I { int a; void m(int i) { } static class Nested { } }\n" +
+            "    static abstract class B extends A implements J { void m(String s) { } }\n" +
+            "    int outer;\n" +
+            "    void outerMethod() { }\n" +
+            "    abstract class C extends B {\n" +
+            "        void test(B b) {\n" +
+            "            int v = a + outer + abs(-1) + b.a + X;\n" +
+            "            m(1); m(\"\"); i(); outerMethod(); max(1, 2);\n" +
+            "            b.missing(); b.m(1.0); undefined(); int w = b.nofield + nofield;\n" +
+            "            Nested n; Inner in; B.Nested bn; B.Missing bm; NoType nt;\n" +
+            "            Runnable r = () -> m(v);\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static List<String> diagnostics(String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        new JavacTaskPool(1, 1).getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    return null;
+                });
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getMessage(null));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public void testSameDiagnostics() {
+        List<String> expected = diagnostics();
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.ref.ambiguous"));
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.cant.resolve"));
+        assertEquals(expected, diagnostics("-XDmemberNameFilters"));
+    }
+
+    public void testNameFilter() {
+        Context context = new Context();
+        Names names = Names.instance(context);
+        PackageSymbol owner = new PackageSymbol(names.fromString("p"), null);
+        WriteableScope scope = WriteableScope.create(owner);
+        for (int i = 0; i < 100; i++) {
+            scope.enter(new VarSymbol(0, names.fromString("field" + i), Type.noType, owner));
+        }
+        NameFilter filter = new NameFilter(Collections.singletonList(scope));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.mayContain(names.fromString("field" + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (filter.mayContain(names.fromString("other" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(String.valueOf(falsePositives), falsePositives < 100);
+        Name added = names.fromString("added");
+        scope.enter(new VarSymbol(0, added, Type.noType, owner));
+        assertTrue(filter.mayContain(added));
+    }
+
+    public void testMemberEnteredLater() {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        new JavacTaskPool(1, 1).getTask(null, null, new DiagnosticCollector<>(), Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDmemberNameFilters"), null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    Context context = ((JavacTaskImpl) task).getContext();
+                    Types types = Types.instance(context);
+                    Names names = Names.instance(context);
+                    ClassSymbol a = (ClassSymbol) task.getElements().getTypeElement("test.Test.A");
+                    ClassSymbol c = (ClassSymbol) task.getElements().getTypeElement("test.Test.C");
+                    assertTrue(types.mayHaveMember(c, names.fromString("a")));
+                    assertTrue(types.mayHaveMember(c, names.fromString("X")));
+                    assertTrue(types.mayHaveMember(c, names.fromString("hashCode")));
+                    Name added = names.fromString("addedLater");
+                    assertFalse(types.mayHaveMember(c, added));
+                    // e.g. a synthetic member entered by Lower
+                    a.members().enter(new VarSymbol(Flags.SYNTHETIC, added, Symtab.instance(context).intType, a));
+                    assertTrue(types.mayHaveMember(c, added));
+                    return null;
+                });
+    }
+}
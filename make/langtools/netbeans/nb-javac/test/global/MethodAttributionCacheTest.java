@@ -0,0 +1,187 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.source.tree.CompilationUnitTree;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.comp.MethodAttributionCache;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCIdent;
+import openjdk.tools.javac.tree.TreeScanner;
+
+public class MethodAttributionCacheTest extends TestCase {
+
+    public MethodAttributionCacheTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import java.util.*;\n" +
+            "public class Test {\n" +
+            "    static final int C = 1;\n" +
+            "    int a(int x) {\n" +
+            "        return x + C;\n" +
+            "    }\n" +
+            "    int b(boolean f) {\n" +
+            "        int i;\n" +
+            "        if (f) i = 1;\n" +
+            "        return i;\n" +
+            "    }\n" +
+            "    void c() {\n" +
+            "        String s = 1;\n" +
+            "        undefined();\n" +
+            "    }\n" +
+            "    List<String> d() {\n" +
+            "        List l = new ArrayList();\n" +
+            "        new Date().getYear();\n" +
+            "        Runnable r = () -> { throw new Exception(); };\n" +
+            "        return l;\n" +
+            "    }\n" +
+            "    static class Nested {\n" +
+            "        int e() { }\n" +
+            "        void f() { return; int dead = 0; }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static List<String> run(JavacTaskPool pool, String code, int[] reused, String... extraOptions) {
+        return run(pool, "Test", code, reused, extraOptions);
+    }
+
+    private static List<String> run(JavacTaskPool pool, String name, String code, int[] reused, String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        pool.getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject(name, code)),
+                task -> {
+                    if (reused != null) {
+                        ((JavacTaskImpl) task).analyzeDiagnostics();
+                        reused[0] = MethodAttributionCache.instance(((JavacTaskImpl) task).getContext()).getReuseCount();
+                    } else {
+                        try {
+                            task.analyze();
+                        } catch (IOException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                    return null;
+                });
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getLineNumber() + ":" + d.getColumnNumber()
+                    + " " + d.getMessage(null));
+        }
+        return result;
+    }
+
+    private static void check(String... extraOptions) {
+        String edited = CODE.replace("return x + C;", "int y = x;\n        return y + C + \"\";");
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        List<String> expected = run(new JavacTaskPool(1, 1), CODE, null, extraOptions);
+        List<String> expectedEdited = run(new JavacTaskPool(1, 1), edited, null, extraOptions);
+        assertFalse(expected.equals(expectedEdited));
+
+        int[] reused = new int[1];
+        assertEquals(expected, run(pool, CODE, reused, extraOptions));
+        assertEquals(0, reused[0]);
+        assertEquals(expectedEdited, run(pool, edited, reused, extraOptions));
+        // all methods but the edited one
+        assertEquals(5, reused[0]);
+        assertEquals(expected, run(pool, CODE, reused, extraOptions));
+        assertEquals(10, reused[0]);
+        // a change to the declarations invalidates all methods
+        String outline = CODE.replace("C = 1", "C = 2");
+        assertEquals(run(new JavacTaskPool(1, 1), outline, null, extraOptions), run(pool, outline, reused, extraOptions));
+        assertEquals(10, reused[0]);
+    }
+
+    public void testReuse() {
+        check();
+    }
+
+    public void testReuseWithLint() {
+        check("-Xlint:all");
+    }
+
+    public void testReuseNearErrorLimit() {
+        // the flow error of the reused e() is reported before the one of the
+        // edited f(), as in a fresh compilation, and is the one kept below the limit
+        String[] options = {"-Xmaxerrs", "3"};
+        String edited = CODE.replace("int dead = 0;", "int dead = 10;");
+        List<String> expected = run(new JavacTaskPool(1, 1), edited, null, options);
+        assertTrue(expected.toString(), expected.get(expected.size() - 1).contains("compiler.err.missing.ret.stmt"));
+
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        int[] reused = new int[1];
+        run(pool, CODE, reused, options);
+        assertEquals(expected, run(pool, edited, reused, options));
+        assertEquals(5, reused[0]);
+    }
+
+    public void testAnalyzeAttributesAllBodies() {
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        int[] reused = new int[1];
+        run(pool, CODE, reused);
+        run(pool, CODE, reused);
+        assertEquals(6, reused[0]);
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        pool.getTask(null, null, new DiagnosticCollector<>(), Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"), null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    Iterable<? extends CompilationUnitTree> units;
+                    try {
+                        units = task.parse();
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    assertEquals(6, MethodAttributionCache.instance(((JavacTaskImpl) task).getContext()).getReuseCount());
+                    int[] idents = new int[1];
+                    new TreeScanner() {
+                        @Override
+                        public void visitIdent(JCIdent tree) {
+                            assertNotNull(tree.name.toString(), tree.type);
+                            idents[0]++;
+                        }
+                    }.scan((JCTree) units.iterator().next());
+                    assertTrue(idents[0] > 10);
+                    return null;
+                });
+    }
+
+    public void testKeepsPreviousCompilationOnly() {
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        int[] reused = new int[1];
+        run(pool, CODE, reused);
+        run(pool, "Other", "package test;\nclass Other {\n    void m() { }\n}\n", reused);
+        assertEquals(0, reused[0]);
+        run(pool, CODE, reused);
+        assertEquals(0, reused[0]);
+    }
+}
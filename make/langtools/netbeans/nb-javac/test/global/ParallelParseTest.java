@@ -0,0 +1,154 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.source.tree.CompilationUnitTree;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.TreeInfo;
+import openjdk.tools.javac.tree.TreeScanner;
+
+public class ParallelParseTest extends TestCase {
+
+    public ParallelParseTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+            if (text == null) {
+                throw new IOException("unreadable");
+            }
+            return text;
+        }
+    }
+
+    private static List<JavaFileObject> files() {
+        List<JavaFileObject> files = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String code = "package test;\n" +
+                    "/** Class " + i + ". */\n" +
+                    "public class T" + i + " {\n" +
+                    "    int f" + i + " = " + i + ";\n" +
+                    "    String s() { return \"" + i + "\" + f" + i + "; }\n" +
+                    "    java.util.List<String> l(Object o) { return (java.util.List<String>) o; }\n" +
+                    "}\n";
+            if (i % 4 == 1) {
+                code = code.replace("return \"", "return ) \"");
+            }
+            if (i % 5 == 2) {
+                code = code.replace("int f", "int 0f");
+            }
+            files.add(new MyFileObject("T" + i, code));
+        }
+        // the position of the empty unit of an unreadable file is the last
+        // position of the shared tree maker in a sequential parse
+        files.add(0, new MyFileObject("Unreadable", null));
+        return files;
+    }
+
+    private static String parse(DiagnosticCollector<JavaFileObject> diags, String... extraOptions) throws IOException {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8"));
+        options.addAll(Arrays.asList(extraOptions));
+        JavacTaskImpl task = (JavacTaskImpl) tool.getTask(null, null, diags, options, null, files());
+        StringBuilder sb = new StringBuilder();
+        for (CompilationUnitTree cut : task.parse()) {
+            JCCompilationUnit unit = (JCCompilationUnit) cut;
+            sb.append(unit.sourcefile).append('\n');
+            new TreeScanner() {
+                @Override
+                public void scan(JCTree tree) {
+                    if (tree != null) {
+                        sb.append(tree.getTag()).append(' ').append(tree.pos).append(' ')
+                          .append(TreeInfo.getEndPos(tree, unit.endPositions)).append(' ')
+                          .append(unit.docComments != null ? unit.docComments.getCommentText(tree) : null)
+                          .append('\n');
+                        tree.accept(this);
+                    }
+                }
+            }.scan(unit);
+            sb.append(unit).append('\n');
+        }
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            sb.append(d.getKind()).append(' ').append(d.getCode()).append(' ').append(d.getStartPosition())
+              .append(' ').append(d.getEndPosition()).append(' ').append(d).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void testSameAsSequential() throws Exception {
+        String expected = parse(new DiagnosticCollector<>());
+        assertTrue(expected, expected.contains("unreadable"));
+        assertTrue(expected, expected.contains("compiler.err.illegal.start.of.expr"));
+        assertEquals(expected, parse(new DiagnosticCollector<>(), "-XDparallelParse=3"));
+        assertEquals(expected, parse(new DiagnosticCollector<>(), "-XDparallelParse"));
+    }
+
+    public void testSameAsSequentialWithLazyParsing() throws Exception {
+        String expected = parse(new DiagnosticCollector<>(), "-XDlazyComments", "-XDskipMethodBodies");
+        assertEquals(expected, parse(new DiagnosticCollector<>(), "-XDlazyComments", "-XDskipMethodBodies",
+                "-XDparallelParse=3"));
+    }
+
+    private static Set<Thread> parserThreads() {
+        Set<Thread> result = new HashSet<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("javac parser") && t.isAlive()) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    public void testWorkersStoppedOnClose() throws Exception {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        List<JavaFileObject> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            files.add(new MyFileObject("T" + i, "package test; class T" + i + " { }"));
+        }
+        Set<Thread> before = parserThreads();
+        JavacTaskImpl task = (JavacTaskImpl) tool.getTask(null, null, null,
+                Arrays.asList("-bootclasspath", bootPath, "-source", "1.8", "-XDparallelParse=3",
+                              "-d", Files.createTempDirectory("parallel-parse").toString()), null, files);
+        assertTrue(task.call());
+        // the pool is shut down when the compiler is closed
+        Set<Thread> started = parserThreads();
+        started.removeAll(before);
+        for (Thread t : started) {
+            t.join(10000);
+            assertFalse(t.getName(), t.isAlive());
+        }
+    }
+
+    public void testMaxErrors() throws Exception {
+        DiagnosticCollector<JavaFileObject> expected = new DiagnosticCollector<>();
+        parse(expected, "-Xmaxerrs", "2");
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        parse(diags, "-Xmaxerrs", "2", "-XDparallelParse=3");
+        assertEquals(expected.getDiagnostics().toString(), diags.getDiagnostics().toString());
+    }
+}
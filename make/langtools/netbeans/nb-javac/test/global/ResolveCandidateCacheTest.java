@@ -0,0 +1,155 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.comp.Resolve;
+
+public class ResolveCandidateCacheTest extends TestCase {
+
+    public ResolveCandidateCacheTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import java.util.*;\n" +
+            "import java.util.function.*;\n" +
+            "public class Test {\n" +
+            "    public static class Base {\n" +
+            "        protected void prot(int i) { }\n" +
+            "        private void priv(int i) { }\n" +
+            "        void m(long l) { }\n" +
+            "        void m(Integer i) { }\n" +
+            "        void v(String... s) { }\n" +
+            "        static String s(Object o) { return null; }\n" +
+            "        static String s(String o) { return null; }\n" +
+            "    }\n" +
+            "    public static class Sub extends Base {\n" +
+            "        void m(int i) { }\n" +
+            "        Sub() { }\n" +
+            "        Sub(int i) { this(); }\n" +
+            "    }\n" +
+            "    void calls(Sub sub, Base base, StringBuilder sb, List<String> list) {\n" +
+            "        for (int i = 0; i < 2; i++) {\n" +
+            "            sub.m(1); sub.m(1L); sub.m(Integer.valueOf(1)); base.m(1); base.m(1L);\n" +
+            "            sub.v(); sub.v(\"a\"); sub.v(\"a\", \"b\"); sub.v(new String[0]);\n" +
+            "            Base.s(null); Base.s(\"x\"); Base.s(sb);\n" +
+            "            sb.append(\"x\").append(1).append('c').append(1.0);\n" +
+            "            String.valueOf(i); String.format(\"%d\", i); Math.max(1, 2L);\n" +
+            "            new Sub(1); new Sub();\n" +
+            "            base.priv(1);\n" +
+            "            sub.prot(1);\n" +
+            "            sub.wrong(\"x\");\n" +
+            "            sub.m(\"x\");\n" +
+            "            list.add(String.valueOf(i));\n" +
+            "            Collections.max(list);\n" +
+            "            Comparator<String> c = String::compareTo;\n" +
+            "            Function<Object, String> f = Base::s;\n" +
+            "            IntFunction<String> g = String::valueOf;\n" +
+            "        }\n" +
+            "    }\n" +
+            "    static class Other extends Base {\n" +
+            "        void test(Base b) {\n" +
+            "            b.prot(1);\n" +
+            "            super.prot(1);\n" +
+            "            new Base() {{ prot(2); }};\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String CALLER =
+            "package other;\n" +
+            "import test.Test.Sub;\n" +
+            "public class Caller extends test.Test.Base {\n" +
+            "    void calls(Sub sub, test.Test.Base base) {\n" +
+            "        sub.prot(1);\n" +
+            "        base.prot(1);\n" +
+            "        prot(1);\n" +
+            "        super.prot(1);\n" +
+            "        sub.m(1L);\n" +
+            "        new Sub(1);\n" +
+            "    }\n" +
+            "}\n";
+
+    private static List<String> compile(JavacTaskPool pool, String code, long[] counters, String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-Xlint:all", "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        pool.getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", code), new MyFileObject("Caller", CALLER)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    if (counters != null) {
+                        Resolve.CandidateCache cache = Resolve.instance(((JavacTaskImpl) task).getContext()).candidateCache;
+                        counters[0] = cache.getHits();
+                        counters[1] = cache.getMisses();
+                        counters[2] = cache.getBypasses();
+                    }
+                    return null;
+                });
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getMessage(null));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public void testSameDiagnostics() {
+        List<String> expected = compile(new JavacTaskPool(1, 1), CODE, null);
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.cant.resolve.location.args"));
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.cant.apply.symbols"));
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.report.access"));
+        long[] counters = new long[3];
+        assertEquals(expected, compile(new JavacTaskPool(1, 1), CODE, counters, "-XDresolveCacheSize=256"));
+        assertTrue(counters[0] > 0);
+        assertTrue(counters[1] > 0);
+        // generic sites, type arguments and method references
+        assertTrue(counters[2] > 0);
+        // evictions
+        assertEquals(expected, compile(new JavacTaskPool(1, 1), CODE, null, "-XDresolveCacheSize=2"));
+    }
+
+    public void testChangedOverloads() {
+        // the same classes with other methods in a reused context
+        String changed = CODE.replace("void m(int i) { }", "void m(Object o) { }")
+                             .replace("protected void prot(int i) { }", "public void prot(int i) { }");
+        List<String> expected = compile(new JavacTaskPool(1, 1), CODE, null);
+        List<String> expectedChanged = compile(new JavacTaskPool(1, 1), changed, null);
+        assertFalse(expected.equals(expectedChanged));
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        assertEquals(expected, compile(pool, CODE, null, "-XDresolveCacheSize=4096"));
+        assertEquals(expectedChanged, compile(pool, changed, null, "-XDresolveCacheSize=4096"));
+        assertEquals(expected, compile(pool, CODE, null, "-XDresolveCacheSize=4096"));
+    }
+}
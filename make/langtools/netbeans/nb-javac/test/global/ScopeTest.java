@@ -37,8 +37,13 @@ import openjdk.tools.javac.code.Symbol;
 import openjdk.tools.javac.code.Type;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import jdkx.lang.model.element.Element;
+import jdkx.lang.model.element.ExecutableElement;
 import jdkx.lang.model.element.TypeElement;
 import jdkx.lang.model.element.VariableElement;
 import jdkx.lang.model.type.TypeKind;
@@ -59,7 +64,10 @@ public class ScopeTest extends TestCase {
     static class MyFileObject extends SimpleJavaFileObject {
         private String text;
         public MyFileObject(String text) {
-            super(URI.create("myfo:/Test.java"), JavaFileObject.Kind.SOURCE);
+            this("Test", text);
+        }
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
             this.text = text;
         }
         @Override
@@ -183,4 +191,97 @@ public class ScopeTest extends TestCase {
 	assertNotNull(Trees.instance(ct).getPath(el[0]));
     }
 
+    public void testLazyClassMembers() throws IOException {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final String version = System.getProperty("java.vm.specification.version"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+
+        String code = "package test;\n" +
+                      "public class Test {\n" +
+                      "    int l = \"\".length();\n" +
+                      "    java.util.List<String> e = java.util.Collections.emptyList();\n" +
+                      "    java.util.Map.Entry<String, Integer> m;\n" +
+                      "}\n";
+
+        String[] members = new String[2];
+        for (int i = 0; i < 2; i++) {
+            List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath",  bootPath, "-source", version));
+            if (i == 1) {
+                options.add("-XDlazyMembers");
+            }
+            JavacTask ct = (JavacTask)tool.getTask(null, null, null, options, null, Arrays.asList(new MyFileObject(code)));
+            ct.parse();
+            ct.analyze();
+            assertTrue(ct.getElements().getTypeElement("test.Test").asType().getKind() == TypeKind.DECLARED);
+            members[i] = ct.getElements().getTypeElement("java.util.Map").getEnclosedElements().toString()
+                    + ct.getElements().getTypeElement("java.lang.String").getEnclosedElements();
+        }
+        assertEquals(members[0], members[1]);
+    }
+
+    public void testLazyClassMemberAnnotations() throws IOException {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final String version = System.getProperty("java.vm.specification.version"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+
+        String ann = "package q;\n" +
+                     "import java.lang.annotation.*;\n" +
+                     "@Retention(RetentionPolicy.RUNTIME) public @interface Ann {\n" +
+                     "    String value() default \"x\";\n" +
+                     "    int[] n() default {1, 2};\n" +
+                     "}\n";
+        String ta = "package q;\n" +
+                    "import java.lang.annotation.*;\n" +
+                    "@Target(ElementType.TYPE_USE) public @interface TA { }\n";
+        String lib = "package q;\n" +
+                     "public class Lib {\n" +
+                     "    @Deprecated public void old() { }\n" +
+                     "    @Ann public void annotated() { }\n" +
+                     "    @Ann(\"y\") public int f;\n" +
+                     "    public @TA String typed() { return null; }\n" +
+                     "}\n";
+        Path classes = Files.createTempDirectory("lazyMembers");
+        List<String> libOptions = Arrays.asList("-bootclasspath",  bootPath, "-source", version, "-d", classes.toString());
+        assertTrue(tool.getTask(null, null, null, libOptions, null, Arrays.asList(new MyFileObject("Ann", ann),
+                new MyFileObject("TA", ta), new MyFileObject("Lib", lib))).call());
+
+        String code = "package test;\n" +
+                      "public class Test {\n" +
+                      "    q.Lib l;\n" +
+                      "}\n";
+
+        String[] members = new String[2];
+        for (int i = 0; i < 2; i++) {
+            List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath",  bootPath, "-source", version,
+                    "-classpath", classes.toString()));
+            if (i == 1) {
+                options.add("-XDlazyMembers");
+            }
+            JavacTask ct = (JavacTask)tool.getTask(null, null, null, options, null, Arrays.asList(new MyFileObject(code)));
+            ct.analyze();
+            // the members are read here, after the class has been completed
+            StringBuilder sb = new StringBuilder();
+            for (String name : new String[] {"q.Lib", "q.Ann"}) {
+                for (Element e : ct.getElements().getTypeElement(name).getEnclosedElements()) {
+                    sb.append(e).append(" | ").append(e.getAnnotationMirrors())
+                      .append(" | ").append(((Symbol) e).getRawTypeAttributes());
+                    if (e instanceof ExecutableElement) {
+                        sb.append(" | ").append(((ExecutableElement) e).getDefaultValue());
+                    }
+                    sb.append('\n');
+                }
+            }
+            members[i] = sb.toString();
+        }
+        assertTrue(members[0], members[0].contains("old() | @java.lang.Deprecated |"));
+        assertTrue(members[0], members[0].contains("annotated() | @q.Ann |"));
+        assertTrue(members[0], members[0].contains("f | @q.Ann(\"y\") |"));
+        assertTrue(members[0], members[0].contains("typed() |  | @q.TA |"));
+        assertTrue(members[0], members[0].contains("value() |  |  | \"x\""));
+        assertTrue(members[0], members[0].contains("n() |  |  | {1, 2}"));
+        assertEquals(members[0], members[1]);
+    }
+
 }
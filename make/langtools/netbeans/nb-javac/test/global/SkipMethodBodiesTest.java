@@ -0,0 +1,139 @@
+package global;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.parser.LazyBodyParser;
+import openjdk.tools.javac.parser.LazyBodyParser.LazyBlock;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCBlock;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.TreeInfo;
+import openjdk.tools.javac.tree.TreeScanner;
+
+public class SkipMethodBodiesTest extends TestCase {
+
+    public SkipMethodBodiesTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "public class Test {\n" +
+            "    static int s;\n" +
+            "    static { s = 1; }\n" +
+            "    Runnable r = () -> { int i = s; };\n" +
+            "    int a(int x) {\n" +
+            "        class Local { int l() { return 1; } }\n" +
+            "        return x + new Local().l() + \"}\".length();\n" +
+            "    }\n" +
+            "    static class Nested {\n" +
+            "        void n() { s++; }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static JavacTaskImpl task(String code, DiagnosticCollector<JavaFileObject> diags, boolean skip) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8"));
+        if (skip) {
+            options.add("-XDskipMethodBodies");
+        }
+        return (JavacTaskImpl) tool.getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", code)));
+    }
+
+    private static List<JCBlock> blocks(JCTree tree) {
+        List<JCBlock> blocks = new ArrayList<>();
+        new TreeScanner() {
+            @Override
+            public void visitBlock(JCBlock tree) {
+                blocks.add(tree);
+                super.visitBlock(tree);
+            }
+        }.scan(tree);
+        return blocks;
+    }
+
+    private static String dump(JCCompilationUnit unit) {
+        StringBuilder sb = new StringBuilder();
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree != null) {
+                    sb.append(tree.getTag()).append(' ').append(tree.pos).append(' ')
+                      .append(TreeInfo.getEndPos(tree, unit.endPositions)).append('\n');
+                    tree.accept(this);
+                }
+            }
+        }.scan(unit);
+        return sb.toString();
+    }
+
+    public void testBodiesSkipped() throws Exception {
+        JCCompilationUnit unit = (JCCompilationUnit) task(CODE, null, true).parse().iterator().next();
+        List<JCBlock> blocks = blocks(unit);
+        assertEquals(4, blocks.size());
+        for (JCBlock block : blocks) {
+            assertTrue(block instanceof LazyBlock);
+            assertTrue(block.stats.isEmpty());
+        }
+        assertEquals(CODE.indexOf("static {"), blocks.get(0).pos);
+        assertEquals(CODE.indexOf("}\n    static class"), blocks.get(2).endpos);
+    }
+
+    public void testExpand() throws Exception {
+        JavacTaskImpl task = task(CODE, null, true);
+        JCCompilationUnit unit = (JCCompilationUnit) task.parse().iterator().next();
+        LazyBodyParser.instance(task.getContext()).expand(unit, true);
+        JCCompilationUnit expected = (JCCompilationUnit) task(CODE, null, false).parse().iterator().next();
+        assertEquals(dump(expected), dump(unit));
+    }
+
+    public void testAnalyze() throws Exception {
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        JavacTaskImpl task = task(CODE, diags, true);
+        JCCompilationUnit unit = (JCCompilationUnit) task.parse().iterator().next();
+        task.analyze();
+        assertEquals(Arrays.asList(), diags.getDiagnostics());
+        for (JCBlock block : blocks(unit)) {
+            assertFalse(block instanceof LazyBlock);
+        }
+    }
+
+    public void testSyntaxErrorInSkippedBody() throws Exception {
+        String code = CODE.replace("return x +", "return x + +;");
+        DiagnosticCollector<JavaFileObject> expected = new DiagnosticCollector<>();
+        task(code, expected, false).analyze();
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        JavacTaskImpl task = task(code, diags, true);
+        task.parse();
+        assertEquals(Arrays.asList(), diags.getDiagnostics());
+        task.analyze();
+        assertFalse(diags.getDiagnostics().isEmpty());
+        Diagnostic<? extends JavaFileObject> d = diags.getDiagnostics().get(0);
+        assertEquals(expected.getDiagnostics().get(0).toString(), d.toString());
+    }
+}
@@ -0,0 +1,134 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.source.tree.CompilationUnitTree;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.code.Flags;
+import openjdk.tools.javac.code.Scope.StarImportScope;
+import openjdk.tools.javac.code.Symbol.ClassSymbol;
+import openjdk.tools.javac.code.Symbol.PackageSymbol;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.util.Name;
+import openjdk.tools.javac.util.Names;
+
+public class StarImportIndexTest extends TestCase {
+
+    public StarImportIndexTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import java.util.*;\n" +
+            "import java.awt.*;\n" +
+            "import java.util.concurrent.*;\n" +
+            "import java.util.Map.*;\n" +
+            "import static java.lang.Math.*;\n" +
+            "import p.*;\n" +
+            "public class Test {\n" +
+            "    ArrayList<String> a;\n" +
+            "    List<String> ambiguous;\n" +
+            "    Entry<String, String> e;\n" +
+            "    ConcurrentMap<String, Executor> m;\n" +
+            "    Missing missing;\n" +
+            "    Hidden hidden;\n" +
+            "    A fromSource;\n" +
+            "    double d = max(PI, abs(-1));\n" +
+            "    String s = String.valueOf(Thread.currentThread());\n" +
+            "}\n";
+
+    private static final String A =
+            "package p;\n" +
+            "public class A { }\n" +
+            "class Hidden { }\n";
+
+    private static List<String> compile(String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-Xlint:all", "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        new JavacTaskPool(1, 1).getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", CODE), new MyFileObject("A", A)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    return null;
+                });
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getMessage(null));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public void testSameDiagnostics() {
+        List<String> expected = compile();
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.ref.ambiguous"));
+        assertTrue(expected.toString(), expected.toString().contains("class Missing"));
+        assertTrue(expected.toString(), expected.toString().contains("class Hidden"));
+        assertEquals(expected, compile("-XDindexStarImports"));
+    }
+
+    public void testPackageChanges() {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        new JavacTaskPool(1, 1).getTask(null, null, new DiagnosticCollector<>(), Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDindexStarImports"), null,
+                Arrays.asList(new MyFileObject("Test", CODE), new MyFileObject("A", A)),
+                task -> {
+                    Iterable<? extends CompilationUnitTree> units;
+                    try {
+                        units = task.parse();
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    JCCompilationUnit test = (JCCompilationUnit) units.iterator().next();
+                    StarImportScope scope = test.starImportScope;
+                    Names names = Names.instance(((JavacTaskImpl) task).getContext());
+                    Name fresh = names.fromString("Fresh");
+                    Name a = names.fromString("A");
+                    ClassSymbol aSym = (ClassSymbol) scope.findFirst(a);
+                    assertNotNull(aSym);
+                    assertEquals("ArrayList", scope.findFirst(names.fromString("ArrayList")).name.toString());
+                    assertNull(scope.findFirst(fresh));
+
+                    PackageSymbol p = aSym.packge();
+                    ClassSymbol freshSym = new ClassSymbol(Flags.PUBLIC, fresh, p);
+                    p.members().enter(freshSym);
+                    assertSame(freshSym, scope.findFirst(fresh));
+
+                    p.members().remove(aSym);
+                    assertNull(scope.findFirst(a));
+                    return null;
+                });
+    }
+}
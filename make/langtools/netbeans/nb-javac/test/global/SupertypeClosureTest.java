@@ -0,0 +1,164 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.source.util.JavacTask;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.code.Symbol.ClassSymbol;
+import openjdk.tools.javac.code.Symtab;
+import openjdk.tools.javac.code.Type;
+import openjdk.tools.javac.code.Type.ClassType;
+import openjdk.tools.javac.code.Types;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Names;
+
+public class SupertypeClosureTest extends TestCase {
+
+    public SupertypeClosureTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import java.io.Serializable;\n" +
+            "import java.util.*;\n" +
+            "public class Test {\n" +
+            "    interface I extends Comparable<I> { }\n" +
+            "    interface J extends I, Serializable { }\n" +
+            "    static abstract class A implements J { }\n" +
+            "    static abstract class B extends A implements RandomAccess, I { }\n" +
+            "    static abstract class C extends ArrayList<String> implements Missing { }\n" +
+            "    static class Cycle1 extends Cycle2 { }\n" +
+            "    static class Cycle2 extends Cycle1 { }\n" +
+            "    protected int p;\n" +
+            "    void m(B b, C c, ArrayList<String> l) {\n" +
+            "        Serializable s = b;\n" +
+            "        Comparable<I> cmp = b;\n" +
+            "        Runnable r = b;\n" +
+            "        RandomAccess ra = c;\n" +
+            "        Iterable<Integer> it = l;\n" +
+            "        Object o = new Object() { int q = p; };\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String[] CLASSES = {
+        "test.Test", "test.Test.I", "test.Test.J", "test.Test.A", "test.Test.B", "test.Test.C",
+        "test.Test.Cycle1", "java.lang.Object", "java.lang.Comparable", "java.io.Serializable",
+        "java.util.RandomAccess", "java.util.ArrayList", "java.util.AbstractList", "java.util.List",
+        "java.lang.Iterable", "java.lang.Runnable", "java.lang.Integer", "java.lang.Number"
+    };
+
+    private static ClassSymbol lookup(JavacTask task, String name) {
+        Context context = ((JavacTaskImpl) task).getContext();
+        String flatName = name.startsWith("test.Test.") ? name.replace("test.Test.", "test.Test$") : name;
+        // getTypeElement does not find erroneous classes
+        for (ClassSymbol c : Symtab.instance(context).getClassesForName(Names.instance(context).fromString(flatName))) {
+            return c;
+        }
+        fail(name);
+        return null;
+    }
+
+    private static List<String> results(String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        List<String> result = new ArrayList<>();
+        new JavacTaskPool(1, 1).getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    Types types = Types.instance(((JavacTaskImpl) task).getContext());
+                    for (String sub : CLASSES) {
+                        ClassSymbol c = lookup(task, sub);
+                        for (String base : CLASSES) {
+                            ClassSymbol b = lookup(task, base);
+                            result.add(sub + " " + base + " " + c.isSubClass(b, types)
+                                    + " " + types.asSuper(c.type, b) + " " + types.isSubtype(types.erasure(c.type), types.erasure(b.type)));
+                        }
+                    }
+                    return null;
+                });
+        List<String> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            diagnostics.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getMessage(null));
+        }
+        Collections.sort(diagnostics);
+        result.addAll(diagnostics);
+        return result;
+    }
+
+    public void testSameResults() {
+        List<String> expected = results();
+        assertTrue(expected.toString(), expected.contains("test.Test.B java.io.Serializable true java.io.Serializable true"));
+        assertTrue(expected.toString(), expected.contains("test.Test.B java.lang.Runnable false null false"));
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.cyclic.inheritance"));
+        assertEquals(expected, results("-XDsupertypeClosures"));
+    }
+
+    public void testCompletedHeader() {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        new JavacTaskPool(1, 1).getTask(null, null, new DiagnosticCollector<>(), Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDsupertypeClosures"), null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    Types types = Types.instance(((JavacTaskImpl) task).getContext());
+                    ClassSymbol a = (ClassSymbol) task.getElements().getTypeElement("test.Test.A");
+                    ClassSymbol b = (ClassSymbol) task.getElements().getTypeElement("test.Test.B");
+                    ClassSymbol runnable = (ClassSymbol) task.getElements().getTypeElement("java.lang.Runnable");
+                    assertNotNull(types.supertypeClosure(b));
+                    assertEquals(b, types.supertypeClosure(b).classes().head);
+                    assertTrue(types.supertypeClosure(b).contains(a));
+                    // an erroneous supertype
+                    assertNull(types.supertypeClosure(lookup(task, "test.Test.Cycle1")));
+                    assertFalse(b.isSubClass(runnable, types));
+
+                    // what TypeEnter does when the header of A is completed again
+                    types.beginHeaderCompletion();
+                    assertNull(types.supertypeClosure(b));
+                    ((ClassType) a.type).interfaces_field = openjdk.tools.javac.util.List.of(runnable.type);
+                    ((ClassType) a.type).all_interfaces_field = null;
+                    types.endHeaderCompletion(a);
+
+                    assertTrue(b.isSubClass(runnable, types));
+                    Type sup = types.asSuper(b.type, runnable);
+                    assertNotNull(sup);
+                    assertSame(runnable, sup.tsym);
+                    return null;
+                });
+    }
+}
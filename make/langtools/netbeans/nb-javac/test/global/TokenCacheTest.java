@@ -0,0 +1,75 @@
+package global;
+
+import junit.framework.TestCase;
+import openjdk.tools.javac.parser.ScannerFactory;
+import openjdk.tools.javac.parser.TokenCache;
+import openjdk.tools.javac.parser.Tokens.TokenKind;
+import openjdk.tools.javac.util.Context;
+
+public class TokenCacheTest extends TestCase {
+
+    public TokenCacheTest(String name) {
+        super(name);
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "/** Doc. */\n" +
+            "public class Test {\n" +
+            "    /* a\n" +
+            "       b */\n" +
+            "    int i = 0x1F;\n" +
+            "    String s = \"str\";\n" +
+            "}\n";
+
+    private static String dump(TokenCache cache) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cache.size(); i++) {
+            sb.append(cache.kind(i)).append(' ')
+              .append(cache.startPos(i)).append('-').append(cache.endPos(i)).append(' ')
+              .append(cache.name(i)).append(' ')
+              .append(cache.stringVal(i)).append(' ')
+              .append(cache.radix(i)).append('\n');
+        }
+        for (int i = 0; i < cache.commentCount(); i++) {
+            sb.append(cache.commentStyle(i)).append(' ')
+              .append(cache.commentStartPos(i)).append('-').append(cache.commentEndPos(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void edit(ScannerFactory fac, TokenCache cache, StringBuilder code, int offset, int removed, String inserted) {
+        code.replace(offset, offset + removed, inserted);
+        cache.update(code, offset, removed, inserted.length());
+        assertEquals(dump(fac.newTokenCache(code)), dump(cache));
+    }
+
+    public void testTokens() {
+        ScannerFactory fac = ScannerFactory.instance(new Context());
+        TokenCache cache = fac.newTokenCache(CODE);
+        int i = cache.indexOf(CODE.indexOf("0x1F"));
+        assertEquals(TokenKind.INTLITERAL, cache.kind(i));
+        assertEquals("1F", cache.stringVal(i));
+        assertEquals(16, cache.radix(i));
+        assertEquals("s", cache.name(cache.indexOf(CODE.indexOf("s ="))).toString());
+        assertEquals(TokenKind.EOF, cache.kind(cache.size() - 1));
+        assertEquals(2, cache.commentCount());
+        // the line inside the block comment is not a checkpoint
+        int inComment = CODE.indexOf("       b */");
+        assertEquals(CODE.indexOf("    /* a"), cache.checkpoint(inComment));
+    }
+
+    public void testUpdate() {
+        ScannerFactory fac = ScannerFactory.instance(new Context());
+        StringBuilder code = new StringBuilder(CODE);
+        TokenCache cache = fac.newTokenCache(code);
+
+        edit(fac, cache, code, code.indexOf("0x1F"), 4, "12345");
+        assertTrue(cache.lastUpdateEnd() - cache.lastUpdateStart() < 8);
+        edit(fac, cache, code, code.indexOf("int i"), 0, "/* ");
+        edit(fac, cache, code, code.indexOf("/* int i"), 3, "");
+        edit(fac, cache, code, code.indexOf("\"str\""), 0, "\"\"\"\n");
+        edit(fac, cache, code, code.length(), 0, "\"\"\"");
+        edit(fac, cache, code, 0, code.length(), "");
+    }
+}
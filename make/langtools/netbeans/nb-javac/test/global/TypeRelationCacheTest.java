@@ -0,0 +1,162 @@
+package global;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jdkx.tools.Diagnostic;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import junit.framework.TestCase;
+import openjdk.tools.javac.api.JavacTaskImpl;
+import openjdk.tools.javac.api.JavacTaskPool;
+import openjdk.tools.javac.code.Symbol.ClassSymbol;
+import openjdk.tools.javac.code.Type;
+import openjdk.tools.javac.code.Type.ClassType;
+import openjdk.tools.javac.code.Types;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Warner;
+
+public class TypeRelationCacheTest extends TestCase {
+
+    public TypeRelationCacheTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String name, String text) {
+            super(URI.create("myfo:/" + name + ".java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static final String CODE =
+            "package test;\n" +
+            "import java.util.*;\n" +
+            "public class Test {\n" +
+            "    static class A<T> implements Comparable<A<T>> {\n" +
+            "        public int compareTo(A<T> o) { return 0; }\n" +
+            "    }\n" +
+            "    static class B extends A<String> { }\n" +
+            "    static class C extends B implements Runnable {\n" +
+            "        public void run() { }\n" +
+            "    }\n" +
+            "    static class D extends A { }\n" +
+            "    void m(List raw, ArrayList<String> list, C c, D d) {\n" +
+            "        List<String> l = raw;\n" +
+            "        Collection<String> col = list;\n" +
+            "        Comparable<A<String>> cmp = c;\n" +
+            "        Comparable<A<String>> unchecked = d;\n" +
+            "        Runnable r = c;\n" +
+            "        Runnable wrong = new B();\n" +
+            "        Object o = (Runnable) new B();\n" +
+            "        Iterable<Integer> it = list;\n" +
+            "        for (int i = 0; i < 3; i++) {\n" +
+            "            A<String> a = c;\n" +
+            "            Runnable r2 = c;\n" +
+            "            B b = c;\n" +
+            "            Comparable<A<String>> cmp2 = d;\n" +
+            "            List<String> l2 = raw;\n" +
+            "            Collection<String> col2 = list;\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static List<String> run(JavacTaskPool pool, String code, long[] hits, String... extraOptions) {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        List<String> options = new ArrayList<>(Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-Xlint:all", "-XDshould-stop.ifError=FLOW", "-XDshould-stop.ifNoError=FLOW"));
+        options.addAll(Arrays.asList(extraOptions));
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        pool.getTask(null, null, diags, options, null,
+                Arrays.asList(new MyFileObject("Test", code)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    if (hits != null) {
+                        Types.RelationCache cache = Types.instance(((JavacTaskImpl) task).getContext()).relationCache;
+                        hits[0] = cache.getAsSuperHits();
+                        hits[1] = cache.getSubtypeHits();
+                        hits[2] = cache.getErasureHits();
+                    }
+                    return null;
+                });
+        List<String> result = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diags.getDiagnostics()) {
+            result.add(d.getKind() + " " + d.getCode() + " " + d.getStartPosition() + " " + d.getPosition()
+                    + " " + d.getEndPosition() + " " + d.getMessage(null));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public void testSameDiagnostics() {
+        List<String> expected = run(new JavacTaskPool(1, 1), CODE, null);
+        assertTrue(expected.toString(), expected.toString().contains("compiler.warn.prob.found.req"));
+        assertTrue(expected.toString(), expected.toString().contains("compiler.err.prob.found.req"));
+        long[] hits = new long[3];
+        assertEquals(expected, run(new JavacTaskPool(1, 1), CODE, hits, "-XDtypeRelationCacheSize=64"));
+        assertTrue(hits[0] > 0);
+        assertTrue(hits[1] > 0);
+        assertTrue(hits[2] > 0);
+        // evictions
+        assertEquals(expected, run(new JavacTaskPool(1, 1), CODE, null, "-XDtypeRelationCacheSize=2"));
+    }
+
+    public void testChangedHierarchy() {
+        // the same classes with other supertypes in a reused context
+        String changed = CODE.replace("class B extends A<String> { }", "class B implements Runnable { public void run() { } }")
+                             .replace("class D extends A { }", "class D extends A<String> { }");
+        List<String> expected = run(new JavacTaskPool(1, 1), CODE, null);
+        List<String> expectedChanged = run(new JavacTaskPool(1, 1), changed, null);
+        assertFalse(expected.equals(expectedChanged));
+        JavacTaskPool pool = new JavacTaskPool(1, 1);
+        assertEquals(expected, run(pool, CODE, null, "-XDtypeRelationCacheSize=4096"));
+        assertEquals(expectedChanged, run(pool, changed, null, "-XDtypeRelationCacheSize=4096"));
+        assertEquals(expected, run(pool, CODE, null, "-XDtypeRelationCacheSize=4096"));
+    }
+
+    public void testCompletedHeader() {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        new JavacTaskPool(1, 1).getTask(null, null, new DiagnosticCollector<>(), Arrays.asList("-bootclasspath", bootPath, "-source", "1.8",
+                "-XDtypeRelationCacheSize=4096"), null,
+                Arrays.asList(new MyFileObject("Test", CODE)),
+                task -> {
+                    try {
+                        task.analyze();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    Context context = ((JavacTaskImpl) task).getContext();
+                    Types types = Types.instance(context);
+                    ClassSymbol b = (ClassSymbol) task.getElements().getTypeElement("test.Test.B");
+                    Type runnable = ((ClassSymbol) task.getElements().getTypeElement("java.lang.Runnable")).type;
+                    assertFalse(types.isSubtypeUnchecked(b.type, runnable, new Warner()));
+                    assertNull(types.asSuper(b.type, runnable.tsym));
+                    long hits = types.relationCache.getSubtypeHits();
+                    assertFalse(types.isSubtypeUnchecked(b.type, runnable, new Warner()));
+                    assertEquals(hits + 1, types.relationCache.getSubtypeHits());
+
+                    // what TypeEnter does when the header of B is completed again
+                    types.beginHeaderCompletion();
+                    ((ClassType) b.type).interfaces_field = openjdk.tools.javac.util.List.of(runnable);
+                    ((ClassType) b.type).all_interfaces_field = null;
+                    types.endHeaderCompletion(b);
+
+                    assertTrue(types.isSubtypeUnchecked(b.type, runnable, new Warner()));
+                    assertSame(runnable.tsym, types.asSuper(b.type, runnable.tsym).tsym);
+                    return null;
+                });
+    }
+}
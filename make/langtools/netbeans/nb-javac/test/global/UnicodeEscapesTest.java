@@ -0,0 +1,68 @@
+package global;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdkx.tools.DiagnosticCollector;
+import jdkx.tools.JavaCompiler;
+import jdkx.tools.JavaFileObject;
+import jdkx.tools.SimpleJavaFileObject;
+import jdkx.tools.ToolProvider;
+import junit.framework.TestCase;
+import openjdk.source.tree.CompilationUnitTree;
+import openjdk.source.tree.VariableTree;
+import openjdk.source.util.TreeScanner;
+import openjdk.tools.javac.api.JavacTaskImpl;
+
+public class UnicodeEscapesTest extends TestCase {
+
+    public UnicodeEscapesTest(String name) {
+        super(name);
+    }
+
+    static class MyFileObject extends SimpleJavaFileObject {
+        private final String text;
+        public MyFileObject(String text) {
+            super(URI.create("myfo:/Test.java"), JavaFileObject.Kind.SOURCE);
+            this.text = text;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    private static List<String> variableNames(String code, DiagnosticCollector<JavaFileObject> diags) throws Exception {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        assert tool != null;
+        JavacTaskImpl ct = (JavacTaskImpl) tool.getTask(null, null, diags, Arrays.asList("-bootclasspath", bootPath), null, Arrays.asList(new MyFileObject(code)));
+        CompilationUnitTree cut = ct.parse().iterator().next();
+        final List<String> names = new ArrayList<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitVariable(VariableTree node, Void p) {
+                names.add(node.getName().toString());
+                return super.visitVariable(node, p);
+            }
+        }.scan(cut, null);
+        return names;
+    }
+
+    public void testIdentifiers() throws Exception {
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        String code = "class Test { int plain, esc\\u0061ped, \\u0061t_start, ign\u0001ored, wideé, "
+                + "\\u0073\\u0074r = \"\\\\u0041\"; }";
+        assertEquals(Arrays.asList("plain", "escaped", "at_start", "ignored", "wideé", "str"), variableNames(code, diags));
+        assertEquals(Arrays.asList(), diags.getDiagnostics());
+    }
+
+    public void testBrokenEscapeInIdentifier() throws Exception {
+        DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+        String code = "class Test { int bro\\u00ken; }";
+        assertEquals(Arrays.asList("broken"), variableNames(code, diags));
+        assertEquals(1, diags.getDiagnostics().size());
+        assertEquals("compiler.err.illegal.unicode.esc", diags.getDiagnostics().get(0).getCode());
+    }
+}
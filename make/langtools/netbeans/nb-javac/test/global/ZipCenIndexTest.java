@@ -0,0 +1,118 @@
+package global;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import com.itsaky.androidide.zipfs2.ZipFileSystemProvider;
+import junit.framework.TestCase;
+
+public class ZipCenIndexTest extends TestCase {
+
+    public ZipCenIndexTest(String name) {
+        super(name);
+    }
+
+    private static void writeJar(Path jar, String... names) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write(("content of " + name).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private static List<String> list(Path jar, Map<String, Object> env) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (FileSystem fs = new ZipFileSystemProvider().newFileSystem(jar, env);
+             Stream<Path> paths = Files.walk(fs.getPath("/"))) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                String s = p + " " + attrs.isDirectory() + " " + attrs.size();
+                if (attrs.isRegularFile()) {
+                    s += " " + new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+                }
+                result.add(s);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static Path sidecar(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            Path result = null;
+            for (Path f : files) {
+                assertNull(result);
+                result = f;
+            }
+            assertNotNull(result);
+            return result;
+        }
+    }
+
+    public void testReuseAndInvalidation() throws IOException {
+        Path work = Files.createTempDirectory("cen-index");
+        Path dir = work.resolve("index");
+        Path jar = work.resolve("lib.jar");
+        writeJar(jar, "a/", "a/B.txt", "a/b/C.txt", "d/e/F.txt");
+        Map<String, Object> env = new HashMap<>();
+        env.put("compactIndex", "true");
+        env.put("cenIndexDir", dir.toString());
+
+        List<String> expected = list(jar, new HashMap<>());
+        assertTrue(expected.toString(), expected.contains("/d/e true 0"));
+        assertEquals(expected, list(jar, env));
+        Path index = sidecar(dir);
+
+        // an unchanged archive reuses the index, which is not written again
+        FileTime old = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(index, old);
+        assertEquals(expected, list(jar, env));
+        assertEquals(old, Files.getLastModifiedTime(index));
+
+        // same size, other entries and last modified time
+        FileTime mtime = Files.getLastModifiedTime(jar);
+        long size = Files.size(jar);
+        writeJar(jar, "a/", "a/X.txt", "a/b/C.txt", "d/e/F.txt");
+        assertEquals(size, Files.size(jar));
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(mtime.toMillis() + 10000));
+        expected = list(jar, new HashMap<>());
+        assertTrue(expected.toString(), expected.contains("/a/X.txt false 18 content of a/X.txt"));
+        assertEquals(expected, list(jar, env));
+        assertFalse(old.equals(Files.getLastModifiedTime(index)));
+
+        // other size, same last modified time
+        mtime = Files.getLastModifiedTime(jar);
+        Files.setLastModifiedTime(index, old);
+        writeJar(jar, "a/", "a/X.txt", "a/b/C.txt", "d/e/F.txt", "g/H.txt");
+        Files.setLastModifiedTime(jar, mtime);
+        expected = list(jar, new HashMap<>());
+        assertTrue(expected.toString(), expected.contains("/g true 0"));
+        assertEquals(expected, list(jar, env));
+        assertFalse(old.equals(Files.getLastModifiedTime(index)));
+
+        // a corrupt index is ignored and written again
+        byte[] bytes = Files.readAllBytes(index);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(index, bytes);
+        Files.setLastModifiedTime(index, old);
+        assertEquals(expected, list(jar, env));
+        assertFalse(old.equals(Files.getLastModifiedTime(index)));
+        assertEquals(expected, list(jar, env));
+    }
+}
@@ -0,0 +1,126 @@
+package global;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import com.itsaky.androidide.zipfs2.ZipFileSystemProvider;
+import junit.framework.TestCase;
+
+public class ZipInodeTableTest extends TestCase {
+
+    public ZipInodeTableTest(String name) {
+        super(name);
+    }
+
+    // The entry names and their parent directories, some of which have no
+    // entry of their own, and a few paths that do not exist.
+    private static Set<String> paths(Path jar) throws IOException {
+        Set<String> paths = new TreeSet<>();
+        paths.add("/");
+        paths.add("/missing");
+        paths.add("/java/lang/Missing.class");
+        try (ZipFile zf = new ZipFile(jar.toFile())) {
+            for (Enumeration<? extends ZipEntry> e = zf.entries(); e.hasMoreElements(); ) {
+                String name = "/" + e.nextElement().getName();
+                paths.add(name);
+                for (int i = name.lastIndexOf('/'); i > 0; i = name.lastIndexOf('/', i - 1)) {
+                    paths.add(name.substring(0, i));
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static String describe(FileSystem fs, String name) throws IOException {
+        Path p = fs.getPath(name);
+        StringBuilder sb = new StringBuilder(name).append(' ').append(Files.exists(p));
+        if (!Files.exists(p)) {
+            try {
+                Files.readAttributes(p, BasicFileAttributes.class);
+                fail(name);
+            } catch (NoSuchFileException ex) {
+                // expected
+            }
+            return sb.toString();
+        }
+        BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+        sb.append(' ').append(Files.isDirectory(p))
+          .append(' ').append(attrs.isDirectory())
+          .append(' ').append(attrs.isRegularFile())
+          .append(' ').append(attrs.size())
+          .append(' ').append(attrs.fileKey());
+        // the synthesized directories have the time the file system was opened
+        if (attrs.isRegularFile()) {
+            sb.append(' ').append(attrs.lastModifiedTime());
+        } else {
+            List<String> children = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(p)) {
+                for (Path c : ds) {
+                    children.add(c.toString());
+                }
+            }
+            Collections.sort(children);
+            sb.append(' ').append(children);
+        }
+        return sb.toString();
+    }
+
+    private static void compare(Path jar) throws IOException {
+        Map<String, Object> compact = new HashMap<>();
+        compact.put("compactIndex", "true");
+        ZipFileSystemProvider provider = new ZipFileSystemProvider();
+        try (FileSystem expected = provider.newFileSystem(jar, new HashMap<String, Object>());
+             FileSystem actual = provider.newFileSystem(jar, compact)) {
+            assertTrue(actual.isReadOnly());
+            for (String name : paths(jar)) {
+                assertEquals(describe(expected, name), describe(actual, name));
+            }
+        }
+    }
+
+    public void testSameAsInodeMap() throws IOException {
+        Path jar = Files.createTempFile("inode-table", ".jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            String[] names = {
+                "META-INF/MANIFEST.MF", "a/", "a/B.class", "a/b/c/D.class", "e/f/",
+                "x//y/Z.txt", "/lead/L.txt", "\u00e4/\u00f6.txt", "empty/"
+            };
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        compare(jar);
+    }
+
+    public void testSameAsInodeMapForBootJar() throws IOException {
+        String bootPath = System.getProperty("sun.boot.class.path");
+        for (String element : bootPath.split(File.pathSeparator)) {
+            Path p = Paths.get(element);
+            if (element.endsWith(".jar") && Files.isRegularFile(p)) {
+                compare(p);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package global;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import com.itsaky.androidide.zipfs2.ZipFileSystemProvider;
+import com.itsaky.androidide.zipfs2.ZipPath;
+import junit.framework.TestCase;
+
+public class ZipReadAllBytesTest extends TestCase {
+
+    public ZipReadAllBytesTest(String name) {
+        super(name);
+    }
+
+    private static byte[] content(int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) {
+            b[i] = (byte) ((i * 31) % 17 + (i / 1000));
+        }
+        return b;
+    }
+
+    private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry e = new ZipEntry(name);
+        e.setMethod(ZipEntry.STORED);
+        e.setSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        e.setCrc(crc.getValue());
+        out.putNextEntry(e);
+        out.write(data);
+    }
+
+    private static void putDeflated(ZipOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+    }
+
+    // Reads the entry into a larger array than needed, which must be
+    // requested once with the size of the entry.
+    private static byte[] read(FileSystem fs, String name) throws IOException {
+        int[] calls = new int[1];
+        byte[][] dst = new byte[1][];
+        int size = ((ZipPath) fs.getPath(name)).readAllBytes(n -> {
+            calls[0]++;
+            dst[0] = new byte[n + 16];
+            return dst[0];
+        });
+        assertEquals(1, calls[0]);
+        assertEquals(dst[0].length - 16, size);
+        return Arrays.copyOf(dst[0], size);
+    }
+
+    public void testStoredAndDeflated() throws IOException {
+        Path jar = Files.createTempFile("read-all-bytes", ".jar");
+        byte[] small = "small".getBytes(StandardCharsets.UTF_8);
+        byte[] large = content(100000);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            putStored(out, "stored/small.bin", small);
+            putStored(out, "stored/large.bin", large);
+            putStored(out, "stored/empty.bin", new byte[0]);
+            putDeflated(out, "deflated/small.bin", small);
+            putDeflated(out, "deflated/large.bin", large);
+            putDeflated(out, "deflated/empty.bin", new byte[0]);
+        }
+        try (FileSystem fs = new ZipFileSystemProvider().newFileSystem(jar, new HashMap<String, Object>())) {
+            for (String dir : new String[] {"/stored/", "/deflated/"}) {
+                assertTrue(Arrays.equals(small, read(fs, dir + "small.bin")));
+                assertTrue(Arrays.equals(large, read(fs, dir + "large.bin")));
+                assertEquals(0, read(fs, dir + "empty.bin").length);
+                assertTrue(Arrays.equals(large, Files.readAllBytes(fs.getPath(dir + "large.bin"))));
+                assertTrue(Arrays.equals(large, ((ZipPath) fs.getPath(dir + "large.bin")).readAllBytes()));
+            }
+            try {
+                read(fs, "/missing.bin");
+                fail();
+            } catch (java.nio.file.NoSuchFileException ex) {
+                // expected
+            }
+        }
+    }
+
+    public void testCorruptEntry() throws IOException {
+        Path jar = Files.createTempFile("read-all-bytes", ".jar");
+        byte[] data = content(50000);
+        String name = "corrupt.bin";
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            putDeflated(out, name, data);
+            putDeflated(out, "good.bin", data);
+        }
+        // the compressed data of the first entry follows its LOC header
+        byte[] bytes = Files.readAllBytes(jar);
+        int start = 30 + name.length();
+        for (int i = start; i < start + 64; i++) {
+            bytes[i] = (byte) 0xff;
+        }
+        Files.write(jar, bytes);
+        try (FileSystem fs = new ZipFileSystemProvider().newFileSystem(jar, new HashMap<String, Object>())) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    read(fs, "/" + name);
+                    fail();
+                } catch (IOException ex) {
+                    // expected
+                }
+                // the inflater is reset after the failure
+                assertTrue(Arrays.equals(data, read(fs, "/good.bin")));
+            }
+        }
+    }
+
+    public void testConcurrentReads() throws Exception {
+        Path jar = Files.createTempFile("read-all-bytes", ".jar");
+        byte[][] data = new byte[4][];
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = content(20000 + i * 1000);
+                putDeflated(out, "deflated/" + i + ".bin", data[i]);
+            }
+        }
+        FileSystem fs = new ZipFileSystemProvider().newFileSystem(jar, new HashMap<String, Object>());
+        // the inflaters are cached per thread, also after the threads terminate
+        for (int round = 0; round < 2; round++) {
+            Thread[] threads = new Thread[4];
+            Throwable[] failure = new Throwable[1];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int n = 0; n < 50; n++) {
+                            int i = n % data.length;
+                            assertTrue(Arrays.equals(data[i], read(fs, "/deflated/" + i + ".bin")));
+                            assertTrue(Arrays.equals(data[i], Files.readAllBytes(fs.getPath("/deflated/" + i + ".bin"))));
+                        }
+                    } catch (Throwable ex) {
+                        synchronized (failure) {
+                            failure[0] = ex;
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            synchronized (failure) {
+                if (failure[0] != null) {
+                    throw new AssertionError(failure[0]);
+                }
+            }
+        }
+        assertTrue(Arrays.equals(data[0], read(fs, "/deflated/0.bin")));
+        fs.close();
+        try {
+            read(fs, "/deflated/0.bin");
+            fail();
+        } catch (java.nio.file.ClosedFileSystemException ex) {
+            // expected
+        }
+    }
+}
@@ -4,6 +4,7 @@
  */
 package com.itsaky.androidide.zipfs2;
 
+import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -18,4 +19,27 @@ public interface JarPackageProvider {
      *         The keys must be <code>openjdk.tools.javac.file.RelativePath.RelativeDirectory</code>
      */
     public Map<? extends Object, Path> getPackages(Path archivePath);
+
+    /**
+     * Get the package map from the given archive path, opened as the given file system.
+     * @return The cached package entries, the paths must belong to <code>fileSystem</code>.
+     *         Should return null or empty map to walk the archive file tree instead.
+     *         Defaults to {@link #getPackages(Path)}.
+     */
+    public default Map<? extends Object, Path> getPackages(Path archivePath, FileSystem fileSystem) {
+        return getPackages(archivePath);
+    }
+
+    /**
+     * Get the package map from the given archive path, opened as the given file system
+     * with the given <code>multi-release</code> setting, which may be null.
+     * The packages of a multi-release archive depend on this setting.
+     * @return The cached package entries, the paths must belong to <code>fileSystem</code>.
+     *         Should return null or empty map to walk the archive file tree instead.
+     *         Defaults to {@link #getPackages(Path, FileSystem)}.
+     */
+    public default Map<? extends Object, Path> getPackages(Path archivePath, FileSystem fileSystem,
+                                                           String multiRelease) {
+        return getPackages(archivePath, fileSystem);
+    }
 }
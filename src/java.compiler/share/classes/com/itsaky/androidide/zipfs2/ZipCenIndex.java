@@ -0,0 +1,147 @@
+package com.itsaky.androidide.zipfs2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * An on-disk index of the central directory (CEN) of a zip file.
+ * <p>
+ * The index records the END header values and the {@link ZipInodeTable}
+ * of the archive, so that reopening an unchanged archive needs neither the
+ * backwards scan for the END header nor the validation of every CEN header,
+ * and does not hash the names or build the directory tree again. Only the
+ * CEN bytes are read from the archive. It is keyed by the absolute path,
+ * size and last modified time of the archive and is rebuilt as soon as any
+ * of them changes.
+ * <p>
+ * The index is only a cache: any failure to read or write it, or a checksum
+ * mismatch, is ignored and the zip file system falls back to parsing the
+ * central directory.
+ */
+final class ZipCenIndex {
+
+    private static final int MAGIC = 0x5a43454e;    // "ZCEN"
+    private static final int VERSION = 2;
+
+    private final Path file;        // the index file
+    private final byte[] zipname;   // absolute path of the zip file
+    private final long size;        // size of the zip file
+    private final long mtime;       // last modified time of the zip file
+
+    private ZipCenIndex(Path file, byte[] zipname, long size, long mtime) {
+        this.file = file;
+        this.zipname = zipname;
+        this.size = size;
+        this.mtime = mtime;
+    }
+
+    // Returns the index of the specified zip file, stored in the directory
+    // named by dir (a Path or a String). Returns null if the attributes of
+    // the zip file can't be read.
+    static ZipCenIndex of(Object dir, Path zfpath) {
+        try {
+            Path indexDir = dir instanceof Path ? (Path) dir : Paths.get(dir.toString());
+            Path zip = zfpath.toAbsolutePath();
+            BasicFileAttributes attrs = Files.readAttributes(zip, BasicFileAttributes.class);
+            String zipname = zip.toString();
+            String fname = zip.getFileName() + "-"
+                    + Integer.toHexString(zipname.hashCode()) + ".cenidx";
+            return new ZipCenIndex(indexDir.resolve(fname),
+                    zipname.getBytes(StandardCharsets.UTF_8),
+                    attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException | RuntimeException x) {
+            return null;
+        }
+    }
+
+    // Reads the index into end and returns the buffer positioned at the
+    // inode table, or null if there is no index or it does not match the
+    // zip file.
+    ByteBuffer read(ZipFileSystem.END end) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer bb = ByteBuffer.wrap(bytes);
+            int length = bytes.length - 8;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            if (length < 0 || bb.getLong(length) != crc.getValue()) {
+                return null;
+            }
+            if (bb.getInt() != MAGIC || bb.getInt() != VERSION
+                    || bb.getLong() != size || bb.getLong() != mtime) {
+                return null;
+            }
+            byte[] name = new byte[bb.getInt()];
+            bb.get(name);
+            if (!Arrays.equals(name, zipname)) {
+                return null;
+            }
+            end.endpos = bb.getLong();
+            end.cenlen = bb.getLong();
+            end.cenoff = bb.getLong();
+            end.centot = bb.getInt();
+            end.endsub = bb.getInt();
+            end.comlen = bb.getInt();
+            bb.limit(length);
+            return bb;
+        } catch (IOException | RuntimeException x) {
+            return null;
+        }
+    }
+
+    // Writes the index for the END header end and the inode table.
+    void write(ZipFileSystem.END end, ZipInodeTable table) {
+        Path tmp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(mtime);
+            out.writeInt(zipname.length);
+            out.write(zipname);
+            out.writeLong(end.endpos);
+            out.writeLong(end.cenlen);
+            out.writeLong(end.cenoff);
+            out.writeInt(end.centot);
+            out.writeInt(end.endsub);
+            out.writeInt(end.comlen);
+            table.write(out);
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+
+            Path dir = file.getParent();
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), null);
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, file, REPLACE_EXISTING);
+            tmp = null;
+        } catch (IOException | RuntimeException x) {
+            // the index is a cache only, the next open rebuilds it
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException x) {
+                }
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
@@ -54,7 +55,9 @@ import java.util.*;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
+import java.util.function.IntFunction;
 import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -96,6 +99,8 @@ public class ZipFileSystem extends FileSystem {
     private final boolean forceEnd64;
     private final int defaultMethod;     // METHOD_STORED if "noCompression=true"
     // METHOD_DEFLATED otherwise
+    private final boolean compactIndex;  // use a read-only ZipInodeTable
+    private final ZipCenIndex cenIndex;  // on-disk ZipInodeTable if "cenIndexDir" is set
 
     protected ZipFileSystem(ZipFileSystemProvider provider,
             Path zfpath,
@@ -107,6 +112,10 @@ public class ZipFileSystem extends FileSystem {
         this.useTempFile = isTrue(env, "useTempFile");
         this.forceEnd64 = isTrue(env, "forceZIP64End");
         this.defaultMethod = isTrue(env, "noCompression") ? METHOD_STORED : METHOD_DEFLATED;
+        this.compactIndex = isTrue(env, "compactIndex");
+        // the index stores the inode table, it is ignored without one
+        this.cenIndex = compactIndex && env.get("cenIndexDir") != null
+                ? ZipCenIndex.of(env.get("cenIndexDir"), zfpath) : null;
         if (Files.notExists(zfpath)) {
             // create a new zip if not exists
             if (isTrue(env, "create")) {
@@ -121,7 +130,7 @@ public class ZipFileSystem extends FileSystem {
         zfpath.getFileSystem().provider().checkAccess(zfpath, AccessMode.READ);
         boolean writeable = AccessController.doPrivileged(
                 (PrivilegedAction<Boolean>) () -> Files.isWritable(zfpath));
-        this.readOnly = !writeable;
+        this.readOnly = !writeable || compactIndex;
         this.zc = ZipCoder.get(nameEncoding);
         this.rootdir = new ZipPath(this, new byte[]{'/'});
         this.ch = Files.newByteChannel(zfpath, READ);
@@ -300,10 +309,11 @@ public class ZipFileSystem extends FileSystem {
             endWrite();
         }
 
-        synchronized (inflaters) {
-            for (Inflater inf : inflaters) {
-                inf.end();
+        synchronized (inflaterCaches) {
+            for (InflaterCache cache : inflaterCaches) {
+                cache.end();
             }
+            inflaterCaches.clear();
         }
         synchronized (deflaters) {
             for (Deflater def : deflaters) {
@@ -315,6 +325,7 @@ public class ZipFileSystem extends FileSystem {
         try {
             // Clear the map so that its keys & values can be garbage collected
             inodes = null;
+            itable = null;
         } finally {
             endWrite();
         }
@@ -410,6 +421,9 @@ public class ZipFileSystem extends FileSystem {
         beginRead();
         try {
             ensureOpen();
+            if (itable != null) {
+                return itable.indexOf(path) >= 0;
+            }
             return getInode(path) != null;
         } finally {
             endRead();
@@ -420,6 +434,10 @@ public class ZipFileSystem extends FileSystem {
             throws IOException {
         beginRead();
         try {
+            if (itable != null) {
+                int n = itable.indexOf(path);
+                return n >= 0 && itable.isDir(n);
+            }
             IndexNode n = getInode(path);
             return n != null && n.isDir();
         } finally {
@@ -435,25 +453,24 @@ public class ZipFileSystem extends FileSystem {
         try {
             ensureOpen();
             byte[] path = dir.getResolvedPath();
+            List<Path> list = new ArrayList<>();
+            if (itable != null) {
+                int n = itable.indexOf(path);
+                if (n < 0) {
+                    throw new NotDirectoryException(getString(path));
+                }
+                for (int c = itable.child(n); c != -1; c = itable.sibling(c)) {
+                    addChild(list, dir, itable.name(c), filter);
+                }
+                return list.iterator();
+            }
             IndexNode inode = getInode(path);
             if (inode == null) {
                 throw new NotDirectoryException(getString(path));
             }
-            List<Path> list = new ArrayList<>();
             IndexNode child = inode.child;
             while (child != null) {
-                // (1) Assume each path from the zip file itself is "normalized"
-                // (2) IndexNode.name is absolute. see IndexNode(byte[],int,int)
-                // (3) If parent "dir" is relative when ZipDirectoryStream
-                //     is created, the returned child path needs to be relative
-                //     as well.
-                byte[] cname = child.name;
-                ZipPath childPath = new ZipPath(this, cname, true);
-                ZipPath childFileName = childPath.getFileName();
-                ZipPath zpath = dir.resolve(childFileName);
-                if (filter == null || filter.accept(zpath)) {
-                    list.add(zpath);
-                }
+                addChild(list, dir, child.name, filter);
                 child = child.sibling;
             }
             return list.iterator();
@@ -462,6 +479,22 @@ public class ZipFileSystem extends FileSystem {
         }
     }
 
+    private void addChild(List<Path> list, ZipPath dir, byte[] cname,
+            DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        // (1) Assume each path from the zip file itself is "normalized"
+        // (2) IndexNode.name is absolute. see IndexNode(byte[],int,int)
+        // (3) If parent "dir" is relative when ZipDirectoryStream
+        //     is created, the returned child path needs to be relative
+        //     as well.
+        ZipPath childPath = new ZipPath(this, cname, true);
+        ZipPath childFileName = childPath.getFileName();
+        ZipPath zpath = dir.resolve(childFileName);
+        if (filter == null || filter.accept(zpath)) {
+            list.add(zpath);
+        }
+    }
+
     void createDirectory(byte[] dir, FileAttribute<?>... attrs)
             throws IOException {
         checkWritable();
@@ -1007,7 +1040,7 @@ public class ZipFileSystem extends FileSystem {
         try {
             while ((path = getParent(path)) != null
                     && path != ROOTPATH) {
-                if (!inodes.containsKey(IndexNode.keyOf(path))) {
+                if (getInode(path) == null) {
                     throw new NoSuchFileException(getString(path));
                 }
             }
@@ -1065,6 +1098,8 @@ public class ZipFileSystem extends FileSystem {
 
     // name -> pos (in cen), IndexNode itself can be used as a "key"
     LinkedHashMap<IndexNode, IndexNode> inodes;
+    // replaces inodes if "compactIndex" is set, IndexNodes are created on demand
+    private ZipInodeTable itable;
 
     final byte[] getBytes(String name) {
         return zc.getBytes(name);
@@ -1092,6 +1127,18 @@ public class ZipFileSystem extends FileSystem {
 
     private final long readFullyAt(ByteBuffer bb, long pos)
             throws IOException {
+        return readAt(ch, bb, pos);
+    }
+
+    // Reads from the specified channel at the absolute position pos. A
+    // FileChannel supports positional reads that leave the channel position
+    // untouched, so concurrent readers don't need to serialize on the channel.
+    // Any other channel has to seek first, which requires the channel lock.
+    private static long readAt(SeekableByteChannel ch, ByteBuffer bb, long pos)
+            throws IOException {
+        if (ch instanceof FileChannel) {
+            return ((FileChannel) ch).read(bb, pos);
+        }
         synchronized (ch) {
             return ch.position(pos).read(bb);
         }
@@ -1178,6 +1225,12 @@ public class ZipFileSystem extends FileSystem {
     // then the error was a zip format error and zip->msg has the error text.
     // Always pass in -1 for knownTotal; it's used for a recursive call.
     private byte[] initCEN() throws IOException {
+        if (cenIndex != null) {
+            byte[] cen = initCENFromIndex();
+            if (cen != null) {
+                return cen;
+            }
+        }
         end = findEND();
         if (end.endpos == 0) {
             inodes = new LinkedHashMap<>(10);
@@ -1203,7 +1256,9 @@ public class ZipFileSystem extends FileSystem {
             zerror("read CEN tables failed");
         }
         // Iterate through the entries in the central directory
-        inodes = new LinkedHashMap<>(end.centot + 1);
+        inodes = compactIndex ? null : new LinkedHashMap<>(end.centot + 1);
+        int[] entries = compactIndex ? new int[end.centot] : null;
+        int count = 0;
         int pos = 0;
         int limit = cen.length - ENDHDR;
         while (pos < limit) {
@@ -1224,12 +1279,27 @@ public class ZipFileSystem extends FileSystem {
             if (pos + CENHDR + nlen > limit) {
                 zerror("invalid CEN header (bad header size)");
             }
-            IndexNode inode = new IndexNode(cen, pos, nlen);
-            inodes.put(inode, inode);
-            if (zc.isUTF8() || (flag & FLAG_USE_UTF8) != 0) {
-                checkUTF8(inode.name);
+            if (compactIndex) {
+                // the names are kept in the cen, check them in place
+                if (zc.isUTF8() || (flag & FLAG_USE_UTF8) != 0) {
+                    checkUTF8(cen, pos + CENHDR, nlen);
+                } else {
+                    checkEncoding(Arrays.copyOfRange(cen, pos + CENHDR, pos + CENHDR + nlen));
+                }
             } else {
-                checkEncoding(inode.name);
+                IndexNode inode = new IndexNode(cen, pos, nlen);
+                inodes.put(inode, inode);
+                if (zc.isUTF8() || (flag & FLAG_USE_UTF8) != 0) {
+                    checkUTF8(inode.name);
+                } else {
+                    checkEncoding(inode.name);
+                }
+            }
+            if (entries != null) {
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2 + 1);
+                }
+                entries[count++] = pos;
             }
             // skip ext and comment
             pos += (CENHDR + nlen + elen + clen);
@@ -1237,20 +1307,56 @@ public class ZipFileSystem extends FileSystem {
         if (pos + ENDHDR != cen.length) {
             zerror("invalid CEN header (bad header size)");
         }
-        buildNodeTree();
+        if (compactIndex) {
+            itable = new ZipInodeTable(cen, entries, count);
+            if (cenIndex != null) {
+                cenIndex.write(end, itable);
+            }
+        } else {
+            buildNodeTree();
+        }
+        return cen;
+    }
+
+    // Reads the CEN and the inode table from the on-disk CEN index. The CEN
+    // headers were validated when the index was written, so only the node
+    // positions are checked here. Returns null if there is no usable index,
+    // in which case the CEN has to be parsed from scratch.
+    private byte[] initCENFromIndex() throws IOException {
+        END iend = new END();
+        ByteBuffer table = cenIndex.read(iend);
+        if (table == null || iend.cenlen > iend.endpos) {
+            return null;
+        }
+        long cenpos = iend.endpos - iend.cenlen;
+        byte[] cen = new byte[(int) (iend.cenlen + ENDHDR)];
+        if (readFullyAt(cen, 0, cen.length, cenpos) != cen.length) {
+            return null;
+        }
+        try {
+            itable = ZipInodeTable.read(cen, table);
+        } catch (RuntimeException x) {
+            return null;
+        }
+        end = iend;
+        locpos = cenpos - iend.cenoff;
         return cen;
     }
 
     private final void checkUTF8(byte[] a) throws ZipException {
+        checkUTF8(a, 0, a.length);
+    }
+
+    private final void checkUTF8(byte[] a, int off, int len) throws ZipException {
         try {
-            int end = a.length;
-            int pos = 0;
+            int end = off + len;
+            int pos = off;
             while (pos < end) {
                 // ASCII fast-path: When checking that a range of bytes is
                 // valid UTF-8, we can avoid some allocation by skipping
                 // past bytes in the 0-127 range
                 if (a[pos] < 0) {
-                    zc.toString(Arrays.copyOfRange(a, pos, a.length));
+                    zc.toString(Arrays.copyOfRange(a, pos, end));
                     break;
                 }
                 pos++;
@@ -1541,6 +1647,9 @@ public class ZipFileSystem extends FileSystem {
         if (path == null) {
             throw new NullPointerException("path");
         }
+        if (itable != null) {
+            return itable.get(path);
+        }
         return inodes.get(IndexNode.keyOf(path));
     }
 
@@ -1765,6 +1874,119 @@ public class ZipFileSystem extends FileSystem {
         }
     }
 
+    // Reads the whole contents of the specified file entry into the array
+    // returned by buffer.apply(size), starting at index 0, and returns the
+    // size. Untouched entries are read with positional reads straight into
+    // that array, and deflated ones are inflated into it, so there is no
+    // intermediate stream or copy. Returns -1 if the entry is too large.
+    int readAllBytes(byte[] path, IntFunction<byte[]> buffer) throws IOException {
+        beginRead();
+        try {
+            ensureOpen();
+            Entry e = getEntry(path);
+            if (e == null) {
+                throw new NoSuchFileException(getString(path));
+            }
+            if (e.isDir()) {
+                throw new FileSystemException(getString(path), "is a directory", null);
+            }
+            if (e.size > Integer.MAX_VALUE - 8) {
+                return -1;
+            }
+            int size = (int) e.size;
+            if (e.type != Entry.CEN && e.type != Entry.COPY) {
+                byte[] dst = buffer.apply(size);
+                try (InputStream is = getInputStream(e)) {
+                    int n = 0;
+                    while (n < size) {
+                        int k = is.read(dst, n, size - n);
+                        if (k < 0) {
+                            throw new EOFException("Unexpected end of entry " + getString(path));
+                        }
+                        n += k;
+                    }
+                }
+                return size;
+            }
+
+            ThreadBuffers tb = threadBuffers.get();
+            long pos = locpos + e.locoff;
+            if (readFullyAt(tb.loc, 0, LOCHDR, pos) != LOCHDR) {
+                throw new ZipException("invalid loc " + pos + " for entry reading");
+            }
+            pos += LOCHDR + LOCNAM(tb.loc) + LOCEXT(tb.loc);
+            if (e.method == METHOD_STORED) {
+                if (e.csize != e.size) {
+                    throw new ZipException("invalid size for stored entry " + getString(path));
+                }
+                byte[] dst = buffer.apply(size);
+                ByteBuffer bb = ByteBuffer.wrap(dst, 0, size);
+                while (bb.hasRemaining()) {
+                    if (readFullyAt(bb, pos + bb.position()) <= 0) {
+                        throw new EOFException("Unexpected end of entry " + getString(path));
+                    }
+                }
+            } else if (e.method == METHOD_DEFLATED) {
+                byte[] dst = buffer.apply(size);
+                inflate(tb, pos, e.csize, dst, size);
+            } else {
+                throw new ZipException("invalid compression method");
+            }
+            return size;
+        } finally {
+            endRead();
+        }
+    }
+
+    // Inflates the csize bytes of compressed data at pos into dst.
+    private void inflate(ThreadBuffers tb, long pos, long csize, byte[] dst, int size)
+            throws IOException {
+        byte[] in = tb.input;
+        Inflater inf = getInflater();
+        try {
+            long rem = csize;
+            boolean eof = false;
+            int n = 0;
+            while (n < size) {
+                if (inf.needsInput()) {
+                    if (eof) {
+                        throw new EOFException("Unexpected end of ZLIB input stream");
+                    }
+                    int len;
+                    if (rem > 0) {
+                        len = (int) readFullyAt(in, 0, Math.min(in.length, rem), pos);
+                        if (len <= 0) {
+                            throw new EOFException("Unexpected end of ZLIB input stream");
+                        }
+                        pos += len;
+                        rem -= len;
+                    } else {
+                        // extra "dummy" byte required by the "nowrap" option,
+                        // see getInputStream()
+                        in[0] = 0;
+                        len = 1;
+                        eof = true;
+                    }
+                    inf.setInput(in, 0, len);
+                }
+                int k = inf.inflate(dst, n, size - n);
+                if (k == 0 && (inf.finished() || inf.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != size) {
+                throw new ZipException("invalid entry size (expected " + size
+                        + " but got " + n + " bytes)");
+            }
+        } catch (DataFormatException x) {
+            String s = x.getMessage();
+            throw new ZipException(s != null ? s : "Invalid ZLIB data format");
+        } finally {
+            releaseInflater(inf);
+        }
+    }
+
     private InputStream getInputStream(Entry e)
             throws IOException {
         InputStream eis;
@@ -1786,11 +2008,8 @@ public class ZipFileSystem extends FileSystem {
             eis = new EntryInputStream(e, ch);
         }
         if (e.method == METHOD_DEFLATED) {
-            // MORE: Compute good size for inflater stream:
-            long bufSize = e.size + 2; // Inflater likes a bit of slack
-            if (bufSize > 65536) {
-                bufSize = 8192;
-            }
+            // The buffer holds compressed data, so size it from csize
+            long bufSize = Math.min(e.csize + 2, 8192); // Inflater likes a bit of slack
             final long size = e.size;
             eis = new InflaterInputStream(eis, getInflater(), (int) bufSize) {
                 private boolean isClosed = false;
@@ -1882,9 +2101,7 @@ public class ZipFileSystem extends FileSystem {
             ByteBuffer bb = ByteBuffer.wrap(b);
             bb.position(off);
             bb.limit(off + len);
-            synchronized (zfch) {
-                n = zfch.position(pos).read(bb);
-            }
+            n = readAt(zfch, bb, pos);
             if (n > 0) {
                 pos += n;
                 rem -= n;
@@ -1942,35 +2159,101 @@ public class ZipFileSystem extends FileSystem {
         throw new ZipException(msg);
     }
 
-    // Maxmum number of de/inflater we cache
+    // Maxmum number of deflaters we cache
     private final int MAX_FLATER = 20;
-    // Collections2.listOf available Inflater objects for decompression
-    private final List<Inflater> inflaters = new ArrayList<>();
-
-    // Gets an inflater from the list of available inflaters or allocates
-    // a new one.
-    private Inflater getInflater() {
-        synchronized (inflaters) {
-            int size = inflaters.size();
-            if (size > 0) {
-                Inflater inf = inflaters.remove(size - 1);
+    // Maximum number of inflaters cached per thread
+    private static final int MAX_THREAD_INFLATERS = 2;
+
+    // Per thread read buffers, shared by all file systems used by the thread.
+    private static final class ThreadBuffers {
+        final byte[] loc = new byte[LOCHDR];
+        final byte[] input = new byte[8192];
+    }
+
+    private static final ThreadLocal<ThreadBuffers> threadBuffers =
+            ThreadLocal.withInitial(ThreadBuffers::new);
+
+    // Per thread cache of the inflaters of this file system. Only the owner
+    // thread and close() use a cache, so its lock is not contended and the
+    // threads don't compete for a shared list.
+    private static final class InflaterCache {
+        final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        final Inflater[] inflaters = new Inflater[MAX_THREAD_INFLATERS];
+        int count;
+        boolean ended;
+
+        synchronized Inflater get() {
+            if (count > 0) {
+                Inflater inf = inflaters[--count];
+                inflaters[count] = null;
                 return inf;
-            } else {
-                return new Inflater(true);
             }
+            return null;
+        }
+
+        synchronized boolean release(Inflater inf) {
+            if (ended || count == MAX_THREAD_INFLATERS) {
+                return false;
+            }
+            inf.reset();
+            inflaters[count++] = inf;
+            return true;
+        }
+
+        synchronized void end() {
+            ended = true;
+            while (count > 0) {
+                inflaters[--count].end();
+                inflaters[count] = null;
+            }
+        }
+
+        boolean isOwnerAlive() {
+            Thread t = owner.get();
+            return t != null && t.isAlive();
         }
     }
 
-    // Releases the specified inflater to the list of available inflaters.
-    private void releaseInflater(Inflater inf) {
-        synchronized (inflaters) {
-            if (inflaters.size() < MAX_FLATER) {
-                inf.reset();
-                inflaters.add(inf);
+    private final ThreadLocal<InflaterCache> inflaterCache =
+            ThreadLocal.withInitial(this::newInflaterCache);
+
+    // The inflater caches of the threads that used this file system, ended
+    // when the file system is closed
+    private final List<InflaterCache> inflaterCaches = new ArrayList<>();
+
+    private InflaterCache newInflaterCache() {
+        InflaterCache cache = new InflaterCache();
+        synchronized (inflaterCaches) {
+            // end the inflaters of the threads that have terminated
+            for (Iterator<InflaterCache> it = inflaterCaches.iterator(); it.hasNext(); ) {
+                InflaterCache c = it.next();
+                if (!c.isOwnerAlive()) {
+                    c.end();
+                    it.remove();
+                }
+            }
+            if (isOpen) {
+                inflaterCaches.add(cache);
             } else {
-                inf.end();
+                cache.end();
             }
         }
+        return cache;
+    }
+
+    // Gets an inflater from the cache of the current thread or allocates
+    // a new one.
+    private Inflater getInflater() {
+        Inflater inf = inflaterCache.get().get();
+        return inf != null ? inf : new Inflater(true);
+    }
+
+    // Releases the specified inflater to the cache of the current thread,
+    // or ends it if the cache is full or the file system is closed.
+    private void releaseInflater(Inflater inf) {
+        if (!inflaterCache.get().release(inf)) {
+            inf.end();
+        }
     }
 
     // Collections2.listOf available Deflater objects for compression
@@ -0,0 +1,363 @@
+package com.itsaky.androidide.zipfs2;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.itsaky.androidide.zipfs2.ZipFileSystem.IndexNode;
+
+import static com.itsaky.androidide.zipfs2.ZipConstants.*;
+
+/**
+ * A compact, read-only replacement for the {@code IndexNode} map of a
+ * {@link ZipFileSystem}.
+ * <p>
+ * Every node (CEN entry or pseudo directory) is an index into a set of
+ * parallel primitive arrays, and the nodes are found through an open
+ * addressing hash table of node indexes. Node names are not copied: they
+ * are slices of the CEN bytes (a pseudo directory shares the slice of one
+ * of its children), only names that need normalization are stored in a
+ * separate byte array. {@code IndexNode}s are created on demand by
+ * {@link #get(byte[])} and are not retained.
+ * <p>
+ * Node names are absolute, the leading '/' is implied and not part of the
+ * slice. Node 0 is the root directory.
+ * <p>
+ * The table can be written to a {@link ZipCenIndex} and read back for the
+ * same CEN, without hashing the names or building the tree again.
+ */
+final class ZipInodeTable {
+
+    private final byte[] cen;
+    private byte[] extra = new byte[0];  // normalized names not found in cen
+    private int extraLen;
+
+    private int size;        // number of nodes
+    private int[] noff;      // name offset in cen, or -(offset in extra) - 1
+    private int[] nlen;      // name length, without the leading '/'
+    private int[] hash;      // same as IndexNode.hashcode
+    private int[] pos;       // position in cen, -1 for pseudo directories
+    private int[] child;     // first child, -1 if none
+    private int[] sibling;   // next sibling, -1 if none
+    private final BitSet dirs = new BitSet();
+
+    private int[] table;     // node index + 1, 0 for an empty slot
+
+    private ZipInodeTable(byte[] cen) {
+        this.cen = cen;
+    }
+
+    // Builds the table from the first count CEN positions in entries. The
+    // CEN headers must have been validated already.
+    ZipInodeTable(byte[] cen, int[] entries, int count) {
+        this.cen = cen;
+        int cap = count + count / 4 + 16;
+        noff = new int[cap];
+        nlen = new int[cap];
+        hash = new int[cap];
+        pos = new int[cap];
+        child = new int[cap];
+        sibling = new int[cap];
+        table = new int[tableSizeFor(cap)];
+        add(0, 0, hashOf(cen, 0, 0), -1, true);   // root
+
+        for (int i = 0; i < count; i++) {
+            int cenpos = entries[i];
+            int off = cenpos + CENHDR;
+            int len = CENNAM(cen, cenpos);
+            boolean isdir = false;
+            if (len > 0 && cen[off + len - 1] == '/') {
+                isdir = true;
+                len--;
+            }
+            byte[] b = cen;
+            if (!isNormal(cen, off, len)) {
+                // let IndexNode do the normalization
+                IndexNode inode = new IndexNode(cen, cenpos, CENNAM(cen, cenpos));
+                isdir = inode.isdir;
+                off = appendExtra(inode.name, 1, inode.name.length - 1);
+                len = inode.name.length - 1;
+                b = extra;
+            }
+            int h = hashOf(b, off, len);
+            int ref = b == cen ? off : -off - 1;
+            int n = find(b, off, len, h);
+            if (n == 0) {
+                pos[0] = cenpos;
+            } else if (n > 0) {
+                // a duplicate entry replaces the earlier one
+                pos[n] = cenpos;
+                dirs.set(n, isdir);
+            } else {
+                add(ref, len, h, cenpos, isdir);
+            }
+        }
+        buildTree();
+    }
+
+    // Links every node to its parent, adding the missing pseudo directories.
+    private void buildTree() {
+        int last = size;
+        for (int i = 1; i < last; i++) {
+            int node = i;
+            while (true) {
+                byte[] b = bytes(node);
+                int off = offset(node);
+                int plen = nlen[node] - 1;
+                while (plen > 0 && b[off + plen] != '/') {
+                    plen--;
+                }
+                if (plen <= 0) {    // parent is root
+                    link(0, node);
+                    break;
+                }
+                int h = hashOf(b, off, plen);
+                int parent = find(b, off, plen, h);
+                if (parent >= 0) {
+                    link(parent, node);
+                    break;
+                }
+                // add new pseudo directory entry
+                parent = add(noff[node], plen, h, -1, true);
+                link(parent, node);
+                node = parent;
+            }
+        }
+    }
+
+    // Writes the nodes, to be read back by read() for the same CEN.
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(extraLen);
+        out.write(extra, 0, extraLen);
+        for (int[] a : new int[][] {noff, nlen, hash, pos, child, sibling}) {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(a[i]);
+            }
+        }
+        long[] bits = dirs.toLongArray();
+        out.writeInt(bits.length);
+        for (long l : bits) {
+            out.writeLong(l);
+        }
+        out.writeInt(table.length);
+        for (int t : table) {
+            out.writeInt(t);
+        }
+    }
+
+    // Reads the nodes written by write() for the CEN cen. Throws an
+    // IllegalArgumentException, or another RuntimeException, if the nodes
+    // do not fit in cen.
+    static ZipInodeTable read(byte[] cen, ByteBuffer bb) {
+        ZipInodeTable t = new ZipInodeTable(cen);
+        int size = bb.getInt();
+        t.extraLen = bb.getInt();
+        t.extra = new byte[t.extraLen];
+        bb.get(t.extra);
+        t.size = size;
+        t.noff = readInts(bb, size);
+        t.nlen = readInts(bb, size);
+        t.hash = readInts(bb, size);
+        t.pos = readInts(bb, size);
+        t.child = readInts(bb, size);
+        t.sibling = readInts(bb, size);
+        long[] bits = new long[bb.getInt()];
+        bb.asLongBuffer().get(bits);
+        bb.position(bb.position() + bits.length * 8);
+        t.dirs.or(BitSet.valueOf(bits));
+        int[] table = readInts(bb, bb.getInt());
+        t.table = table;
+        check(size > 0 && Integer.bitCount(table.length) == 1 && table.length >= size * 2);
+        for (int n = 0; n < size; n++) {
+            int off = t.offset(n);
+            check(t.nlen[n] >= 0 && off <= t.bytes(n).length - t.nlen[n]);
+            check(t.pos[n] == -1 || t.pos[n] >= 0 && t.pos[n] <= cen.length - CENHDR
+                    && cenSigAt(cen, t.pos[n]));
+            check(t.child[n] >= -1 && t.child[n] < size);
+            check(t.sibling[n] >= -1 && t.sibling[n] < size);
+        }
+        for (int i : table) {
+            check(i >= 0 && i <= size);
+        }
+        return t;
+    }
+
+    private static int[] readInts(ByteBuffer bb, int count) {
+        int[] a = new int[count];
+        bb.asIntBuffer().get(a);
+        bb.position(bb.position() + count * 4);
+        return a;
+    }
+
+    private static void check(boolean valid) {
+        if (!valid) {
+            throw new IllegalArgumentException("inode table does not match the CEN");
+        }
+    }
+
+    // Returns the node of the specified absolute path, or -1.
+    int indexOf(byte[] path) {
+        if (path.length == 0 || path[0] != '/') {
+            return -1;
+        }
+        return find(path, 1, path.length - 1, Arrays.hashCode(path));
+    }
+
+    // Returns a new IndexNode for the specified absolute path, or null.
+    IndexNode get(byte[] path) {
+        int n = indexOf(path);
+        if (n < 0) {
+            return null;
+        }
+        IndexNode inode = new IndexNode(name(n), pos[n]);
+        inode.isdir = dirs.get(n);
+        return inode;
+    }
+
+    // Returns the absolute name of node n.
+    byte[] name(int n) {
+        byte[] name = new byte[nlen[n] + 1];
+        name[0] = '/';
+        System.arraycopy(bytes(n), offset(n), name, 1, nlen[n]);
+        return name;
+    }
+
+    boolean isDir(int n) {
+        return dirs.get(n);
+    }
+
+    int child(int n) {
+        return child[n];
+    }
+
+    int sibling(int n) {
+        return sibling[n];
+    }
+
+    private byte[] bytes(int n) {
+        return noff[n] >= 0 ? cen : extra;
+    }
+
+    private int offset(int n) {
+        return noff[n] >= 0 ? noff[n] : -noff[n] - 1;
+    }
+
+    private void link(int parent, int n) {
+        sibling[n] = child[parent];
+        child[parent] = n;
+    }
+
+    private int find(byte[] b, int off, int len, int h) {
+        int mask = table.length - 1;
+        for (int i = spread(h) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int n = table[i] - 1;
+            if (hash[n] == h && nlen[n] == len
+                    && rangeEquals(bytes(n), offset(n), b, off, len)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    private int add(int ref, int len, int h, int cenpos, boolean isdir) {
+        if (size == noff.length) {
+            int cap = size + (size >> 1);
+            noff = Arrays.copyOf(noff, cap);
+            nlen = Arrays.copyOf(nlen, cap);
+            hash = Arrays.copyOf(hash, cap);
+            pos = Arrays.copyOf(pos, cap);
+            child = Arrays.copyOf(child, cap);
+            sibling = Arrays.copyOf(sibling, cap);
+        }
+        int n = size++;
+        noff[n] = ref;
+        nlen[n] = len;
+        hash[n] = h;
+        pos[n] = cenpos;
+        child[n] = -1;
+        sibling[n] = -1;
+        dirs.set(n, isdir);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(n);
+        }
+        return n;
+    }
+
+    private void insert(int n) {
+        int mask = table.length - 1;
+        int i = spread(hash[n]) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = n + 1;
+    }
+
+    private void rehash(int length) {
+        table = new int[length];
+        for (int n = 0; n < size; n++) {
+            insert(n);
+        }
+    }
+
+    private int appendExtra(byte[] b, int off, int len) {
+        if (extraLen + len > extra.length) {
+            extra = Arrays.copyOf(extra, Math.max(extra.length * 2, extraLen + len));
+        }
+        System.arraycopy(b, off, extra, extraLen, len);
+        extraLen += len;
+        return extraLen - len;
+    }
+
+    // Returns true if the name in b is the same after IndexNode normalization:
+    // no leading or trailing '/' and no "//".
+    private static boolean isNormal(byte[] b, int off, int len) {
+        if (len == 0) {
+            return true;
+        }
+        if (b[off] == '/' || b[off + len - 1] == '/') {
+            return false;
+        }
+        for (int i = off + 1; i < off + len; i++) {
+            if (b[i] == '/' && b[i - 1] == '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The hash of the absolute name, calculated the same way as
+    // Arrays.hashCode() does for the name with its leading '/'.
+    private static int hashOf(byte[] b, int off, int len) {
+        int result = 31 + '/';
+        for (int i = off; i < off + len; i++) {
+            result = 31 * result + b[i];
+        }
+        return result;
+    }
+
+    private static boolean rangeEquals(byte[] a, int aoff, byte[] b, int boff, int len) {
+        for (int i = 0; i < len; i++) {
+            if (a[aoff + i] != b[boff + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = 16;
+        while (size < n * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
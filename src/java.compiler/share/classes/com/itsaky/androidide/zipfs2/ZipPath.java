@@ -43,6 +43,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
@@ -702,6 +703,35 @@ public class ZipPath implements Path {
         };
     }
 
+    /**
+     * Reads all the bytes of this file into an array supplied by the caller.
+     * {@code buffer} is called once with the size of the file and must
+     * return an array of at least that length; the file is read into it
+     * starting at index 0. Compressed entries are inflated straight into the
+     * array, without an intermediate stream or copy.
+     *
+     * @return the size of the file, or -1 if the file is larger than the
+     *         maximum array size, in which case {@code buffer} is not called
+     * @throws IOException if the file can't be read
+     */
+    public int readAllBytes(IntFunction<byte[]> buffer) throws IOException {
+        return zfs.readAllBytes(getResolvedPath(), buffer);
+    }
+
+    /**
+     * Reads all the bytes of this file, see {@link #readAllBytes(IntFunction)}.
+     *
+     * @throws OutOfMemoryError if the file is larger than the maximum
+     *         array size
+     */
+    public byte[] readAllBytes() throws IOException {
+        byte[][] bytes = new byte[1][];
+        if (readAllBytes(size -> bytes[0] = new byte[size]) < 0) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        return bytes[0];
+    }
+
     /////////////////////////////////////////////////////////////////////
 
     void createDirectory(FileAttribute<?>... attrs)
@@ -288,6 +288,42 @@ public class JavacTaskImpl extends BasicJavacTask {
         return trees;
     }
 
+    /**
+     * Parse a compilation unit returned by {@link #parse} again after an edit
+     * of its source. If the edit is confined to the body of a method, only
+     * that body is parsed: the unit is updated in place, and the positions of
+     * the trees after the edit are shifted. Otherwise the whole content is
+     * parsed and a new compilation unit is returned, which replaces the given
+     * one in this task.
+     *
+     * @param unit the compilation unit parsed from the source before the edit
+     * @param content the source after the edit
+     * @param offset the offset of the edit
+     * @param removedLength the number of characters removed at offset
+     * @param insertedLength the number of characters inserted at offset
+     * @return the compilation unit for the given content
+     * @throws IllegalStateException if the unit was not parsed by this task,
+     *         or was entered already
+     */
+    public CompilationUnitTree reparse(CompilationUnitTree unit, CharSequence content,
+                                       int offset, int removedLength, int insertedLength) {
+        prepareCompiler(true);
+        JCCompilationUnit toplevel = (JCCompilationUnit) unit;
+        JavaFileObject file = toplevel.getSourceFile();
+        if (notYetEntered == null || notYetEntered.get(file) != toplevel) {
+            // the trees of entered units are referenced by symbols
+            throw new IllegalStateException("not a parsed and not yet entered unit: " + file);
+        }
+        try {
+            JCCompilationUnit result =
+                    compiler.reparse(toplevel, content, offset, removedLength, insertedLength);
+            notYetEntered.put(file, result);
+            return result;
+        } finally {
+            compiler.log.flush();
+        }
+    }
+
     private CompilationUnitTree getTreeForFile(final JavaFileObject file) {
         assert file != null;
         Enter enter = Enter.instance(context);
@@ -496,6 +532,33 @@ public class JavacTaskImpl extends BasicJavacTask {
         return List.nil();
     }
 
+    // AndroidIDE changed: Reports the diagnostics without attributing the
+    // unchanged method bodies again.
+    /**
+     * Complete all analysis, only to report the diagnostics. In a context
+     * reused by {@link JavacTaskPool} that stops after flow analysis, the
+     * method bodies that did not change since the previous call in the same
+     * context are not analyzed again: their diagnostics are reported again
+     * instead, see {@link MethodAttributionCache}.
+     *
+     * <p>The trees are left incomplete: the nodes inside a reused body have
+     * no symbol and no type, so {@code Trees.getElement} and
+     * {@code Trees.getTypeMirror} return null for them, and the task
+     * listeners see the reused bodies unattributed. Use {@link #analyze()}
+     * when the trees are needed.
+     *
+     * @return the elements that were analyzed
+     */
+    public Iterable<? extends Element> analyzeDiagnostics() {
+        MethodAttributionCache cache = MethodAttributionCache.instance(context);
+        cache.begin();
+        try {
+            return analyze();
+        } finally {
+            cache.end();
+        }
+    }
+
     /**
      * Complete all analysis on the given classes.
      * This can be used to ensure that all compile time errors are reported.
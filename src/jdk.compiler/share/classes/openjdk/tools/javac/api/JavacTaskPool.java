@@ -30,12 +30,10 @@ import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -66,10 +64,13 @@ import openjdk.tools.javac.comp.Annotate;
 import openjdk.tools.javac.comp.Check;
 import openjdk.tools.javac.comp.CompileStates;
 import openjdk.tools.javac.comp.Enter;
+import openjdk.tools.javac.comp.MethodAttributionCache;
 import openjdk.tools.javac.comp.Modules;
+import openjdk.tools.javac.jvm.ClassFilePrefetcher;
 import openjdk.tools.javac.main.Arguments;
 import openjdk.tools.javac.main.JavaCompiler;
 import openjdk.tools.javac.model.JavacElements;
+import openjdk.tools.javac.parser.ParallelParser;
 import openjdk.tools.javac.platform.PlatformDescription;
 import openjdk.tools.javac.tree.JCTree.JCClassDecl;
 import openjdk.tools.javac.tree.JCTree.LetExpr;
@@ -107,23 +108,39 @@ import openjdk.tools.javac.util.Options;
 public class JavacTaskPool {
 
     private static final JavacTool systemProvider = JavacTool.create();
-    private static final Queue<ReusableContext> EMPTY_QUEUE = new ArrayDeque<>(0);
 
     private final int maxPoolSize;
-    private final Map<List<String>, Queue<ReusableContext>> options2Contexts = new HashMap<>();
-    private int id;
-
-    private int statReused = 0;
-    private int statNew = 0;
-    private int statPolluted = 0;
-    private int statRemoved = 0;
+    private final int maxPerOptions;
+    // AndroidIDE changed: The idle contexts are indexed by their options and
+    // linked in least recently used order, so that all operations done while
+    // holding the pool lock take constant time.
+    private final Map<List<String>, ArrayDeque<ReusableContext>> options2Contexts = new HashMap<>();
+    /** The least recently returned idle context, and the most recently returned one. */
+    private ReusableContext lruHead, lruTail;
+    private int size;
+
+    private long statReused = 0;
+    private long statNew = 0;
+    private long statPolluted = 0;
+    private long statRemoved = 0;
 
     /**Creates the pool.
      *
      * @param maxPoolSize maximum number of tasks/context that will be kept in the pool.
      */
     public JavacTaskPool(int maxPoolSize) {
+        this(maxPoolSize, maxPoolSize);
+    }
+
+    /**Creates the pool.
+     *
+     * @param maxPoolSize maximum number of tasks/context that will be kept in the pool.
+     * @param maxPerOptions maximum number of tasks/context with the same options that will be
+     * kept in the pool.
+     */
+    public JavacTaskPool(int maxPoolSize, int maxPerOptions) {
         this.maxPoolSize = maxPoolSize;
+        this.maxPerOptions = maxPerOptions;
     }
 
     /**Creates a new task as if by {@link jdkx.tools.JavaCompiler#getTask} and runs the provided
@@ -166,18 +183,26 @@ public class JavacTaskPool {
         ReusableContext ctx;
 
         synchronized (this) {
-            Queue<ReusableContext> cached =
-                    options2Contexts.getOrDefault(opts, EMPTY_QUEUE);
+            ArrayDeque<ReusableContext> cached = options2Contexts.get(opts);
 
-            if (cached.isEmpty()) {
-                ctx = new ReusableContext(opts);
+            if (cached == null) {
+                ctx = null;
                 statNew++;
             } else {
-                ctx = cached.remove();
+                //the most recently used context is the one most likely to be warm
+                ctx = cached.removeLast();
+                if (cached.isEmpty()) {
+                    options2Contexts.remove(opts);
+                }
+                unlink(ctx);
                 statReused++;
             }
         }
 
+        if (ctx == null) {
+            ctx = new ReusableContext(opts);
+        }
+
         ctx.useCount++;
 
         JavacTaskImpl task =
@@ -195,39 +220,154 @@ public class JavacTaskPool {
         //not returning the context to the pool if task crashes with an exception
         //the task/context may be in a broken state
         ctx.clear();
+        // AndroidIDE changed: The contexts that are not kept are closed.
+        List<ReusableContext> removed = new ArrayList<>();
         if (ctx.polluted) {
-            statPolluted++;
+            synchronized (this) {
+                statPolluted++;
+            }
+            removed.add(ctx);
         } else {
             task.cleanup();
             synchronized (this) {
-                while (cacheSize() + 1 > maxPoolSize) {
-                    ReusableContext toRemove =
-                            options2Contexts.values()
-                                            .stream()
-                                            .flatMap(Collection::stream)
-                                            .sorted((c1, c2) -> c1.timeStamp < c2.timeStamp ? -1 : 1)
-                                            .findFirst()
-                                            .get();
-                    options2Contexts.get(toRemove.arguments).remove(toRemove);
+                ArrayDeque<ReusableContext> cached =
+                        options2Contexts.computeIfAbsent(ctx.arguments, x -> new ArrayDeque<>());
+                while (!cached.isEmpty() && cached.size() + 1 > maxPerOptions) {
+                    ReusableContext toRemove = cached.removeFirst();
+                    unlink(toRemove);
+                    removed.add(toRemove);
                     statRemoved++;
                 }
-                options2Contexts.computeIfAbsent(ctx.arguments, x -> new ArrayDeque<>()).add(ctx);
-                ctx.timeStamp = id++;
+                while (lruHead != null && size + 1 > maxPoolSize) {
+                    ReusableContext toRemove = lruHead;
+                    unlink(toRemove);
+                    removed.add(toRemove);
+                    //the least recently used context is the oldest one with its options
+                    ArrayDeque<ReusableContext> queue = options2Contexts.get(toRemove.arguments);
+                    queue.removeFirst();
+                    if (queue.isEmpty() && queue != cached) {
+                        options2Contexts.remove(toRemove.arguments);
+                    }
+                    statRemoved++;
+                }
+                if (maxPoolSize > 0 && maxPerOptions > 0) {
+                    cached.addLast(ctx);
+                    link(ctx);
+                } else {
+                    if (cached.isEmpty()) {
+                        options2Contexts.remove(ctx.arguments);
+                    }
+                    removed.add(ctx);
+                }
             }
         }
+        for (ReusableContext c : removed) {
+            c.close();
+        }
 
         return result;
     }
     //where:
-        private long cacheSize() {
-            return options2Contexts.values().stream().flatMap(Collection::stream).count();
+        private void link(ReusableContext ctx) {
+            ctx.lruPrev = lruTail;
+            ctx.lruNext = null;
+            if (lruTail != null) {
+                lruTail.lruNext = ctx;
+            } else {
+                lruHead = ctx;
+            }
+            lruTail = ctx;
+            size++;
+        }
+
+        private void unlink(ReusableContext ctx) {
+            if (ctx.lruPrev != null) {
+                ctx.lruPrev.lruNext = ctx.lruNext;
+            } else {
+                lruHead = ctx.lruNext;
+            }
+            if (ctx.lruNext != null) {
+                ctx.lruNext.lruPrev = ctx.lruPrev;
+            } else {
+                lruTail = ctx.lruPrev;
+            }
+            ctx.lruPrev = ctx.lruNext = null;
+            size--;
         }
 
+    /**
+     * Get a snapshot of the statistics of this pool.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(statReused, statNew, statPolluted, statRemoved,
+                              size, options2Contexts.size());
+    }
+
     public void printStatistics(PrintStream out) {
-        out.println(statReused + " reused Contexts");
-        out.println(statNew + " newly created Contexts");
-        out.println(statPolluted + " polluted Contexts");
-        out.println(statRemoved + " removed Contexts");
+        Statistics stats = getStatistics();
+        out.println(stats.getHits() + " reused Contexts");
+        out.println(stats.getMisses() + " newly created Contexts");
+        out.println(stats.getPolluted() + " polluted Contexts");
+        out.println(stats.getEvictions() + " removed Contexts");
+    }
+
+    /**
+     * The usage statistics of a {@link JavacTaskPool}.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long polluted;
+        private final long evictions;
+        private final int size;
+        private final int optionsCount;
+
+        Statistics(long hits, long misses, long polluted, long evictions,
+                   int size, int optionsCount) {
+            this.hits = hits;
+            this.misses = misses;
+            this.polluted = polluted;
+            this.evictions = evictions;
+            this.size = size;
+            this.optionsCount = optionsCount;
+        }
+
+        /** The number of tasks that reused a pooled context. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** The number of tasks that needed a new context. */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** The number of contexts that were not returned to the pool as they were polluted. */
+        public long getPolluted() {
+            return polluted;
+        }
+
+        /** The number of contexts removed from the pool to stay within its limits. */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** The number of contexts in the pool. */
+        public int getSize() {
+            return size;
+        }
+
+        /** The number of distinct options of the contexts in the pool. */
+        public int getOptionsCount() {
+            return optionsCount;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", polluted=" + polluted
+                    + ", evictions=" + evictions + ", size=" + size
+                    + ", options=" + optionsCount;
+        }
     }
 
     public interface Worker<Z> {
@@ -242,7 +382,7 @@ public class JavacTaskPool {
         boolean polluted = false;
 
         int useCount;
-        long timeStamp;
+        ReusableContext lruPrev, lruNext;
 
         ReusableContext(List<String> arguments) {
             super();
@@ -277,6 +417,7 @@ public class JavacTaskPool {
                 Modules.instance(this).newRound();
                 Annotate.instance(this).newRound();
                 CompileStates.instance(this).clear();
+                MethodAttributionCache.instance(this).newRound();
                 MultiTaskListener.instance(this).clear();
                 Options.instance(this).clear();
 
@@ -287,6 +428,16 @@ public class JavacTaskPool {
             }
         }
 
+        /**
+         * Release the resources of a context that is not used anymore.
+         */
+        void close() {
+            if (ht.get(Log.logKey) instanceof ReusableLog) {
+                ClassFilePrefetcher.instance(this).close();
+                ParallelParser.instance(this).close();
+            }
+        }
+
         /**
          * This scanner detects as to whether the shared context has been polluted. This happens
          * whenever a compiled program redefines a core class (in 'java.*' package) or when
@@ -172,6 +172,13 @@ public abstract class Scope {
         void symbolRemoved(Symbol sym, Scope s);
     }
 
+    /** Enters the symbols of a lazily filled scope, see
+     *  {@link WriteableScope#create(Symbol, ScopeFiller)}.
+     */
+    public interface ScopeFiller {
+        void fill(WriteableScope scope);
+    }
+
     /**
      * A list of scope listeners; listeners are stored in weak references, to avoid memory leaks.
      * When the listener list is scanned (upon notification), elements corresponding to GC-ed
@@ -181,8 +188,26 @@ public abstract class Scope {
 
         List<WeakReference<ScopeListener>> listeners = List.nil();
 
+        // AndroidIDE changed: The size of the list, and the size at which the
+        // references to collected listeners are dropped when one is added.
+        private int size;
+        private int purgeSize = 16;
+
         void add(ScopeListener sl) {
             listeners = listeners.prepend(new WeakReference<>(sl));
+            // AndroidIDE changed: Drop collected listeners of a scope that
+            // does not change, e.g. of the members of java.lang.Object.
+            if (++size > purgeSize) {
+                ListBuffer<WeakReference<ScopeListener>> newListeners = new ListBuffer<>();
+                for (WeakReference<ScopeListener> wsl : listeners) {
+                    if (wsl.get() != null) {
+                        newListeners.add(wsl);
+                    }
+                }
+                listeners = newListeners.toList();
+                size = newListeners.size();
+                purgeSize = Math.max(16, size * 2);
+            }
         }
 
         void symbolAdded(Symbol sym, Scope scope) {
@@ -207,6 +232,68 @@ public abstract class Scope {
                 }
             }
             listeners = newListeners.toList();
+            size = newListeners.size();
+        }
+    }
+
+    /** AndroidIDE changed: A bloom filter of the names of the symbols in some
+     *  scopes, to skip lookups that cannot find anything. Symbols entered
+     *  into the scopes later are added to it; removed symbols are not taken
+     *  out, so it only has false positives.
+     */
+    public static class NameFilter implements ScopeListener {
+
+        /** The bits of the filter, about eight per name. */
+        private final long[] bits;
+
+        public NameFilter(Iterable<? extends Scope> scopes) {
+            ListBuffer<Name> names = new ListBuffer<>();
+            for (Scope s : scopes) {
+                for (Symbol sym : s.getSymbols(NON_RECURSIVE)) {
+                    names.add(sym.name);
+                }
+                s.listeners.add(this);
+            }
+            bits = new long[Integer.highestOneBit(Math.max(names.size(), 8)) / 4];
+            for (Name name : names) {
+                add(name);
+            }
+        }
+
+        private void add(Name name) {
+            long h = name.hashCode() * 0x9E3779B97F4A7C15L;
+            int mask = bits.length * 64 - 1;
+            for (int i = 0; i < 3; i++, h >>>= 21) {
+                int bit = (int) h & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        /** May one of the scopes have a symbol with the given name?
+         */
+        public boolean mayContain(Name name) {
+            long h = name.hashCode() * 0x9E3779B97F4A7C15L;
+            int mask = bits.length * 64 - 1;
+            for (int i = 0; i < 3; i++, h >>>= 21) {
+                int bit = (int) h & mask;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void symbolAdded(Symbol sym, Scope s) {
+            if (sym != null) {
+                add(sym.name);
+            } else {
+                Arrays.fill(bits, -1L);
+            }
+        }
+
+        @Override
+        public void symbolRemoved(Symbol sym, Scope s) {
         }
     }
 
@@ -269,6 +356,13 @@ public abstract class Scope {
             return new ScopeImpl(owner);
         }
 
+        /** Create a new WriteableScope whose symbols are entered by the given
+         *  filler when the scope is first used.
+         */
+        public static WriteableScope create(Symbol owner, ScopeFiller filler) {
+            return new LazyScope(owner, filler);
+        }
+
     }
 
     private static class ScopeImpl extends WriteableScope {
@@ -688,6 +782,67 @@ public abstract class Scope {
         }
     }
 
+    /** A scope that is filled on first use: the first lookup or iteration
+     *  runs the filler, which enters the initial symbols. Symbols entered
+     *  before that don't cause the scope to be filled.
+     */
+    private static class LazyScope extends ScopeImpl {
+
+        private ScopeFiller filler;
+
+        LazyScope(Symbol owner, ScopeFiller filler) {
+            super(owner);
+            this.filler = filler;
+        }
+
+        private void fill() {
+            ScopeFiller f = filler;
+            if (f == null) {
+                return;
+            }
+            filler = null;
+            // the symbols were in the scope all along as far as listeners
+            // are concerned, so they are not notified
+            ScopeListenerList prevListeners = listeners;
+            listeners = new ScopeListenerList();
+            try {
+                f.fill(this);
+            } finally {
+                for (WeakReference<ScopeListener> wsl : listeners.listeners) {
+                    ScopeListener sl = wsl.get();
+                    if (sl != null) {
+                        prevListeners.add(sl);
+                    }
+                }
+                listeners = prevListeners;
+            }
+        }
+
+        @Override
+        protected Entry lookup(Name name, Predicate<Symbol> sf) {
+            fill();
+            return super.lookup(name, sf);
+        }
+
+        @Override
+        public Iterable<Symbol> getSymbols(Predicate<Symbol> sf, LookupKind lookupKind) {
+            fill();
+            return super.getSymbols(sf, lookupKind);
+        }
+
+        @Override
+        public WriteableScope dup(Symbol newOwner) {
+            fill();
+            return super.dup(newOwner);
+        }
+
+        @Override
+        public WriteableScope dupUnshared(Symbol newOwner) {
+            fill();
+            return super.dupUnshared(newOwner);
+        }
+    }
+
     /** A class for scope entries.
      */
     private static class Entry {
@@ -876,6 +1031,30 @@ public abstract class Scope {
 
     public static class StarImportScope extends ImportScope {
 
+        // AndroidIDE changed: With -XDindexStarImports, a lookup asks only the
+        // sub scopes that may contain the name, as found in an index of the
+        // names of the imported packages. Imports of the members of classes
+        // are not indexed and are always asked. The index maps a name to the
+        // sub scopes to ask, in the order of the sub scopes, which still look
+        // up, filter and complete the symbols. It is built on the first lookup,
+        // and dropped when a scope is imported, when this scope is finalized,
+        // or when the members of an imported package change.
+        private boolean indexed;
+        private Map<Name, Scope[]> index;
+        private Scope[] unindexed;
+        private int indexMark;
+        private final ScopeListener indexInvalidator = new ScopeListener() {
+            @Override
+            public void symbolAdded(Symbol sym, Scope s) {
+                index = null;
+            }
+
+            @Override
+            public void symbolRemoved(Symbol sym, Scope s) {
+                index = null;
+            }
+        };
+
         public StarImportScope(Symbol owner) {
             super(owner);
         }
@@ -891,6 +1070,7 @@ public abstract class Scope {
                     fis.imp.staticImport == imp.staticImport)
                     return ; //avoid entering the same scope twice
             }
+            indexed |= types.indexStarImports;
             prependSubScope(new FilterImportScope(types, origin, null, filter, imp, cfHandler));
         }
 
@@ -898,6 +1078,74 @@ public abstract class Scope {
             return subScopes.nonEmpty();
         }
 
+        @Override
+        public void finalizeScope() {
+            super.finalizeScope();
+            index = null;
+        }
+
+        @Override
+        public Iterable<Symbol> getSymbolsByName(final Name name,
+                                                 final Predicate<Symbol> sf,
+                                                 final LookupKind lookupKind) {
+            if (!indexed)
+                return super.getSymbolsByName(name, sf, lookupKind);
+            return () -> Iterators.createCompoundIterator(Arrays.asList(scopesFor(name)),
+                                                          scope -> scope.getSymbolsByName(name,
+                                                                                          sf,
+                                                                                          lookupKind)
+                                                                        .iterator());
+        }
+
+        private Scope[] scopesFor(Name name) {
+            if (index == null || indexMark != getMark())
+                buildIndex();
+            Scope[] scopes = index.get(name);
+            return scopes != null ? scopes : unindexed;
+        }
+
+        private void buildIndex() {
+            Scope[] all = subScopes.toArray(new Scope[subScopes.size()]);
+            long indexedMask = 0;
+            Map<Name, Long> masks = new HashMap<>();
+            for (int i = 0; i < all.length && i < Long.SIZE; i++) {
+                if (!(all[i] instanceof FilterImportScope))
+                    continue;
+                FilterImportScope fis = (FilterImportScope) all[i];
+                if (fis.isStaticallyImported() || fis.origin.owner.kind != Kind.PCK)
+                    continue;
+                if (!fis.invalidatesIndex) {
+                    fis.origin.listeners.add(indexInvalidator);
+                    fis.invalidatesIndex = true;
+                }
+                long bit = 1L << i;
+                indexedMask |= bit;
+                for (Symbol sym : fis.origin.getSymbols())
+                    masks.merge(sym.name, bit, (a, b) -> a | b);
+            }
+            // names found in the same packages share their array
+            Map<Long, Scope[]> selections = new HashMap<>();
+            Map<Name, Scope[]> newIndex = new HashMap<>(masks.size() * 4 / 3 + 1);
+            for (Map.Entry<Name, Long> e : masks.entrySet()) {
+                final long mask = indexedMask;
+                newIndex.put(e.getKey(), selections.computeIfAbsent(e.getValue(), m -> select(all, mask, m)));
+            }
+            unindexed = select(all, indexedMask, 0);
+            index = newIndex;
+            indexMark = getMark();
+        }
+
+        /** The sub scopes that are not indexed or are in the given mask, in order.
+         */
+        private static Scope[] select(Scope[] all, long indexedMask, long mask) {
+            ListBuffer<Scope> selected = new ListBuffer<>();
+            for (int i = 0; i < all.length; i++) {
+                if (i >= Long.SIZE || (indexedMask & (1L << i)) == 0 || (mask & (1L << i)) != 0)
+                    selected.append(all[i]);
+            }
+            return selected.toArray(new Scope[selected.size()]);
+        }
+
     }
 
     public interface ImportFilter {
@@ -912,6 +1160,8 @@ public abstract class Scope {
         private final ImportFilter filter;
         private final JCImport imp;
         private final BiConsumer<JCImport, CompletionFailure> cfHandler;
+        // AndroidIDE changed: Whether the origin drops the index of the star import scope.
+        private boolean invalidatesIndex;
 
         public FilterImportScope(Types types,
                                  Scope origin,
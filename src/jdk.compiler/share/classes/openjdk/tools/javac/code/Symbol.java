@@ -1319,6 +1319,11 @@ public abstract class Symbol extends AnnoConstruct implements PoolConstant, Elem
 
         public boolean isPermittedExplicit = false;
 
+        /** AndroidIDE changed: the supertype closure of this class, see
+         *  Types.supertypeClosure
+         */
+        public Types.SupertypeClosure supertypeClosure;
+
         public ClassSymbol(long flags, Name name, Type type, Symbol owner) {
             super(TYP, flags, name, type, owner);
             this.members_field = null;
@@ -1416,7 +1421,13 @@ public abstract class Symbol extends AnnoConstruct implements PoolConstant, Elem
             if (base != null) {
                 if (this == base) {
                     return true;
-                } else if ((base.flags() & INTERFACE) != 0) {
+                }
+                // AndroidIDE changed: Look base up in the supertype closure.
+                boolean isInterface = (base.flags() & INTERFACE) != 0;
+                Types.SupertypeClosure closure = types.supertypeClosure(this);
+                if (closure != null) {
+                    return closure.contains(base);
+                } else if (isInterface) {
                     for (Type t = type; t.hasTag(CLASS); t = types.supertype(t))
                         for (List<Type> is = types.interfaces(t);
                              is.nonEmpty();
@@ -1611,6 +1622,8 @@ public abstract class Symbol extends AnnoConstruct implements PoolConstant, Elem
             erasure_field = null;
             members_field = null;
             flags_field = 0;
+            // AndroidIDE changed: The supertypes are entered again.
+            supertypeClosure = null;
             if (type instanceof ClassType) {
                 ClassType t = (ClassType)type;
                 t.setEnclosingType(Type.noType);
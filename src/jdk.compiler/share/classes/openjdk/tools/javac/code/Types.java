@@ -28,6 +28,8 @@ package openjdk.tools.javac.code;
 import java.lang.ref.SoftReference;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -103,6 +105,22 @@ public class Types {
 
     public final Warner noWarnings;
 
+    // AndroidIDE changed: Memo of asSuper, isSubtypeUnchecked and erasure.
+    public final RelationCache relationCache;
+
+    // AndroidIDE changed: Supertype closures of class symbols, and filters
+    // of the member names of the closures.
+    private final boolean supertypeClosures;
+    private final boolean memberNameFilters;
+    private int headerCompletions;
+    private int closureGeneration;
+
+    // AndroidIDE changed: Changes of the classes that are not local.
+    private int hierarchyGeneration;
+
+    // AndroidIDE changed: Name index of the star imports of compilation units.
+    public final boolean indexStarImports;
+
     // <editor-fold defaultstate="collapsed" desc="Instantiating">
     public static Types instance(Context context) {
         Types instance = context.get(typesKey);
@@ -113,6 +131,10 @@ public class Types {
 
     protected Types(Context context) {
         context.put(typesKey, this);
+        relationCache = new RelationCache(Options.instance(context).get("typeRelationCacheSize"));
+        memberNameFilters = Options.instance(context).isSet("memberNameFilters");
+        supertypeClosures = memberNameFilters || Options.instance(context).isSet("supertypeClosures");
+        indexStarImports = Options.instance(context).isSet("indexStarImports");
         syms = Symtab.instance(context);
         names = Names.instance(context);
         Source source = Source.instance(context);
@@ -644,6 +666,9 @@ public class Types {
         transient JCDiagnostic diagnostic;
 
         FunctionDescriptorLookupError() {
+            // AndroidIDE changed: Thrown when a speculative target is not a
+            // functional interface; the stack trace is never used.
+            super(null, null, false, false);
             this.diagnostic = null;
         }
 
@@ -1014,13 +1039,20 @@ public class Types {
      * Is t an unchecked subtype of s?
      */
     public boolean isSubtypeUnchecked(Type t, Type s, Warner warn) {
-        boolean result = isSubtypeUncheckedInternal(t, s, true, warn);
-        if (result) {
-            checkUnsafeVarargsConversion(t, s, warn);
-        }
-        return result;
+        // AndroidIDE changed: Look the result up in the relation cache.
+        if (relationCache.enabled)
+            return relationCache.isSubtypeUnchecked(t, s, warn);
+        return isSubtypeUncheckedUncached(t, s, warn);
     }
     //where
+        private boolean isSubtypeUncheckedUncached(Type t, Type s, Warner warn) {
+            boolean result = isSubtypeUncheckedInternal(t, s, true, warn);
+            if (result) {
+                checkUnsafeVarargsConversion(t, s, warn);
+            }
+            return result;
+        }
+
         private boolean isSubtypeUncheckedInternal(Type t, Type s, boolean capture, Warner warn) {
             if (t.hasTag(ARRAY) && s.hasTag(ARRAY)) {
                 if (((ArrayType)t).elemtype.isPrimitive()) {
@@ -2161,6 +2193,16 @@ public class Types {
         if (sym != null && sym.type == syms.objectType) { //optimization
             return syms.objectType;
         }
+        // AndroidIDE changed: A class that is not in the supertype closure of
+        // the class of t is not a supertype of t.
+        if (supertypeClosures && sym != null && sym.kind == TYP && t.hasTag(CLASS) && !t.isCompound()) {
+            SupertypeClosure closure = supertypeClosure((ClassSymbol) t.tsym);
+            if (closure != null && !closure.contains(sym))
+                return null;
+        }
+        // AndroidIDE changed: Look the result up in the relation cache.
+        if (relationCache.enabled)
+            return relationCache.asSuper(t, sym);
         return asSuper.visit(t, sym);
     }
     // where
@@ -2179,6 +2221,8 @@ public class Types {
 					
                 Symbol c = t.tsym;
                 if (!seenTypes.add(c)) {
+                    // AndroidIDE changed: A result cut short by the cycle check is not cached.
+                    relationCache.cycle = true;
                     return null;
                 }
                 try {
@@ -2392,6 +2436,9 @@ public class Types {
      * type parameters in t are deleted.
      */
     public Type erasure(Type t) {
+        // AndroidIDE changed: Take erasures of class types from their symbols.
+        if (relationCache.enabled && t != null && !eraseNotNeeded(t))
+            return relationCache.erasure(t);
         return (t == null || eraseNotNeeded(t)) ? t : erasure(t, false);
     }
     //where
@@ -5297,7 +5344,373 @@ public class Types {
     }
     // </editor-fold>
 
+    // <editor-fold defaultstate="collapsed" desc="relation cache">
+    /**
+     * A bounded memo of the results of {@link #asSuper},
+     * {@link #isSubtypeUnchecked} and {@link #erasure}, enabled with
+     * {@code -XDtypeRelationCacheSize=<entries>}.
+     *
+     * <p>Only class types whose relations are determined by their symbol are
+     * cached: the declared type of a class, and class types without type
+     * arguments, with or without erased supertypes. The supertypes of a class
+     * are set when its symbol is completed, and any class that a result
+     * depends on is completed while the result is computed. The supertypes
+     * only change while TypeEnter completes the headers of source classes:
+     * nothing is cached then, and the cache is cleared when TypeEnter has
+     * completed a class that is not local. It is cleared by {@link #newRound}
+     * too, i.e. for each round of annotation processing and each reuse of a
+     * pooled context. The erasure of a class type is kept by its symbol, and
+     * is taken from there without mapping the type.
+     */
+    public class RelationCache {
+        final boolean enabled;
+        private final Map<RelationKey, Object> entries;
+
+        /** Set when asSuper meets a class it is already walking. */
+        boolean cycle;
+
+        /** The depth of TypeEnter completions. */
+        private int suspended;
+
+        /** Incremented when cached results may have become stale. */
+        private int generation;
+
+        private long asSuperHits, asSuperMisses;
+        private long subtypeHits, subtypeMisses;
+        private long erasureHits, erasureMisses;
+
+        RelationCache(String size) {
+            int maxSize = 0;
+            if (size != null) {
+                try {
+                    maxSize = Integer.parseInt(size);
+                } catch (NumberFormatException e) {
+                    // disabled
+                }
+            }
+            int max = maxSize;
+            enabled = max > 0;
+            entries = !enabled ? null : new LinkedHashMap<RelationKey, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<RelationKey, Object> eldest) {
+                    return size() > max;
+                }
+            };
+        }
+
+        /**
+         * The shape of a class type whose relations only depend on its
+         * symbol, or -1.
+         */
+        private int shape(Type t) {
+            if (!t.hasTag(CLASS) || t.isCompound() || t.isErroneous())
+                return -1;
+            ClassType ct = (ClassType) t;
+            if (ct.allparams().isEmpty())
+                return ct.hasErasedSupertypes() ? 2 : 0;
+            return ct == ct.tsym.type ? 1 : -1;
+        }
+
+        Type asSuper(Type t, Symbol sym) {
+            int shape;
+            if (sym == null || suspended > 0 || t.tsym == sym || (shape = shape(t)) < 0)
+                return asSuper.visit(t, sym);
+            RelationKey key = new RelationKey(t.tsym, sym, shape);
+            Object cached = entries.get(key);
+            if (cached != null) {
+                asSuperHits++;
+                return cached == RelationKey.NONE ? null : (Type) cached;
+            }
+            asSuperMisses++;
+            boolean prevCycle = cycle;
+            int gen = generation;
+            cycle = false;
+            try {
+                Type result = asSuper.visit(t, sym);
+                if (!cycle && gen == generation)
+                    entries.put(key, result != null ? result : RelationKey.NONE);
+                return result;
+            } finally {
+                cycle |= prevCycle;
+            }
+        }
+
+        boolean isSubtypeUnchecked(Type t, Type s, Warner warn) {
+            int tshape, sshape;
+            if (suspended > 0 || (tshape = shape(t)) < 0 || (sshape = shape(s)) < 0)
+                return isSubtypeUncheckedUncached(t, s, warn);
+            RelationKey key = new RelationKey(t.tsym, s.tsym, 3 + tshape * 3 + sshape);
+            Integer cached = (Integer) entries.get(key);
+            int result;
+            if (cached != null) {
+                subtypeHits++;
+                result = cached;
+            } else {
+                subtypeMisses++;
+                int gen = generation;
+                Warner w = new Warner(warn.pos());
+                result = !isSubtypeUncheckedUncached(t, s, w) ? 0
+                        : w.hasNonSilentLint(LintCategory.UNCHECKED) ? 3
+                        : w.hasSilentLint(LintCategory.UNCHECKED) ? 2 : 1;
+                if (gen == generation)
+                    entries.put(key, result);
+            }
+            if (result == 3)
+                warn.warn(LintCategory.UNCHECKED);
+            else if (result == 2)
+                warn.silentWarn(LintCategory.UNCHECKED);
+            return result != 0;
+        }
+
+        Type erasure(Type t) {
+            if (!t.hasTag(CLASS) || t.getMetadata() != TypeMetadata.EMPTY)
+                return Types.this.erasure(t, false);
+            if (t.tsym.erasure_field != null)
+                erasureHits++;
+            else
+                erasureMisses++;
+            return t.tsym.erasure(Types.this);
+        }
+
+        void suspend() {
+            suspended++;
+            generation++;
+        }
+
+        void resume(Symbol c) {
+            suspended--;
+            generation++;
+            if (enabled && !c.isDirectlyOrIndirectlyLocal())
+                entries.clear();
+        }
+
+        void clear() {
+            if (enabled)
+                entries.clear();
+            generation++;
+        }
+
+        public long getAsSuperHits() { return asSuperHits; }
+        public long getAsSuperMisses() { return asSuperMisses; }
+        public long getSubtypeHits() { return subtypeHits; }
+        public long getSubtypeMisses() { return subtypeMisses; }
+        public long getErasureHits() { return erasureHits; }
+        public long getErasureMisses() { return erasureMisses; }
+
+        @Override
+        public String toString() {
+            return "asSuper " + rate(asSuperHits, asSuperMisses)
+                    + ", isSubtypeUnchecked " + rate(subtypeHits, subtypeMisses)
+                    + ", erasure " + rate(erasureHits, erasureMisses);
+        }
+
+        private String rate(long hits, long misses) {
+            long total = hits + misses;
+            return hits + "/" + total + " hits"
+                    + (total == 0 ? "" : " (" + (hits * 100 / total) + "%)");
+        }
+    }
+
+    private static class RelationKey {
+        /** The cached value of an asSuper result that is null. */
+        static final Object NONE = new Object();
+
+        final Symbol a;
+        final Symbol b;
+        final int kind;
+
+        RelationKey(Symbol a, Symbol b, int kind) {
+            this.a = a;
+            this.b = b;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RelationKey))
+                return false;
+            RelationKey k = (RelationKey) o;
+            return a == k.a && b == k.b && kind == k.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(a) * 31 + System.identityHashCode(b)) * 31 + kind;
+        }
+    }
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="supertype closures">
+    /**
+     * Called by TypeEnter before it completes the header of a class. The
+     * supertypes of classes are not final until {@link #endHeaderCompletion}.
+     */
+    public void beginHeaderCompletion() {
+        headerCompletions++;
+        relationCache.suspend();
+    }
+
+    /**
+     * Called by TypeEnter when it has completed the header of the given class.
+     */
+    public void endHeaderCompletion(ClassSymbol c) {
+        headerCompletions--;
+        relationCache.resume(c);
+        if (!c.isDirectlyOrIndirectlyLocal())
+            hierarchyGeneration++;
+        // A new local class is not in any closure yet; a class that had a
+        // closure is completed again.
+        if (!c.isDirectlyOrIndirectlyLocal() || c.supertypeClosure != null)
+            closureGeneration++;
+        c.supertypeClosure = null;
+    }
+
+    /**
+     * A number that changes when the header or the members of a class that
+     * is not local may have changed: when TypeEnter has completed such a
+     * class, and by {@link #newRound}. Results computed from completed
+     * classes may be kept while it stays the same.
+     *
+     * @return the generation, or -1 while TypeEnter completes a class
+     */
+    public int hierarchyGeneration() {
+        return headerCompletions > 0 ? -1 : hierarchyGeneration;
+    }
+
+    /**
+     * The supertype closure of a class, enabled with
+     * {@code -XDsupertypeClosures}: the class itself, its superclasses and
+     * all the interfaces they implement, directly or indirectly.
+     *
+     * <p>The closure is built when it is first needed, only from classes that
+     * are complete, and is kept by the class symbol. It is dropped when the
+     * header of a class that is not local has been completed by TypeEnter,
+     * when the symbol is reset, and by {@link #newRound}. There is no closure
+     * while TypeEnter completes a header, or if a class of the closure is not
+     * complete yet or is erroneous.
+     *
+     * @return the closure, or null if there is none
+     */
+    public SupertypeClosure supertypeClosure(ClassSymbol c) {
+        if (!supertypeClosures || headerCompletions > 0)
+            return null;
+        SupertypeClosure closure = c.supertypeClosure;
+        if (closure != null && closure.generation == closureGeneration)
+            return closure;
+        if (closure == SupertypeClosure.BUILDING || c.completer != Symbol.Completer.NULL_COMPLETER || c.type.isErroneous())
+            return null;
+        c.supertypeClosure = SupertypeClosure.BUILDING;
+        closure = null;
+        try {
+            Set<ClassSymbol> classes = new LinkedHashSet<>();
+            classes.add(c);
+            Type st = supertype(c.type);
+            if (st.hasTag(CLASS) && !addClosure(classes, st))
+                return null;
+            if (!st.hasTag(CLASS) && !st.hasTag(NONE))
+                return null;
+            for (Type i : interfaces(c.type)) {
+                if (!i.hasTag(CLASS) || !addClosure(classes, i))
+                    return null;
+            }
+            closure = new SupertypeClosure(classes.toArray(new ClassSymbol[classes.size()]), closureGeneration);
+            return closure;
+        } finally {
+            c.supertypeClosure = closure;
+        }
+    }
+    // where
+        private boolean addClosure(Set<ClassSymbol> classes, Type t) {
+            SupertypeClosure closure = supertypeClosure((ClassSymbol) t.tsym);
+            if (closure == null)
+                return false;
+            for (ClassSymbol s : closure.classes)
+                classes.add(s);
+            return true;
+        }
+
+    /**
+     * Can the given class or one of its supertypes have a member with the
+     * given name? With {@code -XDmemberNameFilters}, this is answered by a
+     * bloom filter of the member names of the supertype closure of the class,
+     * which is built on first use. Without a closure, the answer is true.
+     */
+    public boolean mayHaveMember(TypeSymbol c, Name name) {
+        if (!memberNameFilters || c.kind != TYP || !(c instanceof ClassSymbol) || c.type.isCompound())
+            return true;
+        SupertypeClosure closure = supertypeClosure((ClassSymbol) c);
+        return closure == null || closure.memberNames().mayContain(name);
+    }
+
+    public static class SupertypeClosure {
+        /** The closure of a class that is being built. */
+        static final SupertypeClosure BUILDING = new SupertypeClosure(new ClassSymbol[0], -1);
+
+        /** The class first, then its supertypes. */
+        private final ClassSymbol[] classes;
+
+        /** An open addressing hash set of the classes. */
+        private final ClassSymbol[] table;
+
+        final int generation;
+
+        /** The names of the members of the classes, built on first use. */
+        private NameFilter memberNames;
+
+        SupertypeClosure(ClassSymbol[] classes, int generation) {
+            this.classes = classes;
+            this.generation = generation;
+            int size = Integer.highestOneBit(Math.max(classes.length, 1) * 2) * 2;
+            table = new ClassSymbol[size];
+            for (ClassSymbol c : classes) {
+                int i = hash(c) & (size - 1);
+                while (table[i] != null)
+                    i = (i + 1) & (size - 1);
+                table[i] = c;
+            }
+        }
+
+        private static int hash(Symbol c) {
+            int h = System.identityHashCode(c);
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Is the given class in this closure?
+         */
+        public boolean contains(Symbol c) {
+            int mask = table.length - 1;
+            for (int i = hash(c) & mask; table[i] != null; i = (i + 1) & mask) {
+                if (table[i] == c)
+                    return true;
+            }
+            return false;
+        }
+
+        NameFilter memberNames() {
+            if (memberNames == null) {
+                ListBuffer<Scope> scopes = new ListBuffer<>();
+                for (ClassSymbol c : classes)
+                    scopes.add(c.members());
+                memberNames = new NameFilter(scopes);
+            }
+            return memberNames;
+        }
+
+        /**
+         * The classes of this closure, the class first.
+         */
+        public List<ClassSymbol> classes() {
+            return List.from(classes);
+        }
+    }
+    // </editor-fold>
+
     public void newRound() {
+        // AndroidIDE changed: Symbols may be reset or entered again.
+        relationCache.clear();
+        closureGeneration++;
+        hierarchyGeneration++;
         descCache._map.clear();
         isDerivedRawCache.clear();
         implCache._map.clear();
@@ -50,6 +50,7 @@ import openjdk.tools.javac.comp.Check.CheckContext;
 import openjdk.tools.javac.comp.DeferredAttr.AttrMode;
 import openjdk.tools.javac.comp.MatchBindingsComputer.MatchBindings;
 import openjdk.tools.javac.jvm.*;
+import openjdk.tools.javac.parser.LazyBodyParser;
 import static openjdk.tools.javac.resources.CompilerProperties.Fragments.Diamond;
 import static openjdk.tools.javac.resources.CompilerProperties.Fragments.DiamondInvalidArg;
 import static openjdk.tools.javac.resources.CompilerProperties.Fragments.DiamondInvalidArgs;
@@ -122,6 +123,8 @@ public class Attr extends JCTree.Visitor {
 	
     final MatchBindingsComputer matchBindingsComputer;
     final AttrRecover attrRecover;
+    final LazyBodyParser lazyBodyParser;
+    final MethodAttributionCache methodCache;
 
     public static Attr instance(Context context) {
         Attr instance = context.get(attrKey);
@@ -160,6 +163,10 @@ public class Attr extends JCTree.Visitor {
         argumentAttr = ArgumentAttr.instance(context);
         matchBindingsComputer = MatchBindingsComputer.instance(context);
         attrRecover = AttrRecover.instance(context);
+        // AndroidIDE changed: Parse the bodies skipped by the parser.
+        lazyBodyParser = LazyBodyParser.instance(context);
+        // AndroidIDE changed: Reuse the analysis of unchanged method bodies.
+        methodCache = MethodAttributionCache.instance(context);
 
         Options options = Options.instance(context);
 
@@ -1263,16 +1270,21 @@ public class Attr extends JCTree.Visitor {
                     }
                 }
 
-                if (!isBackgroundCompilation) {
-                    tree.localEnv = dupLocalEnv(localEnv);
-                }
+                // AndroidIDE changed: The diagnostics of an unchanged body are
+                // reported again instead of attributing it.
+                if (!methodCache.reuse(tree, env)) {
+                    if (!isBackgroundCompilation) {
+                        tree.localEnv = dupLocalEnv(localEnv);
+                    }
 
-                // Attribute all type annotations in the body
-                annotate.queueScanTreeAndTypeAnnotate(tree.body, localEnv, m, null);
-                annotate.flush();
+                    // Attribute all type annotations in the body
+                    annotate.queueScanTreeAndTypeAnnotate(tree.body, localEnv, m, null);
+                    annotate.flush();
 
-                // Attribute method body.
-                attribStat(tree.body, localEnv);
+                    // Attribute method body.
+                    attribStat(tree.body, localEnv);
+                    methodCache.attributed(tree);
+                }
             }
 
             localEnv.info.scope.leave();
@@ -5651,6 +5663,8 @@ public class Attr extends JCTree.Visitor {
     /** Finish the attribution of a class. */
     private void attribClassBody(Env<AttrContext> env, ClassSymbol c) {
         JCClassDecl tree = (JCClassDecl)env.tree;
+        // AndroidIDE changed: Parse the bodies skipped by the parser.
+        lazyBodyParser.expand(tree, false);
 
         if (c != tree.sym)
             Assert.error("c = " + c + " tree.sym = " + tree.sym + " tree = " + tree);
@@ -5771,6 +5785,9 @@ public class Attr extends JCTree.Visitor {
             // Check type annotations applicability rules
             validateTypeAnnotations(tree, false);
         }
+
+        // AndroidIDE changed: Put back the bodies hidden by the method cache.
+        methodCache.classAttributed(tree);
     }
         // where
         /** get a diagnostic position for an attribute of Type t, or null if attribute missing */
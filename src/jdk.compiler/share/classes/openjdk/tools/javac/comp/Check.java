@@ -158,6 +158,9 @@ public class Check {
                 enforceMandatoryWarnings, "unchecked", LintCategory.UNCHECKED);
         sunApiHandler = new MandatoryWarningHandler(log, null, false,
                 enforceMandatoryWarnings, "sunapi", null);
+        // AndroidIDE changed: Let the method cache record the mandatory warnings.
+        MethodAttributionCache.instance(context).watch(deprecationHandler, removalHandler,
+                uncheckedHandler, sunApiHandler);
 
         deferredLintHandler = DeferredLintHandler.instance(context);
 
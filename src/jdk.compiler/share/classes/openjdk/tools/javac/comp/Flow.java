@@ -210,6 +210,7 @@ public class Flow {
     private final Resolve rs;
     private final JCDiagnostic.Factory diags;
     private final Enter enter;
+    private final MethodAttributionCache methodCache;
     private JCClassDecl reanalyzedClass;
     private Env<AttrContext> attrEnv;
     private       Lint lint;
@@ -223,10 +224,12 @@ public class Flow {
     }
 
     public void analyzeTree(Env<AttrContext> env, TreeMaker make) {
-        new AliveAnalyzer().analyzeTree(env, make);
-        new AssignAnalyzer().analyzeTree(env, make);
-        new FlowAnalyzer().analyzeTree(env, make);
-        new CaptureAnalyzer().analyzeTree(env, make);
+        // AndroidIDE changed: Leave out the reused method bodies.
+        methodCache.analyzeFlow(env,
+                () -> new AliveAnalyzer().analyzeTree(env, make),
+                () -> new AssignAnalyzer().analyzeTree(env, make),
+                () -> new FlowAnalyzer().analyzeTree(env, make),
+                () -> new CaptureAnalyzer().analyzeTree(env, make));
     }
 
     public void analyzeLambda(Env<AttrContext> env, JCLambda that, TreeMaker make, boolean speculative) {
@@ -352,6 +355,8 @@ public class Flow {
         rs = Resolve.instance(context);
         diags = JCDiagnostic.Factory.instance(context);
         enter = Enter.instance(context);
+        // AndroidIDE changed: Reuse the analysis of unchanged method bodies.
+        methodCache = MethodAttributionCache.instance(context);
         Source source = Source.instance(context);
         allowEffectivelyFinalInInnerClasses = Feature.EFFECTIVELY_FINAL_IN_INNER_CLASSES.allowedInSource(source);
     }
@@ -577,6 +582,8 @@ public class Flow {
         }
 
         public void visitMethodDef(JCMethodDecl tree) {
+            // AndroidIDE changed: Report the diagnostics of a reused body here.
+            if (methodCache.flowReused(tree)) return;
             if (tree.body == null || tree.sym == null) return;
             Lint lintPrev = lint;
 
@@ -1164,6 +1171,8 @@ public class Flow {
         }
 
         public void visitMethodDef(JCMethodDecl tree) {
+            // AndroidIDE changed: Report the diagnostics of a reused body here.
+            if (methodCache.flowReused(tree)) return;
             if (tree.body == null || tree.sym == null) return;
 
             List<Type> caughtPrev = caught;
@@ -2151,6 +2160,10 @@ public class Flow {
         }
 
         public void visitMethodDef(JCMethodDecl tree) {
+            // AndroidIDE changed: Report the diagnostics of a reused body here.
+            if (methodCache.flowReused(tree)) {
+                return;
+            }
             if (tree.body == null || tree.sym == null) {
                 return;
             }
@@ -3037,6 +3050,14 @@ public class Flow {
             }
         }
 
+        // AndroidIDE changed: Report the diagnostics of a reused body here.
+        @Override
+        public void visitMethodDef(JCMethodDecl tree) {
+            if (!methodCache.flowReused(tree)) {
+                super.visitMethodDef(tree);
+            }
+        }
+
         @Override
         public void visitLambda(JCLambda tree) {
             JCTree prevTree = currentTree;
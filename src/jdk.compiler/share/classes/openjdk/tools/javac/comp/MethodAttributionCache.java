@@ -0,0 +1,649 @@
+package openjdk.tools.javac.comp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.code.Symbol.MethodSymbol;
+import openjdk.tools.javac.comp.CompileStates.CompileState;
+import openjdk.tools.javac.tree.EndPosTable;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCBlock;
+import openjdk.tools.javac.tree.JCTree.JCClassDecl;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.JCTree.JCMethodDecl;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.JCDiagnostic;
+import openjdk.tools.javac.util.JCDiagnostic.DiagnosticPosition;
+import openjdk.tools.javac.util.JCDiagnostic.Warning;
+import openjdk.tools.javac.util.List;
+import openjdk.tools.javac.util.ListBuffer;
+import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.MandatoryWarningHandler;
+import openjdk.tools.javac.util.Options;
+import openjdk.tools.javac.util.Position;
+
+import static openjdk.tools.javac.tree.JCTree.Tag.CLASSDEF;
+
+/**
+ * Reuses the analysis of the method bodies that did not change since the
+ * previous compilation in the same context.
+ *
+ * <p>Only used by {@link openjdk.tools.javac.api.JavacTaskImpl#analyzeDiagnostics},
+ * in a context that is reused for the compilations of an editor and that
+ * stops after flow analysis. The diagnostics of a method body only depend on
+ * its own text and on the declarations it can see. When a method body is
+ * analyzed, it is keyed by a hash of its source text and by a hash of the
+ * outlines of the compilation units, that is their text without the method
+ * bodies, and of the options. The diagnostics reported by Attr and Flow at
+ * positions inside the body are recorded relative to the start of the body,
+ * detached from the trees, the source and the symbols of the compilation.
+ * In the next compilation, a method whose keys are unchanged is neither
+ * attributed nor analyzed by Flow; its diagnostics are reported again at
+ * the new position of the body instead. The body of such a method is left
+ * unattributed. Only the bodies of the previous compilation are kept.
+ *
+ * <p>Constructors and the methods of local and anonymous classes are always
+ * analyzed. Changes to the classes read from the class path or the source
+ * path are not tracked; {@link #clear} drops the recorded results.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class MethodAttributionCache implements MandatoryWarningHandler.Listener {
+
+    protected static final Context.Key<MethodAttributionCache> methodAttributionCacheKey = new Context.Key<>();
+
+    public static MethodAttributionCache instance(Context context) {
+        MethodAttributionCache instance = context.get(methodAttributionCacheKey);
+        if (instance == null)
+            instance = new MethodAttributionCache(context);
+        return instance;
+    }
+
+    private static final long FNV_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Log log;
+    private final Options options;
+    private final JCDiagnostic.Factory diags;
+    private final Recorder recorder;
+
+    /** Whether the bodies are reused and recorded, see {@link #begin}. */
+    private boolean active;
+
+    /** The recorded bodies by file and method, as of the previous compilation. */
+    private Map<URI, Map<String, Entry>> entries = new HashMap<>();
+
+    /** The bodies recorded or reused in this compilation, by file and method. */
+    private Map<URI, Map<String, Entry>> next = new HashMap<>();
+
+    /** The units entered in this compilation. */
+    private final ListBuffer<JCCompilationUnit> units = new ListBuffer<>();
+
+    /** The hash of the options and of the outlines of the entered units. */
+    private long contextHash;
+
+    /** The bodies analyzed in this compilation, whose diagnostics are recorded. */
+    private final ArrayList<Recording> recordings = new ArrayList<>();
+
+    /** The body being attributed, or null. */
+    private Recording current;
+
+    /** The bodies reused in this compilation. */
+    private final Map<JCMethodDecl, Reuse> reused = new IdentityHashMap<>();
+
+    /** The mandatory warning just recorded, whose diagnostic is not recorded again. */
+    private DiagnosticPosition announced;
+
+    /** The Flow analyzer running, 0 during attribution. */
+    private int phase;
+
+    private boolean replaying;
+
+    /** The compilation unit whose text was read last. */
+    private JCCompilationUnit lastUnit;
+    private CharSequence lastText;
+
+    private int reuseCount;
+    private int analyzeCount;
+
+    protected MethodAttributionCache(Context context) {
+        context.put(methodAttributionCacheKey, this);
+        log = Log.instance(context);
+        options = Options.instance(context);
+        diags = JCDiagnostic.Factory.instance(context);
+        recorder = new Recorder();
+    }
+
+    private boolean stopsBeforeDesugar(String option, CompileState defaultState) {
+        String value = options.get(option);
+        CompileState state = defaultState;
+        if (value != null) {
+            try {
+                state = CompileState.valueOf(value);
+            } catch (IllegalArgumentException ex) {
+                return false;
+            }
+        }
+        return CompileState.TRANSTYPES.isAfter(state);
+    }
+
+    /**
+     * Start reusing and recording the method bodies, if the compilation
+     * stops after flow analysis.
+     *
+     * @return whether the method bodies are reused
+     */
+    public boolean begin() {
+        // the reused bodies are not attributed, so they must not reach desugar
+        if (active || !stopsBeforeDesugar("should-stop.ifNoError", CompileState.GENERATE)
+                || !stopsBeforeDesugar("should-stop.ifError", CompileState.INIT)
+                || !stopsBeforeDesugar("should-stop.at", CompileState.INIT)) {
+            return false;
+        }
+        active = true;
+        recorder.start();
+        contextHash = optionsHash();
+        for (JCCompilationUnit tree : units) {
+            addOutline(tree);
+        }
+        return true;
+    }
+
+    /** Stop reusing and recording the method bodies. */
+    public void end() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        log.popDiagnosticHandler(recorder);
+        current = null;
+        announced = null;
+        // put back the bodies hidden by an analysis that did not complete
+        for (Map.Entry<JCMethodDecl, Reuse> e : reused.entrySet()) {
+            e.getKey().body = e.getValue().body;
+        }
+    }
+
+    /** The number of method bodies reused since this cache was created. */
+    public int getReuseCount() {
+        return reuseCount;
+    }
+
+    /** The number of method bodies analyzed and recorded since this cache was created. */
+    public int getAnalyzeCount() {
+        return analyzeCount;
+    }
+
+    /**
+     * Record the mandatory warnings of the given handlers, so that they are
+     * reported again with the diagnostics of a reused body.
+     */
+    public void watch(MandatoryWarningHandler... handlers) {
+        for (MandatoryWarningHandler handler : handlers) {
+            handler.setListener(this);
+        }
+    }
+
+    /** Drop the recorded bodies, e.g. when the class path changed. */
+    public void clear() {
+        entries.clear();
+        next.clear();
+    }
+
+    /** Start a new compilation in this context. */
+    public void newRound() {
+        end();
+        entries = next;
+        next = new HashMap<>();
+        units.clear();
+        recordings.clear();
+        reused.clear();
+        lastUnit = null;
+        lastText = null;
+    }
+
+    /**
+     * Add the outlines of the entered compilation units to the keys of the
+     * method bodies analyzed in this compilation.
+     */
+    public void entered(List<JCCompilationUnit> trees) {
+        units.addAll(trees);
+        if (active) {
+            for (JCCompilationUnit tree : trees) {
+                addOutline(tree);
+            }
+        }
+    }
+
+    private void addOutline(JCCompilationUnit tree) {
+        CharSequence text = text(tree);
+        long hash = text != null ? outlineHash(tree, text) : System.identityHashCode(tree);
+        contextHash = (contextHash ^ hash) * FNV_PRIME;
+    }
+
+    /**
+     * Called by Attr before the body of a method is attributed. If the body
+     * is unchanged, its diagnostics are reported again and it is hidden from
+     * the trees until the class is attributed.
+     *
+     * @return whether the body is reused and must not be attributed
+     */
+    public boolean reuse(JCMethodDecl tree, Env<AttrContext> env) {
+        current = null;
+        if (!active) {
+            return false;
+        }
+        MethodSymbol m = tree.sym;
+        JCBlock body = tree.body;
+        if (m.isConstructor() || m.owner.isDirectlyOrIndirectlyLocal()) {
+            return false;
+        }
+        CharSequence text = text(env.toplevel);
+        if (text == null || body.endpos == Position.NOPOS
+                || body.pos < 0 || body.endpos >= text.length()) {
+            return false;
+        }
+        URI file = env.toplevel.sourcefile.toUri();
+        String key = m.owner.flatName() + "." + m.name + m.type;
+        long bodyHash = hash(FNV_BASIS, text, body.pos, body.endpos + 1);
+        int bodyLength = body.endpos + 1 - body.pos;
+        JCClassDecl topClass = outermostClass(env);
+
+        Map<String, Entry> recorded = entries.get(file);
+        Entry entry = recorded != null ? recorded.get(key) : null;
+        if (entry != null && entry.bodyHash == bodyHash
+                && entry.bodyLength == bodyLength && entry.contextHash == contextHash) {
+            next.computeIfAbsent(file, f -> new HashMap<>()).put(key, entry);
+            reused.put(tree, new Reuse(entry, body, env.enclClass, topClass));
+            replay(entry, body.pos, 0);
+            tree.body = null;
+            reuseCount++;
+            return true;
+        }
+        current = new Recording(tree, topClass, file, key, bodyHash, bodyLength);
+        recordings.add(current);
+        return false;
+    }
+
+    /** Called by Attr after the body of a method is attributed. */
+    public void attributed(JCMethodDecl tree) {
+        current = null;
+    }
+
+    /** Called by Attr after a class is attributed; puts the hidden bodies back. */
+    public void classAttributed(JCClassDecl tree) {
+        if (reused.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<JCMethodDecl, Reuse> e : reused.entrySet()) {
+            if (e.getValue().enclClass == tree) {
+                e.getKey().body = e.getValue().body;
+            }
+        }
+    }
+
+    /**
+     * Run the Flow analyzers over a class, without the reused bodies. The
+     * diagnostics of a reused body are reported again when an analyzer
+     * visits the method, see {@link #flowReused}, so they are reported in
+     * the same order as by a fresh analysis. The diagnostics of the other
+     * bodies are recorded once all analyzers ran.
+     */
+    public void analyzeFlow(Env<AttrContext> env, Runnable... analyzers) {
+        if (!active) {
+            for (Runnable analyzer : analyzers) {
+                analyzer.run();
+            }
+            return;
+        }
+        ArrayList<JCMethodDecl> hidden = new ArrayList<>();
+        for (Map.Entry<JCMethodDecl, Reuse> e : reused.entrySet()) {
+            if (e.getValue().topClass == env.tree) {
+                hidden.add(e.getKey());
+                e.getKey().body = null;
+            }
+        }
+        try {
+            for (int i = 0; i < analyzers.length; i++) {
+                phase = i + 1;
+                analyzers[i].run();
+                // the methods the analyzer did not visit
+                for (JCMethodDecl tree : hidden) {
+                    Reuse r = reused.get(tree);
+                    if (r.phase < phase) {
+                        r.phase = phase;
+                        replay(r.entry, r.body.pos, phase);
+                    }
+                }
+            }
+        } finally {
+            phase = 0;
+            for (JCMethodDecl tree : hidden) {
+                tree.body = reused.get(tree).body;
+            }
+        }
+        for (Recording r : recordings) {
+            if (r.topClass == env.tree && !r.failed && !r.done) {
+                r.done = true;
+                next.computeIfAbsent(r.file, f -> new HashMap<>())
+                    .put(r.key, new Entry(r.bodyHash, r.bodyLength, contextHash, r.diagnostics.toList()));
+                analyzeCount++;
+            }
+        }
+    }
+
+    /**
+     * Called by a Flow analyzer when it visits a method, in place of the
+     * analysis of the body. If the body is reused, the diagnostics the
+     * analyzer reported for it are reported again.
+     *
+     * @return whether the body is reused and must not be analyzed
+     */
+    public boolean flowReused(JCMethodDecl tree) {
+        if (phase == 0 || tree.body != null) {
+            return false;
+        }
+        Reuse r = reused.get(tree);
+        if (r == null) {
+            return false;
+        }
+        if (r.phase < phase) {
+            r.phase = phase;
+            replay(r.entry, r.body.pos, phase);
+        }
+        return true;
+    }
+
+    @Override
+    public void report(MandatoryWarningHandler handler, DiagnosticPosition pos, Warning warnKey) {
+        if (!active || replaying || recordings.isEmpty()) {
+            return;
+        }
+        JavaFileObject file = log.currentSourceFile();
+        Recording r = recording(file != null ? file.toUri() : null,
+                pos != null ? pos.getPreferredPosition() : Position.NOPOS);
+        if (r != null) {
+            int end = pos.getEndPosition(log.currentSource().getEndPosTable());
+            r.diagnostics.add(new Recorded(phase, null, handler, diags.detach(warnKey),
+                    pos.getStartPosition(), pos.getPreferredPosition(), end, r.bodyStart()));
+            announced = pos;
+        } else if (current != null) {
+            current.failed = true;
+        }
+    }
+
+    private void record(JCDiagnostic diag) {
+        if (replaying || recordings.isEmpty()) {
+            return;
+        }
+        if (announced != null) {
+            boolean same = diag.isMandatory() && diag.getDiagnosticPosition() == announced;
+            announced = null;
+            if (same) {
+                return;
+            }
+        }
+        Recording r = recording(diag.getSource() != null ? diag.getSource().toUri() : null,
+                (int) diag.getPosition());
+        if (r != null) {
+            r.diagnostics.add(new Recorded(phase, diag.detach(), null, null, (int) diag.getStartPosition(),
+                    (int) diag.getPosition(), (int) diag.getEndPosition(), r.bodyStart()));
+        } else if (current != null) {
+            // reported while the body was attributed, but not for the body
+            current.failed = true;
+        }
+    }
+
+    private Recording recording(URI file, int pos) {
+        if (file == null || pos == Position.NOPOS) {
+            return null;
+        }
+        if (current != null && current.contains(file, pos)) {
+            return current;
+        }
+        for (Recording r : recordings) {
+            if (r.contains(file, pos)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private void replay(Entry entry, int bodyStart, int phase) {
+        replaying = true;
+        try {
+            for (Recorded d : entry.diagnostics) {
+                if (d.phase != phase) {
+                    continue;
+                }
+                DiagnosticPosition pos = new RelocatedPosition(shift(d.start, bodyStart),
+                        shift(d.pos, bodyStart), shift(d.end, bodyStart));
+                if (d.diag != null) {
+                    log.report(d.diag.withPosition(log.currentSource(), pos));
+                } else {
+                    d.handler.report(pos, d.warnKey);
+                }
+            }
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private static int shift(int pos, int offset) {
+        return pos == Position.NOPOS ? Position.NOPOS : pos + offset;
+    }
+
+    private static JCClassDecl outermostClass(Env<AttrContext> env) {
+        JCClassDecl result = null;
+        for (Env<AttrContext> e = env; e != null; e = e.outer) {
+            if (e.tree != null && e.tree.hasTag(CLASSDEF)) {
+                result = (JCClassDecl) e.tree;
+            }
+        }
+        return result;
+    }
+
+    private CharSequence text(JCCompilationUnit tree) {
+        if (tree != lastUnit) {
+            lastUnit = tree;
+            try {
+                lastText = tree.sourcefile.getCharContent(true);
+            } catch (IOException ex) {
+                lastText = null;
+            }
+        }
+        return lastText;
+    }
+
+    private long optionsHash() {
+        long hash = 0;
+        for (String name : options.keySet()) {
+            String value = options.get(name);
+            hash += (long) name.hashCode() * 31 + (value != null ? value.hashCode() : 0);
+        }
+        return hash;
+    }
+
+    /** The hash of the text of a compilation unit without its method bodies. */
+    private static long outlineHash(JCCompilationUnit tree, CharSequence text) {
+        ListBuffer<JCBlock> bodies = new ListBuffer<>();
+        for (JCTree def : tree.defs) {
+            collectBodies(def, bodies);
+        }
+        long hash = FNV_BASIS;
+        int pos = 0;
+        for (JCBlock body : bodies) {
+            if (body.pos < pos || body.endpos == Position.NOPOS || body.endpos >= text.length()) {
+                continue;
+            }
+            hash = hash(hash, text, pos, body.pos);
+            pos = body.endpos + 1;
+        }
+        return hash(hash, text, pos, text.length());
+    }
+
+    private static void collectBodies(JCTree tree, ListBuffer<JCBlock> bodies) {
+        if (tree.hasTag(CLASSDEF)) {
+            for (JCTree def : ((JCClassDecl) tree).defs) {
+                if (def instanceof JCMethodDecl) {
+                    JCBlock body = ((JCMethodDecl) def).body;
+                    if (body != null) {
+                        bodies.add(body);
+                    }
+                } else {
+                    collectBodies(def, bodies);
+                }
+            }
+        }
+    }
+
+    private static long hash(long hash, CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ (end - start)) * FNV_PRIME;
+    }
+
+    /** Records the diagnostics reported for the bodies being analyzed. */
+    private class Recorder extends Log.DiagnosticHandler {
+        void start() {
+            install(log);
+        }
+
+        @Override
+        public void report(JCDiagnostic diag) {
+            record(diag);
+            prev.report(diag);
+        }
+    }
+
+    /** A recorded method body. */
+    private static class Entry {
+        final long bodyHash;
+        final int bodyLength;
+        final long contextHash;
+        final List<Recorded> diagnostics;
+
+        Entry(long bodyHash, int bodyLength, long contextHash, List<Recorded> diagnostics) {
+            this.bodyHash = bodyHash;
+            this.bodyLength = bodyLength;
+            this.contextHash = contextHash;
+            this.diagnostics = diagnostics;
+        }
+    }
+
+    /**
+     * A detached diagnostic, or a mandatory warning, with positions relative
+     * to the start of the body.
+     */
+    private static class Recorded {
+        final int phase;
+        final JCDiagnostic diag;
+        final MandatoryWarningHandler handler;
+        final Warning warnKey;
+        final int start;
+        final int pos;
+        final int end;
+
+        Recorded(int phase, JCDiagnostic diag, MandatoryWarningHandler handler, Warning warnKey,
+                 int start, int pos, int end, int bodyStart) {
+            this.phase = phase;
+            this.diag = diag;
+            this.handler = handler;
+            this.warnKey = warnKey;
+            this.start = shift(start, -bodyStart);
+            this.pos = shift(pos, -bodyStart);
+            this.end = shift(end, -bodyStart);
+        }
+    }
+
+    /** A body analyzed in this compilation. */
+    private static class Recording {
+        final JCMethodDecl tree;
+        final JCClassDecl topClass;
+        final URI file;
+        final String key;
+        final long bodyHash;
+        final int bodyLength;
+        final ListBuffer<Recorded> diagnostics = new ListBuffer<>();
+        boolean failed;
+        boolean done;
+
+        Recording(JCMethodDecl tree, JCClassDecl topClass, URI file, String key, long bodyHash, int bodyLength) {
+            this.tree = tree;
+            this.topClass = topClass;
+            this.file = file;
+            this.key = key;
+            this.bodyHash = bodyHash;
+            this.bodyLength = bodyLength;
+        }
+
+        int bodyStart() {
+            return tree.body.pos;
+        }
+
+        boolean contains(URI file, int pos) {
+            JCBlock body = tree.body;
+            return body != null && pos >= body.pos && pos <= body.endpos && this.file.equals(file);
+        }
+    }
+
+    /** A body reused in this compilation. */
+    private static class Reuse {
+        final Entry entry;
+        final JCBlock body;
+        final JCClassDecl enclClass;
+        final JCClassDecl topClass;
+        /** The last Flow analyzer the diagnostics were reported again for. */
+        int phase;
+
+        Reuse(Entry entry, JCBlock body, JCClassDecl enclClass, JCClassDecl topClass) {
+            this.entry = entry;
+            this.body = body;
+            this.enclClass = enclClass;
+            this.topClass = topClass;
+        }
+    }
+
+    /** A position that does not refer to a tree. */
+    private static class RelocatedPosition implements DiagnosticPosition {
+        private final int start;
+        private final int pos;
+        private final int end;
+
+        RelocatedPosition(int start, int pos, int end) {
+            this.start = start;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public JCTree getTree() {
+            return null;
+        }
+
+        @Override
+        public int getStartPosition() {
+            return start;
+        }
+
+        @Override
+        public int getPreferredPosition() {
+            return pos;
+        }
+
+        @Override
+        public int getEndPosition(EndPosTable endPosTable) {
+            return end;
+        }
+    }
+}
@@ -115,6 +115,9 @@ public class Resolve {
     final EnumSet<VerboseResolutionMode> verboseResolutionMode;
     final boolean dumpMethodReferenceSearchResults;
 
+    // AndroidIDE changed: Memo of the methods selected by findMethod.
+    public final CandidateCache candidateCache;
+
     WriteableScope polymorphicSignatureScope;
 
     protected Resolve(Context context) {
@@ -153,6 +156,7 @@ public class Resolve {
         allowModules = Feature.MODULES.allowedInSource(source);
         allowRecords = Feature.RECORDS.allowedInSource(source);
         dumpMethodReferenceSearchResults = options.isSet("debug.dumpMethodReferenceSearchResults");
+        candidateCache = new CandidateCache(options.get("resolveCacheSize"));
     }
 
     /** error symbols, which are returned when resolution fails
@@ -1403,6 +1407,10 @@ public class Resolve {
         transient JCDiagnostic diagnostic;
 
         InapplicableMethodException(JCDiagnostic diag) {
+            // AndroidIDE changed: Thrown for every inapplicable candidate during
+            // overload resolution and speculative attribution; the stack trace is
+            // never used, so it is not filled in.
+            super(null, null, false, false);
             this.diagnostic = diag;
         }
 
@@ -1437,6 +1445,9 @@ public class Resolve {
                      TypeSymbol c) {
         while (c.type.hasTag(TYPEVAR))
             c = c.type.getUpperBound().tsym;
+        // AndroidIDE changed: Skip a hierarchy without a member of that name.
+        if (!types.mayHaveMember(c, name))
+            return varNotFound;
         Symbol bestSoFar = varNotFound;
         Symbol sym;
         for (Symbol s : c.members().getSymbolsByName(name)) {
@@ -1830,6 +1841,13 @@ public class Resolve {
                       List<Type> typeargtypes,
                       boolean allowBoxing,
                       boolean useVarargs) {
+        // AndroidIDE changed: Reuse the method selected by an equal lookup.
+        CandidateKey key = candidateCache.key(env, site, name, argtypes, typeargtypes, allowBoxing, useVarargs);
+        if (key != null) {
+            Symbol cached = candidateCache.get(key);
+            if (cached != null)
+                return cached;
+        }
         Symbol bestSoFar = methodNotFound;
         bestSoFar = findMethod(env,
                           site,
@@ -1840,6 +1858,8 @@ public class Resolve {
                           bestSoFar,
                           allowBoxing,
                           useVarargs);
+        if (key != null)
+            candidateCache.put(key, bestSoFar);
         return bestSoFar;
     }
     // where
@@ -1852,6 +1872,9 @@ public class Resolve {
                               Symbol bestSoFar,
                               boolean allowBoxing,
                               boolean useVarargs) {
+        // AndroidIDE changed: Skip a hierarchy without a member of that name.
+        if (intype.hasTag(CLASS) && !types.mayHaveMember(intype.tsym, name))
+            return bestSoFar;
         @SuppressWarnings({"unchecked","rawtypes"})
         List<Type>[] itypes = (List<Type>[])new List[] { List.<Type>nil(), List.<Type>nil() };
 
@@ -2283,6 +2306,9 @@ public class Resolve {
                           Type site,
                           Name name,
                           TypeSymbol c) {
+        // AndroidIDE changed: Skip a hierarchy without a member of that name.
+        if (!types.mayHaveMember(c, name))
+            return typeNotFound;
         Symbol sym = findImmediateMemberType(env, site, name, c);
 
         if (sym != typeNotFound)
@@ -3089,6 +3115,7 @@ public class Resolve {
         Env<AttrContext> boundEnv = env.dup(env.tree, env.info.dup());
         MethodResolutionContext boundSearchResolveContext = new MethodResolutionContext();
         boundSearchResolveContext.methodCheck = methodCheck;
+        boundSearchResolveContext.keepCandidates = true;
         Symbol boundSym = lookupMethod(boundEnv, env.tree.pos(),
                 site.tsym, boundSearchResolveContext, boundLookupHelper);
         ReferenceLookupResult boundRes = new ReferenceLookupResult(boundSym, boundSearchResolveContext);
@@ -3105,6 +3132,7 @@ public class Resolve {
             MethodResolutionContext unboundSearchResolveContext =
                     new MethodResolutionContext();
             unboundSearchResolveContext.methodCheck = methodCheck;
+            unboundSearchResolveContext.keepCandidates = true;
             unboundSym = lookupMethod(unboundEnv, env.tree.pos(),
                     site.tsym, unboundSearchResolveContext, unboundLookupHelper);
             unboundRes = new ReferenceLookupResult(unboundSym, unboundSearchResolveContext);
@@ -4950,6 +4978,172 @@ public class Resolve {
 
     final List<MethodResolutionPhase> methodResolutionSteps = List.of(BASIC, BOX, VARARITY);
 
+    /**
+     * A bounded memo of the methods selected by {@link #findMethod}, enabled
+     * with {@code -XDresolveCacheSize=<entries>}.
+     *
+     * <p>Only lookups whose result is determined by symbols are cached: the
+     * site is a class type without type parameters, there are no type
+     * arguments, and each argument type is a primitive type, the null type,
+     * a class type without type parameters, or an array of those. Argument
+     * types with inference variables, deferred types and erroneous types are
+     * not cached. The key holds what the access checks depend on too: the
+     * enclosing class, the package of the compilation unit, and whether the
+     * lookup selects from super or is in an anonymous constructor; and the
+     * phase. Only a selected method is kept, so that a failed lookup still
+     * finds the candidates for its diagnostics. The lookups of method
+     * references, and verbose resolution, look at the candidates of a
+     * successful lookup, and are not cached.
+     *
+     * <p>A lookup completes each class it looks at, and the members of a
+     * source class are entered while TypeEnter completes it. Nothing is
+     * cached while TypeEnter completes a class, and the cache is cleared when
+     * {@link Types#hierarchyGeneration} changes.
+     */
+    public class CandidateCache {
+        final boolean enabled;
+        private final Map<CandidateKey, Symbol> entries;
+        private int generation;
+
+        private long hits, misses, bypasses;
+
+        CandidateCache(String size) {
+            int maxSize = 0;
+            if (size != null) {
+                try {
+                    maxSize = Integer.parseInt(size);
+                } catch (NumberFormatException e) {
+                    // disabled
+                }
+            }
+            int max = maxSize;
+            enabled = max > 0;
+            entries = !enabled ? null : new LinkedHashMap<CandidateKey, Symbol>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<CandidateKey, Symbol> eldest) {
+                    return size() > max;
+                }
+            };
+        }
+
+        /**
+         * The key of a lookup, or null if the lookup is not cached.
+         */
+        CandidateKey key(Env<AttrContext> env, Type site, Name name, List<Type> argtypes,
+                         List<Type> typeargtypes, boolean allowBoxing, boolean useVarargs) {
+            if (!enabled)
+                return null;
+            if ((typeargtypes != null && typeargtypes.nonEmpty()) ||
+                    !isPlain(site) ||
+                    currentResolutionContext.methodCheck != resolveMethodCheck ||
+                    currentResolutionContext.keepCandidates ||
+                    !verboseResolutionMode.isEmpty() ||
+                    env.info.visitingServiceImplementation ||
+                    types.hierarchyGeneration() < 0) {
+                bypasses++;
+                return null;
+            }
+            Object[] args = new Object[argtypes.length()];
+            int i = 0;
+            for (Type t : argtypes) {
+                Object arg = argKey(t);
+                if (arg == null) {
+                    bypasses++;
+                    return null;
+                }
+                args[i++] = arg;
+            }
+            int flags = (allowBoxing ? 1 : 0) |
+                    (useVarargs ? 2 : 0) |
+                    (env.info.selectSuper ? 4 : 0) |
+                    (env.enclMethod != null && (env.enclMethod.mods.flags & ANONCONSTR) != 0 ? 8 : 0);
+            return new CandidateKey(site.tsym, name, env.enclClass.sym, env.toplevel.packge, flags, args);
+        }
+
+        private boolean isPlain(Type t) {
+            return t.hasTag(CLASS) &&
+                    !t.isCompound() &&
+                    !t.isErroneous() &&
+                    t.allparams().isEmpty();
+        }
+
+        private Object argKey(Type t) {
+            if (t.isPrimitive() || t.hasTag(BOT))
+                return t.getTag();
+            if (t.hasTag(ARRAY)) {
+                Object elem = argKey(((ArrayType) t).elemtype);
+                return elem != null ? List.of(ARRAY, elem) : null;
+            }
+            return isPlain(t) ? t.tsym : null;
+        }
+
+        Symbol get(CandidateKey key) {
+            int gen = types.hierarchyGeneration();
+            if (gen != generation) {
+                entries.clear();
+                generation = gen;
+            }
+            Symbol sym = entries.get(key);
+            if (sym != null)
+                hits++;
+            else
+                misses++;
+            return sym;
+        }
+
+        void put(CandidateKey key, Symbol sym) {
+            // a class may have been completed by the lookup
+            if (sym.kind == MTH && types.hierarchyGeneration() == generation)
+                entries.put(key, sym);
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getBypasses() { return bypasses; }
+
+        @Override
+        public String toString() {
+            long total = hits + misses;
+            return "findMethod " + hits + "/" + total + " hits"
+                    + (total == 0 ? "" : " (" + (hits * 100 / total) + "%)")
+                    + ", " + bypasses + " not cached";
+        }
+    }
+
+    private static class CandidateKey {
+        final Symbol site;
+        final Name name;
+        final Symbol enclClass;
+        final Symbol packge;
+        final int flags;
+        final Object[] args;
+
+        CandidateKey(Symbol site, Name name, Symbol enclClass, Symbol packge, int flags, Object[] args) {
+            this.site = site;
+            this.name = name;
+            this.enclClass = enclClass;
+            this.packge = packge;
+            this.flags = flags;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CandidateKey))
+                return false;
+            CandidateKey k = (CandidateKey) o;
+            return site == k.site && name == k.name && enclClass == k.enclClass &&
+                    packge == k.packge && flags == k.flags && Arrays.equals(args, k.args);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(site) * 31 + name.hashCode();
+            h = (h * 31 + System.identityHashCode(enclClass)) * 31 + System.identityHashCode(packge);
+            return (h * 31 + flags) * 31 + Arrays.hashCode(args);
+        }
+    }
+
     /**
      * A resolution context is used to keep track of intermediate results of
      * overload resolution, such as list of method that are not applicable
@@ -4968,6 +5162,10 @@ public class Resolve {
         private boolean internalResolution = false;
         private DeferredAttr.AttrMode attrMode = DeferredAttr.AttrMode.SPECULATIVE;
 
+        // AndroidIDE changed: Whether the candidates are looked at when the
+        // lookup succeeds, so that they have to be found each time.
+        boolean keepCandidates = false;
+
         void addInapplicableCandidate(Symbol sym, JCDiagnostic details) {
             Candidate c = new Candidate(currentResolutionContext.step, sym, details, null);
             candidates = candidates.append(c);
@@ -212,6 +212,8 @@ public class TypeEnter implements Completer {
             return;
         }
 
+        // AndroidIDE changed: The supertypes are not final until the header is complete.
+        types.beginHeaderCompletion();
         try {
             annotate.blockAnnotations();
             sym.flags_field |= UNATTRIBUTED;
@@ -236,6 +238,7 @@ public class TypeEnter implements Completer {
             }
         } finally {
             annotate.unblockAnnotations();
+            types.endHeaderCompletion((ClassSymbol) sym);
         }
     }
 
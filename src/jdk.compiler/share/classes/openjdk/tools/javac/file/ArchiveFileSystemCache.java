@@ -0,0 +1,249 @@
+package openjdk.tools.javac.file;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A process-wide cache of open archive file systems, shared by all
+ * {@link JavacFileManager} instances that enable it with the
+ * {@code -XDsharedArchiveCache} option.
+ *
+ * <p>Archives are keyed by canonical path, last modified time, file system
+ * provider and environment (which includes the multi-release setting), and
+ * are reference counted: every file manager that uses an archive holds one
+ * reference, which it releases when it is closed. Archives that are no longer
+ * referenced stay open so that the next file manager does not have to open
+ * and index them again, until the number of open archives exceeds
+ * {@link #getMaxOpenArchives()}; then the least recently used unreferenced
+ * archives are closed. An archive that changed on disk is closed as soon as
+ * it is no longer referenced.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public final class ArchiveFileSystemCache {
+
+    private static final ArchiveFileSystemCache instance = new ArchiveFileSystemCache();
+
+    /**
+     * Get the process-wide archive cache.
+     */
+    public static ArchiveFileSystemCache instance() {
+        return instance;
+    }
+
+    private int maxOpenArchives = 64;
+
+    /** All open archives, in least recently used order. */
+    private final LinkedHashMap<Key, Archive> archives = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<FileSystem, Archive> byFileSystem = new IdentityHashMap<>();
+
+    private ArchiveFileSystemCache() {
+    }
+
+    /**
+     * Get the maximum number of open archives. Archives that are in use are
+     * never closed, so this limit may be exceeded.
+     */
+    public synchronized int getMaxOpenArchives() {
+        return maxOpenArchives;
+    }
+
+    /**
+     * Set the maximum number of open archives, closing the least recently
+     * used unreferenced archives that exceed the new limit.
+     */
+    public void setMaxOpenArchives(int max) throws IOException {
+        if (max < 0) {
+            throw new IllegalArgumentException("max: " + max);
+        }
+        List<Archive> evicted;
+        synchronized (this) {
+            maxOpenArchives = max;
+            evicted = evict(null);
+        }
+        close(evicted);
+    }
+
+    /**
+     * Get the number of open archives.
+     */
+    public synchronized int size() {
+        return archives.size();
+    }
+
+    /**
+     * Close all archives that are not in use.
+     */
+    public void clear() throws IOException {
+        List<Archive> unused = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Archive> it = archives.values().iterator(); it.hasNext(); ) {
+                Archive a = it.next();
+                if (a.refs == 0) {
+                    it.remove();
+                    byFileSystem.remove(a.fileSystem);
+                    unused.add(a);
+                }
+            }
+        }
+        close(unused);
+    }
+
+    /**
+     * Get a file system for the archive at the given canonical path, opening
+     * it if necessary. The caller holds a reference to the returned file
+     * system until it calls {@link #release(FileSystem)}, and must not close
+     * it.
+     */
+    FileSystem acquire(Path realPath, FileSystemProvider provider, Map<String, ?> env)
+            throws IOException {
+        Key key = new Key(realPath, Files.getLastModifiedTime(realPath).toMillis(),
+                provider.getClass(), env);
+        synchronized (this) {
+            Archive a = archives.get(key);
+            if (a != null) {
+                a.refs++;
+                return a.fileSystem;
+            }
+        }
+
+        // open outside of the lock, so that opening a large archive does not
+        // block the users of other archives
+        FileSystem fs = provider.newFileSystem(realPath, env);
+        FileSystem duplicate = null;
+        List<Archive> evicted;
+        synchronized (this) {
+            Archive a = archives.get(key);
+            if (a != null) {
+                // lost the race against another thread opening the same archive
+                duplicate = fs;
+                fs = a.fileSystem;
+            } else {
+                a = new Archive(key, fs);
+                archives.put(key, a);
+                byFileSystem.put(fs, a);
+            }
+            a.refs++;
+            evicted = evict(key);
+        }
+        if (duplicate != null) {
+            duplicate.close();
+        }
+        close(evicted);
+        return fs;
+    }
+
+    /**
+     * Release a reference obtained from {@link #acquire}.
+     */
+    void release(FileSystem fs) throws IOException {
+        List<Archive> evicted;
+        synchronized (this) {
+            Archive a = byFileSystem.get(fs);
+            if (a == null || a.refs == 0) {
+                return;
+            }
+            a.refs--;
+            evicted = evict(null);
+        }
+        close(evicted);
+    }
+
+    // Removes the unreferenced archives that changed on disk since the archive
+    // with the given key was opened, and the least recently used unreferenced
+    // archives beyond the limit. Must be called with the lock held.
+    private List<Archive> evict(Key current) {
+        List<Archive> evicted = new ArrayList<>();
+        int excess = archives.size() - maxOpenArchives;
+        for (Iterator<Archive> it = archives.values().iterator(); it.hasNext(); ) {
+            Archive a = it.next();
+            if (a.refs > 0) {
+                continue;
+            }
+            boolean stale = current != null && a.key != current
+                    && a.key.path.equals(current.path)
+                    && a.key.lastModified != current.lastModified;
+            if (stale || excess > 0) {
+                it.remove();
+                byFileSystem.remove(a.fileSystem);
+                evicted.add(a);
+                excess--;
+            }
+        }
+        return evicted;
+    }
+
+    private static void close(List<Archive> archives) throws IOException {
+        IOException ioe = null;
+        for (Archive a : archives) {
+            try {
+                a.fileSystem.close();
+            } catch (IOException x) {
+                if (ioe == null) {
+                    ioe = x;
+                } else {
+                    ioe.addSuppressed(x);
+                }
+            }
+        }
+        if (ioe != null) {
+            throw ioe;
+        }
+    }
+
+    private static final class Archive {
+        final Key key;
+        final FileSystem fileSystem;
+        int refs;
+
+        Archive(Key key, FileSystem fileSystem) {
+            this.key = key;
+            this.fileSystem = fileSystem;
+        }
+    }
+
+    private static final class Key {
+        final Path path;
+        final long lastModified;
+        final Class<?> providerClass;
+        final Map<String, ?> env;
+
+        Key(Path path, long lastModified, Class<?> providerClass, Map<String, ?> env) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.providerClass = providerClass;
+            this.env = new HashMap<>(env);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return path.equals(k.path)
+                    && lastModified == k.lastModified
+                    && providerClass == k.providerClass
+                    && env.equals(k.env);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, providerClass, env);
+        }
+    }
+}
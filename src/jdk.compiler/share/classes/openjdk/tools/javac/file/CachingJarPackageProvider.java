@@ -0,0 +1,319 @@
+package openjdk.tools.javac.file;
+
+import com.itsaky.androidide.zipfs2.JarPackageProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdkx.lang.model.SourceVersion;
+
+import openjdk.tools.javac.file.RelativePath.RelativeDirectory;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The {@link JarPackageProvider} used by {@link JavacFileManager} when the
+ * context does not provide one.
+ *
+ * <p>The package directories of an archive are computed by walking the
+ * archive once per archive version (real path, size and last modified time)
+ * and multi-release setting the archive is opened with, and are kept in memory across contexts, so that an unchanged archive is
+ * not walked again by later file managers. If the archive file system itself
+ * is shared (see {@link ArchiveFileSystemCache}), the package map is reused
+ * as is while it is in use; neither the map nor the file system is kept
+ * reachable by this provider. Optionally the package directories are also
+ * persisted in a compact binary file per archive, see
+ * {@link #setIndexDirectory(Path)}.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public final class CachingJarPackageProvider implements JarPackageProvider {
+
+    private static final CachingJarPackageProvider instance = new CachingJarPackageProvider();
+
+    /**
+     * Get the process-wide package provider.
+     */
+    public static CachingJarPackageProvider instance() {
+        return instance;
+    }
+
+    private static final int MAGIC = 0x4a504b47;    // "JPKG"
+    private static final int VERSION = 2;
+
+    /** Maximum number of archives whose package directories are kept in memory. */
+    private static final int MAX_ARCHIVES = 1024;
+
+    private Path indexDirectory;
+
+    /**
+     * Package directories by archive real path and multi-release setting, in
+     * least recently used order.
+     */
+    private final Map<Key, Packages> packages = new LinkedHashMap<Key, Packages>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Packages> eldest) {
+            return size() > MAX_ARCHIVES;
+        }
+    };
+
+    private CachingJarPackageProvider() {
+    }
+
+    /**
+     * Set the directory the package indexes are persisted in, or null to
+     * keep them in memory only.
+     */
+    public synchronized void setIndexDirectory(Path dir) {
+        indexDirectory = dir;
+    }
+
+    public synchronized Path getIndexDirectory() {
+        return indexDirectory;
+    }
+
+    /**
+     * Forget all package directories kept in memory.
+     */
+    public synchronized void clear() {
+        packages.clear();
+    }
+
+    /**
+     * Without the file system of the archive the package paths can't be
+     * created, so the archive has to be walked by the caller.
+     */
+    @Override
+    public Map<? extends Object, Path> getPackages(Path archivePath) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<? extends Object, Path> getPackages(Path archivePath, FileSystem fileSystem) {
+        return getPackages(archivePath, fileSystem, null);
+    }
+
+    @Override
+    public Map<? extends Object, Path> getPackages(Path archivePath, FileSystem fileSystem,
+                                                   String multiRelease) {
+        Path realPath;
+        BasicFileAttributes attrs;
+        try {
+            realPath = archivePath.toRealPath();
+            attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+        } catch (IOException | SecurityException ex) {
+            return Collections.emptyMap();
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        Key key = new Key(realPath, multiRelease != null ? multiRelease : "");
+
+        Packages p;
+        Path dir;
+        synchronized (this) {
+            p = packages.get(key);
+            dir = indexDirectory;
+        }
+        if (p == null || p.size != size || p.lastModified != lastModified) {
+            p = dir != null ? read(indexFile(dir, key), key, size, lastModified) : null;
+            if (p == null) {
+                try {
+                    p = new Packages(size, lastModified, walk(fileSystem));
+                } catch (IOException ex) {
+                    return Collections.emptyMap();
+                }
+                if (dir != null) {
+                    write(indexFile(dir, key), key, p);
+                }
+            }
+            synchronized (this) {
+                packages.put(key, p);
+            }
+        } else {
+            Map<RelativeDirectory, Path> map = p.getMap(fileSystem);
+            if (map != null) {
+                return map;
+            }
+        }
+
+        Path root = fileSystem.getRootDirectories().iterator().next();
+        Map<RelativeDirectory, Path> map = new HashMap<>(p.dirs.length * 4 / 3 + 1);
+        for (String d : p.dirs) {
+            map.put(new RelativeDirectory(d), root.resolve(d));
+        }
+        map = Collections.unmodifiableMap(map);
+        p.setMap(fileSystem, map);
+        return map;
+    }
+
+    // Collects the package directories the same way as
+    // JavacFileManager.ArchiveContainer.walkArchive() does.
+    private static String[] walk(FileSystem fileSystem) throws IOException {
+        List<String> dirs = new ArrayList<>();
+        for (Path root : fileSystem.getRootDirectories()) {
+            Files.walkFileTree(root, Collections.emptySet(), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isValid(dir.getFileName())) {
+                        dirs.add(root.relativize(dir).toString());
+                        return FileVisitResult.CONTINUE;
+                    } else {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+            });
+        }
+        return dirs.toArray(new String[0]);
+    }
+
+    private static boolean isValid(Path fileName) {
+        if (fileName == null) {
+            return true;
+        } else {
+            String name = fileName.toString();
+            if (name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            return SourceVersion.isIdentifier(name);
+        }
+    }
+
+    private static Path indexFile(Path dir, Key key) {
+        String name = key.realPath.getFileName() + "-"
+                + Integer.toHexString(key.realPath.toString().hashCode());
+        if (!key.multiRelease.isEmpty()) {
+            name += "-" + Integer.toHexString(key.multiRelease.hashCode());
+        }
+        return dir.resolve(name + ".pkgidx");
+    }
+
+    // Reads the package directories of the archive from the index file,
+    // returns null if there is no index for this version of the archive.
+    private static Packages read(Path file, Key key, long size, long lastModified) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(key.realPath.toString())
+                    || !in.readUTF().equals(key.multiRelease)
+                    || in.readLong() != size || in.readLong() != lastModified) {
+                return null;
+            }
+            String[] dirs = new String[in.readInt()];
+            for (int i = 0; i < dirs.length; i++) {
+                dirs[i] = in.readUTF();
+            }
+            return new Packages(size, lastModified, dirs);
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static void write(Path file, Key key, Packages p) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), null);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key.realPath.toString());
+                out.writeUTF(key.multiRelease);
+                out.writeLong(p.size);
+                out.writeLong(p.lastModified);
+                out.writeInt(p.dirs.length);
+                for (String d : p.dirs) {
+                    out.writeUTF(d);
+                }
+            }
+            Files.move(tmp, file, REPLACE_EXISTING);
+            tmp = null;
+        } catch (IOException | RuntimeException ex) {
+            // the index is a cache only, the archive is walked again next time
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        final Path realPath;
+        final String multiRelease;  // empty if not set
+
+        Key(Path realPath, String multiRelease) {
+            this.realPath = realPath;
+            this.multiRelease = multiRelease;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return realPath.equals(other.realPath) && multiRelease.equals(other.multiRelease);
+        }
+
+        @Override
+        public int hashCode() {
+            return realPath.hashCode() * 31 + multiRelease.hashCode();
+        }
+    }
+
+    private static final class Packages {
+        final long size;
+        final long lastModified;
+        final String[] dirs;    // relative to the archive root
+
+        // The package map last created for this version of the archive and
+        // its file system. Both are only weakly referenced, the map is kept
+        // alive by the file managers using it and it refers to the file system.
+        private Reference<FileSystem> fileSystem;
+        private Reference<Map<RelativeDirectory, Path>> map;
+
+        Packages(long size, long lastModified, String[] dirs) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.dirs = dirs;
+        }
+
+        synchronized Map<RelativeDirectory, Path> getMap(FileSystem fs) {
+            if (fileSystem == null || fileSystem.get() != fs || !fs.isOpen()) {
+                return null;
+            }
+            return map.get();
+        }
+
+        synchronized void setMap(FileSystem fs, Map<RelativeDirectory, Path> map) {
+            this.fileSystem = new WeakReference<>(fs);
+            this.map = new WeakReference<>(map);
+        }
+    }
+}
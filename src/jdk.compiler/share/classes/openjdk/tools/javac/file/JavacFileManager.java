@@ -116,6 +116,18 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
     protected JarPackageProvider jarPackageProvider;
 
+    /**
+     * Directory holding the on-disk central directory indexes of the opened
+     * archives, or null if archives should not be indexed.
+     */
+    protected String cenIndexDir;
+
+    /**
+     * Whether archives are opened through the process-wide
+     * {@link ArchiveFileSystemCache}, instead of once per file manager.
+     */
+    protected boolean sharedArchiveCache;
+
     private PathFactory pathFactory = Paths::get;
 
     protected enum SortFiles implements Comparator<Path> {
@@ -182,10 +194,12 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         fsInfo = FSInfo.instance(context);
         jarPackageProvider = context.get(JarPackageProvider.class);
         if (jarPackageProvider == null) {
-            jarPackageProvider = archivePath -> Collections.emptyMap();
+            jarPackageProvider = CachingJarPackageProvider.instance();
         }
 
         symbolFileEnabled = !options.isSet("ignore.symbol.file");
+        cenIndexDir = options.get("cenIndexDir");
+        sharedArchiveCache = options.isSet("sharedArchiveCache");
 
         String sf = options.get("sortFiles");
         if (sf != null) {
@@ -215,6 +229,18 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         return symbolFileEnabled;
     }
 
+    /**
+     * Set whether or not archives are shared with other file managers
+     * through the process-wide {@link ArchiveFileSystemCache}.
+     */
+    public void setSharedArchiveCache(boolean b) {
+        sharedArchiveCache = b;
+    }
+
+    public boolean isSharedArchiveCache() {
+        return sharedArchiveCache;
+    }
+
     // used by tests
     public JavaFileObject getJavaFileObject(String name) {
         return getJavaFileObjects(name).iterator().next();
@@ -611,32 +637,51 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
         private final Path archivePath;
         private final FileSystem fileSystem;
+        private final boolean shared;
         private final Map<RelativeDirectory, Path> packages;
+        private boolean closed;
 
         public ArchiveContainer(Path archivePath) throws IOException, ProviderNotFoundException, SecurityException {
             this.archivePath = archivePath;
-            Map<String, String> env = Collections.singletonMap("multi-release", multiReleaseValue);
+            Map<String, String> env = new HashMap<>();
+            env.put("multi-release", multiReleaseValue);
+            if (cenIndexDir != null) {
+                // the index stores the compact inode table of the archive
+                env.put("compactIndex", "true");
+                env.put("cenIndexDir", cenIndexDir);
+            }
             FileSystemProvider jarFSProvider = fsInfo.getJarFSProvider();
             Assert.checkNonNull(jarFSProvider, "should have been caught before!");
-            this.fileSystem = jarFSProvider.newFileSystem(archivePath, env);
+            this.shared = sharedArchiveCache;
+            if (shared) {
+                this.fileSystem = ArchiveFileSystemCache.instance()
+                        .acquire(fsInfo.getCanonicalFile(archivePath), jarFSProvider, env);
+            } else {
+                this.fileSystem = jarFSProvider.newFileSystem(archivePath, env);
+            }
 
-            if (jarPackageProvider == null) {
-                this.packages = new HashMap<>();
-                walkArchive();
-                return;
+            try {
+                this.packages = initPackages();
+            } catch (IOException | RuntimeException ex) {
+                close();
+                throw ex;
             }
+        }
 
-            final Map<? extends Object, Path> cachedPackages = jarPackageProvider.getPackages(archivePath);
-            if (cachedPackages == null || cachedPackages.isEmpty()) {
-                this.packages = new HashMap<>();
-                walkArchive();
-                return;
+        private Map<RelativeDirectory, Path> initPackages() throws IOException {
+            if (jarPackageProvider != null) {
+                final Map<? extends Object, Path> cachedPackages = jarPackageProvider.getPackages(archivePath, fileSystem, multiReleaseValue);
+                if (cachedPackages != null && !cachedPackages.isEmpty()) {
+                    return (Map<RelativeDirectory, Path>) cachedPackages;
+                }
             }
 
-            packages = (Map<RelativeDirectory, Path>) cachedPackages;
+            Map<RelativeDirectory, Path> packages = new HashMap<>();
+            walkArchive(packages);
+            return packages;
         }
 
-        private void walkArchive() throws IOException {
+        private void walkArchive(Map<RelativeDirectory, Path> packages) throws IOException {
             for (Path root : fileSystem.getRootDirectories()) {
                 Files.walkFileTree(root, NO_FILE_VISIT_OPTIONS, Integer.MAX_VALUE,
                         new SimpleFileVisitor<Path>() {
@@ -727,7 +772,16 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
         @Override
         public void close() throws IOException {
-            fileSystem.close();
+            // the container is registered under both its user and real path
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (shared) {
+                ArchiveFileSystemCache.instance().release(fileSystem);
+            } else {
+                fileSystem.close();
+            }
         }
 
         @Override
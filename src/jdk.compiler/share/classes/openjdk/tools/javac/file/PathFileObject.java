@@ -36,6 +36,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.CharsetDecoder;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -44,6 +45,9 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.text.Normalizer;
 import java.util.Objects;
+import java.util.function.IntFunction;
+
+import com.itsaky.androidide.zipfs2.ZipPath;
 
 import jdkx.lang.model.element.Modifier;
 import jdkx.lang.model.element.NestingKind;
@@ -461,6 +465,40 @@ public abstract class PathFileObject implements JavaFileObject {
         return Files.newInputStream(path);
     }
 
+    /**
+     * Reads the contents of this file object into the array returned by
+     * {@code buffer}, which is called once with the size of the file and
+     * must return an array of at least that length. The contents are read
+     * straight into that array, starting at index 0, without an
+     * intermediate stream.
+     *
+     * @return the size of the file, or -1 if the size of the file is not
+     *         known upfront, in which case {@code buffer} is not called and
+     *         the file has to be read with {@link #openInputStream()}
+     */
+    public int readAllBytes(IntFunction<byte[]> buffer) throws IOException {
+        fileManager.updateLastUsedTime();
+        // AndroidIDE changed: Entries of zipfs2 archives are inflated straight into the buffer.
+        if (path instanceof ZipPath) {
+            return ((ZipPath) path).readAllBytes(buffer);
+        }
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return -1;
+        }
+        try (FileChannel ch = FileChannel.open(path)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                return -1;
+            }
+            byte[] bytes = buffer.apply((int) size);
+            ByteBuffer bb = ByteBuffer.wrap(bytes, 0, (int) size);
+            while (bb.hasRemaining() && ch.read(bb) >= 0) {
+                // read until the end of the file
+            }
+            return bb.position();
+        }
+    }
+
     @Override @DefinedBy(Api.COMPILER)
     public OutputStream openOutputStream() throws IOException {
         fileManager.updateLastUsedTime();
@@ -0,0 +1,416 @@
+package openjdk.tools.javac.jvm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.code.Symbol;
+import openjdk.tools.javac.code.Symbol.ClassSymbol;
+import openjdk.tools.javac.code.Symtab;
+import openjdk.tools.javac.code.Type;
+import openjdk.tools.javac.code.Type.ArrayType;
+import openjdk.tools.javac.code.Type.ClassType;
+import openjdk.tools.javac.code.Type.ForAll;
+import openjdk.tools.javac.file.PathFileObject;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCClassDecl;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.TreeScanner;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Convert;
+import openjdk.tools.javac.util.List;
+import openjdk.tools.javac.util.ListBuffer;
+import openjdk.tools.javac.util.Names;
+import openjdk.tools.javac.util.Options;
+
+import static openjdk.tools.javac.code.Kinds.Kind.TYP;
+import static openjdk.tools.javac.code.Scope.LookupKind.NON_RECURSIVE;
+import static openjdk.tools.javac.jvm.ClassFile.*;
+
+/**
+ * Reads the class files that the compilation units will need in parallel,
+ * before they are completed on the compiler thread.
+ *
+ * <p>Enabled with {@code -XDprefetchClassFiles} or
+ * {@code -XDprefetchClassFiles=<threads>}. After Enter, the supertypes of the
+ * entered classes, the classes named in the signatures of their members, and
+ * the named imports are followed up the class hierarchy.
+ * The class files of the classes that are not completed yet are read, and
+ * their supertypes are extracted from the constant pool, by a pool of worker
+ * threads. The bytes are staged until {@link ClassReader} reads the class.
+ * Only the file objects are used by the worker threads; the symbol table is
+ * used on the compiler thread only. The worker threads are created on first
+ * use, kept for the context, and stop when idle or when the prefetcher is
+ * closed.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class ClassFilePrefetcher {
+
+    protected static final Context.Key<ClassFilePrefetcher> classFilePrefetcherKey = new Context.Key<>();
+
+    /** The maximum number of class files read in one prefetch. */
+    public static final int MAX_CLASSES = 8192;
+
+    /** The time idle worker threads are kept, in seconds. */
+    private static final long KEEP_ALIVE = 30;
+
+    public static ClassFilePrefetcher instance(Context context) {
+        ClassFilePrefetcher instance = context.get(classFilePrefetcherKey);
+        if (instance == null)
+            instance = new ClassFilePrefetcher(context);
+        return instance;
+    }
+
+    private final Symtab syms;
+    private final Names names;
+
+    /** The number of worker threads, 0 if prefetching is disabled. */
+    private final int threads;
+
+    /** Class file contents read ahead, not yet taken by ClassReader. */
+    private final Map<JavaFileObject, byte[]> staged = new HashMap<>();
+
+    /** The worker threads, created on first use. */
+    private ThreadPoolExecutor executor;
+
+    protected ClassFilePrefetcher(Context context) {
+        context.put(classFilePrefetcherKey, this);
+        syms = Symtab.instance(context);
+        names = Names.instance(context);
+        String opt = Options.instance(context).get("prefetchClassFiles");
+        int n = 0;
+        if (opt != null) {
+            try {
+                n = Integer.parseInt(opt);
+            } catch (NumberFormatException ex) {
+                n = Runtime.getRuntime().availableProcessors();
+            }
+        }
+        threads = Math.max(n, 0);
+    }
+
+    public boolean isEnabled() {
+        return threads > 0;
+    }
+
+    /**
+     * Read the class files of the uncompleted supertypes of the classes in
+     * the given entered compilation units, of the classes in their member
+     * signatures, and of their named imports.
+     */
+    public void prefetch(List<JCCompilationUnit> trees) {
+        if (!isEnabled()) {
+            return;
+        }
+        Set<ClassSymbol> seen = new HashSet<>();
+        Deque<ClassSymbol> roots = new ArrayDeque<>();
+        for (JCCompilationUnit tree : trees) {
+            new TreeScanner() {
+                @Override
+                public void visitClassDef(JCClassDecl tree) {
+                    if (tree.sym != null) {
+                        roots.add(tree.sym);
+                        if (tree.sym.members_field != null) {
+                            for (Symbol m : tree.sym.members_field.getSymbols(NON_RECURSIVE)) {
+                                addTypes(roots, m.type);
+                            }
+                        }
+                    }
+                    super.visitClassDef(tree);
+                }
+                @Override
+                public void scan(JCTree tree) {
+                    // only class declarations are of interest
+                    if (tree != null && (tree.hasTag(JCTree.Tag.CLASSDEF)
+                            || tree.hasTag(JCTree.Tag.TOPLEVEL))) {
+                        tree.accept(this);
+                    }
+                }
+            }.scan(tree);
+            if (tree.namedImportScope != null) {
+                for (Symbol sym : tree.namedImportScope.getSymbols(s -> s.kind == TYP)) {
+                    if (sym instanceof ClassSymbol) {
+                        roots.add((ClassSymbol) sym);
+                    }
+                }
+            }
+        }
+
+        ExecutorService executor = executor();
+        Deque<Fetch> pending = new ArrayDeque<>();
+        try {
+            int count = 0;
+            while (!roots.isEmpty() || !pending.isEmpty()) {
+                // walk the completed classes up to the first uncompleted ones
+                while (!roots.isEmpty()) {
+                    ClassSymbol c = roots.poll();
+                    if (!seen.add(c)) {
+                        continue;
+                    }
+                    if (!c.isCompleted()) {
+                        if (c.classfile instanceof PathFileObject
+                                && c.classfile.getKind() == JavaFileObject.Kind.CLASS
+                                && !staged.containsKey(c.classfile)
+                                && count++ < MAX_CLASSES) {
+                            JavaFileObject file = c.classfile;
+                            pending.add(new Fetch(c, file, executor.submit(() -> fetch(file))));
+                        }
+                    } else if (c.type instanceof ClassType) {
+                        ClassType ct = (ClassType) c.type;
+                        addSupertype(roots, ct.supertype_field);
+                        if (ct.interfaces_field != null) {
+                            for (Type i : ct.interfaces_field) {
+                                addSupertype(roots, i);
+                            }
+                        }
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    Fetch f = pending.poll();
+                    Staged s;
+                    try {
+                        s = f.result.get();
+                    } catch (ExecutionException ex) {
+                        // the class file is read by ClassReader as usual
+                        continue;
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    staged.put(f.file, s.bytes);
+                    for (String name : s.supertypes) {
+                        ClassSymbol c = syms.getClass(f.c.packge().modle, names.fromString(name));
+                        if (c != null) {
+                            roots.add(c);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (Fetch f : pending) {
+                f.result.cancel(true);
+            }
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "javac class file prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private static void addSupertype(Deque<ClassSymbol> roots, Type t) {
+        if (t != null && t.tsym instanceof ClassSymbol) {
+            roots.add((ClassSymbol) t.tsym);
+        }
+    }
+
+    // Adds the classes of a member signature, without completing them.
+    private static void addTypes(Deque<ClassSymbol> roots, Type t) {
+        if (t == null) {
+            return;
+        }
+        switch (t.getTag()) {
+            case CLASS:
+                addSupertype(roots, t);
+                List<Type> args = ((ClassType) t).typarams_field;
+                if (args != null) {
+                    for (Type a : args) {
+                        addTypes(roots, a);
+                    }
+                }
+                break;
+            case ARRAY:
+                addTypes(roots, ((ArrayType) t).elemtype);
+                break;
+            case FORALL:
+                addTypes(roots, ((ForAll) t).qtype);
+                break;
+            case METHOD:
+                for (Type a : t.getParameterTypes()) {
+                    addTypes(roots, a);
+                }
+                addTypes(roots, t.getReturnType());
+                for (Type a : t.getThrownTypes()) {
+                    addTypes(roots, a);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Take the staged contents of the given class file, or null if the
+     * class file was not read ahead.
+     */
+    public byte[] take(JavaFileObject file) {
+        return staged.isEmpty() ? null : staged.remove(file);
+    }
+
+    /** Drop all staged class file contents. */
+    public void clear() {
+        staged.clear();
+    }
+
+    /** Drop all staged class file contents and stop the worker threads. */
+    public void close() {
+        staged.clear();
+        ExecutorService e;
+        synchronized (this) {
+            e = executor;
+            executor = null;
+        }
+        if (e != null) {
+            e.shutdownNow();
+        }
+    }
+
+    private static class Fetch {
+        final ClassSymbol c;
+        final JavaFileObject file;
+        final Future<Staged> result;
+
+        Fetch(ClassSymbol c, JavaFileObject file, Future<Staged> result) {
+            this.c = c;
+            this.file = file;
+            this.result = result;
+        }
+    }
+
+    private static class Staged {
+        final byte[] bytes;
+        final List<String> supertypes;
+
+        Staged(byte[] bytes, List<String> supertypes) {
+            this.bytes = bytes;
+            this.supertypes = supertypes;
+        }
+    }
+
+    // Runs on a worker thread.
+    private Staged fetch(JavaFileObject file) throws IOException {
+        byte[] bytes = read(file);
+        return new Staged(bytes, supertypes(bytes));
+    }
+
+    /**
+     * Read the contents of the given class file. Called on a worker thread;
+     * if this fails, the class file is read by {@link ClassReader} as usual.
+     */
+    protected byte[] read(JavaFileObject file) throws IOException {
+        byte[][] holder = new byte[1][];
+        int length = ((PathFileObject) file).readAllBytes(size -> holder[0] = new byte[size]);
+        byte[] bytes;
+        if (length >= 0) {
+            bytes = length == holder[0].length ? holder[0] : Arrays.copyOf(holder[0], length);
+        } else {
+            try (InputStream in = file.openInputStream()) {
+                bytes = new byte[Math.max(in.available(), 8192)];
+                length = 0;
+                int r;
+                while ((r = in.read(bytes, length, bytes.length - length)) != -1) {
+                    length += r;
+                    if (length == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, length * 2);
+                    }
+                }
+                bytes = Arrays.copyOf(bytes, length);
+            }
+        }
+        return bytes;
+    }
+
+    // Returns the binary names of the direct supertypes of the class file in
+    // bytes, or an empty list if the class file is malformed; ClassReader
+    // will report that.
+    private static List<String> supertypes(byte[] b) {
+        ListBuffer<String> result = new ListBuffer<>();
+        try {
+            if (getInt(b, 0) != JAVA_MAGIC) {
+                return List.nil();
+            }
+            int count = getChar(b, 8);
+            int[] offsets = new int[count];
+            int bp = 10;
+            for (int i = 1; i < count; i++) {
+                offsets[i] = bp;
+                byte tag = b[bp++];
+                switch (tag) {
+                    case CONSTANT_Utf8:
+                        bp += 2 + getChar(b, bp);
+                        break;
+                    case CONSTANT_Class: case CONSTANT_String: case CONSTANT_MethodType:
+                    case CONSTANT_Module: case CONSTANT_Package:
+                        bp += 2;
+                        break;
+                    case CONSTANT_MethodHandle:
+                        bp += 3;
+                        break;
+                    case CONSTANT_Integer: case CONSTANT_Float: case CONSTANT_Fieldref:
+                    case CONSTANT_Methodref: case CONSTANT_InterfaceMethodref:
+                    case CONSTANT_NameandType: case CONSTANT_Dynamic: case CONSTANT_InvokeDynamic:
+                        bp += 4;
+                        break;
+                    case CONSTANT_Long: case CONSTANT_Double:
+                        bp += 8;
+                        i++;
+                        break;
+                    default:
+                        return List.nil();
+                }
+            }
+            bp += 4;    // access flags, this class
+            addClassName(result, b, offsets, getChar(b, bp));
+            int interfaces = getChar(b, bp + 2);
+            for (int i = 0; i < interfaces; i++) {
+                addClassName(result, b, offsets, getChar(b, bp + 4 + i * 2));
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            return List.nil();
+        }
+        return result.toList();
+    }
+
+    private static void addClassName(ListBuffer<String> result, byte[] b, int[] offsets, int index) {
+        if (index == 0 || b[offsets[index]] != CONSTANT_Class) {
+            return;
+        }
+        int utf8 = offsets[getChar(b, offsets[index] + 1)];
+        if (b[utf8] == CONSTANT_Utf8) {
+            result.add(Convert.utf2string(b, utf8 + 3, getChar(b, utf8 + 1)).replace('/', '.'));
+        }
+    }
+
+    private static int getChar(byte[] b, int bp) {
+        return ((b[bp] & 0xFF) << 8) + (b[bp + 1] & 0xFF);
+    }
+
+    private static int getInt(byte[] b, int bp) {
+        return ((b[bp] & 0xFF) << 24) + ((b[bp + 1] & 0xFF) << 16)
+                + ((b[bp + 2] & 0xFF) << 8) + (b[bp + 3] & 0xFF);
+    }
+}
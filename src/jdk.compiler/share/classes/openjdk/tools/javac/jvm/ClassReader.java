@@ -49,6 +49,7 @@ import openjdk.tools.javac.comp.Annotate.AnnotationTypeCompleter;
 import openjdk.tools.javac.code.*;
 import openjdk.tools.javac.code.Directive.*;
 import openjdk.tools.javac.code.Lint.LintCategory;
+import openjdk.tools.javac.code.Scope.ScopeFiller;
 import openjdk.tools.javac.code.Scope.WriteableScope;
 import openjdk.tools.javac.code.Symbol.*;
 import openjdk.tools.javac.code.Symtab;
@@ -121,6 +122,11 @@ public class ClassReader {
      */
     public boolean saveParameterNames;
 
+    /** Switch: read the fields and methods of a class when its members
+     *  are first used, rather than when the class is completed.
+     */
+    boolean lazyMembers;
+
     /**
      * The currently selected profile.
      */
@@ -148,6 +154,10 @@ public class ClassReader {
 
     DeferredCompletionFailureHandler dcfh;
 
+    /** Class files read ahead of time, see {@link ClassFilePrefetcher}.
+     */
+    private final ClassFilePrefetcher prefetcher;
+
     /**
      * Support for preview language features.
      */
@@ -270,6 +280,7 @@ public class ClassReader {
             throw new AssertionError("FileManager initialization error");
         diagFactory = JCDiagnostic.Factory.instance(context);
         dcfh = DeferredCompletionFailureHandler.instance(context);
+        prefetcher = ClassFilePrefetcher.instance(context);
 
         log = Log.instance(context);
 
@@ -284,6 +295,7 @@ public class ClassReader {
         allowSealedTypes = Feature.SEALED_CLASSES.allowedInSource(source);
 
         saveParameterNames = options.isSet(PARAMETERS);
+        lazyMembers = options.isSet("lazyMembers");
 
         profile = Profile.instance(context);
 
@@ -2573,6 +2585,12 @@ public class ClassReader {
         if (ct.interfaces_field == null)
             ct.interfaces_field = is.reverse();
 
+        // AndroidIDE changed: Optionally defer reading the members until they are used.
+        if (lazyMembers && (fieldCount != 0 || methodCount != 0) && deferMembers(c)) {
+            typevars = typevars.leave();
+            return;
+        }
+
         Assert.check(fieldCount == nextChar());
         for (int i = 0; i < fieldCount; i++) enterMember(c, readField());
         Assert.check(methodCount == nextChar());
@@ -2585,6 +2603,185 @@ public class ClassReader {
         typevars = typevars.leave();
     }
 
+    /** Record the fields and methods at bp, so that they are read when the
+     *  members of c are first used. The class bytes up to the end of the
+     *  methods are kept until then. Returns false if the members have to
+     *  be read right away.
+     */
+    private boolean deferMembers(ClassSymbol c) {
+        if (c.isRecord()) {
+            // the record component accessors are needed with the class
+            return false;
+        }
+        int start = bp;
+        char fieldCount = nextChar();
+        for (int i = 0; i < fieldCount; i++) skipMember();
+        char methodCount = nextChar();
+        boolean hasDefault = false;
+        for (int i = 0; i < methodCount; i++) {
+            if (c.isInterface()) {
+                // the DEFAULT flag of the interface is set by readMethod
+                long flags = adjustMethodFlags(buf.getChar(bp));
+                if ((flags & ABSTRACT) == 0
+                        && !poolReader.getName(buf.getChar(bp + 2)).equals(names.clinit)) {
+                    if (majorVersion < Version.V52.major ||
+                            (majorVersion == Version.V52.major && minorVersion < Version.V52.minor)) {
+                        // let readMethod report the ill-formed class file
+                        bp = start;
+                        return false;
+                    }
+                    hasDefault |= (flags & (STATIC | PRIVATE)) == 0;
+                }
+            }
+            skipMember();
+        }
+        if (hasDefault) {
+            c.flags_field |= DEFAULT;
+        }
+
+        WriteableScope members = WriteableScope.create(c,
+                new MemberReader(c, Arrays.copyOf(buf.elems, bp), start));
+        // keep the member classes read from the InnerClasses attribute, in order
+        List<Symbol> read = List.nil();
+        for (Symbol sym : c.members_field.getSymbols(LookupKind.NON_RECURSIVE)) {
+            read = read.prepend(sym);
+        }
+        for (Symbol sym : read) {
+            members.enter(sym);
+        }
+        c.members_field = members;
+        return true;
+    }
+
+    /** Reads the fields and methods of a class when its members scope is
+     *  first used, see {@link #deferMembers}.
+     */
+    private class MemberReader implements ScopeFiller {
+        final ClassSymbol c;
+        final JavaFileObject classFile;
+        final ModuleSymbol module;
+        final byte[] bytes;
+        final int start;
+        final int majorVersion;
+        final int minorVersion;
+
+        MemberReader(ClassSymbol c, byte[] bytes, int start) {
+            this.c = c;
+            this.classFile = currentClassFile;
+            this.module = currentModule;
+            this.bytes = bytes;
+            this.start = start;
+            this.majorVersion = ClassReader.this.majorVersion;
+            this.minorVersion = ClassReader.this.minorVersion;
+        }
+
+        @Override
+        public void fill(WriteableScope scope) {
+            readDeferredMembers(this);
+        }
+    }
+
+    private void readDeferredMembers(MemberReader r) {
+        // the members may be used while another class file is read
+        ReaderState state = new ReaderState();
+        annotate.blockAnnotations();
+        try {
+            currentClassFile = r.classFile;
+            currentOwner = r.c;
+            currentModule = r.module;
+            majorVersion = r.majorVersion;
+            minorVersion = r.minorVersion;
+            buf = new ByteBuffer(0);
+            buf.elems = r.bytes;
+            buf.length = r.bytes.length;
+            poolReader = new PoolReader(this, buf, names, syms);
+            int poolEnd = poolReader.readPool(buf, 8);
+            if (signatureBuffer.length < poolEnd) {
+                signatureBuffer = new byte[Integer.highestOneBit(poolEnd) << 1];
+            }
+            warnedAttrs = new HashSet<>();
+            missingTypeVariables = List.nil();
+            foundTypeVariables = List.nil();
+            parameterNameIndices = null;
+            parameterAccessFlags = null;
+            parameterAnnotations = null;
+            readingClassAttr = false;
+            sigEnterPhase = false;
+            typevars = WriteableScope.create(r.c);
+            enterTypevars(r.c, r.c.type);
+
+            bp = r.start;
+            char fieldCount = nextChar();
+            for (int i = 0; i < fieldCount; i++) enterMember(r.c, readField());
+            char methodCount = nextChar();
+            for (int i = 0; i < methodCount; i++) enterMember(r.c, readMethod());
+        } finally {
+            state.restore();
+            annotate.unblockAnnotationsNoFlush();
+        }
+        // attach the annotations and default values of the members, as
+        // ClassFinder does after a class is read, unless an outer caller
+        // reads a class file or blocks the annotations
+        if (!filling) {
+            annotate.flush();
+        }
+    }
+
+    /** The state of the class file currently being read. */
+    private class ReaderState {
+        final ByteBuffer buf = ClassReader.this.buf;
+        final int bp = ClassReader.this.bp;
+        final PoolReader poolReader = ClassReader.this.poolReader;
+        final JavaFileObject currentClassFile = ClassReader.this.currentClassFile;
+        final Symbol currentOwner = ClassReader.this.currentOwner;
+        final ModuleSymbol currentModule = ClassReader.this.currentModule;
+        final WriteableScope typevars = ClassReader.this.typevars;
+        final int majorVersion = ClassReader.this.majorVersion;
+        final int minorVersion = ClassReader.this.minorVersion;
+        final int[] parameterNameIndices = ClassReader.this.parameterNameIndices;
+        final int[] parameterAccessFlags = ClassReader.this.parameterAccessFlags;
+        final ParameterAnnotations[] parameterAnnotations = ClassReader.this.parameterAnnotations;
+        final boolean haveParameterNameIndices = ClassReader.this.haveParameterNameIndices;
+        final boolean sawMethodParameters = ClassReader.this.sawMethodParameters;
+        final Set<Name> warnedAttrs = ClassReader.this.warnedAttrs;
+        final List<Type> missingTypeVariables = ClassReader.this.missingTypeVariables;
+        final List<Type> foundTypeVariables = ClassReader.this.foundTypeVariables;
+        final byte[] signature = ClassReader.this.signature;
+        final int sigp = ClassReader.this.sigp;
+        final int siglimit = ClassReader.this.siglimit;
+        final boolean sigEnterPhase = ClassReader.this.sigEnterPhase;
+        final byte[] signatureBuffer = ClassReader.this.signatureBuffer;
+        final int sbp = ClassReader.this.sbp;
+        final boolean readingClassAttr = ClassReader.this.readingClassAttr;
+
+        void restore() {
+            ClassReader.this.buf = buf;
+            ClassReader.this.bp = bp;
+            ClassReader.this.poolReader = poolReader;
+            ClassReader.this.currentClassFile = currentClassFile;
+            ClassReader.this.currentOwner = currentOwner;
+            ClassReader.this.currentModule = currentModule;
+            ClassReader.this.typevars = typevars;
+            ClassReader.this.majorVersion = majorVersion;
+            ClassReader.this.minorVersion = minorVersion;
+            ClassReader.this.parameterNameIndices = parameterNameIndices;
+            ClassReader.this.parameterAccessFlags = parameterAccessFlags;
+            ClassReader.this.parameterAnnotations = parameterAnnotations;
+            ClassReader.this.haveParameterNameIndices = haveParameterNameIndices;
+            ClassReader.this.sawMethodParameters = sawMethodParameters;
+            ClassReader.this.warnedAttrs = warnedAttrs;
+            ClassReader.this.missingTypeVariables = missingTypeVariables;
+            ClassReader.this.foundTypeVariables = foundTypeVariables;
+            ClassReader.this.signature = signature;
+            ClassReader.this.sigp = sigp;
+            ClassReader.this.siglimit = siglimit;
+            ClassReader.this.sigEnterPhase = sigEnterPhase;
+            ClassReader.this.signatureBuffer = signatureBuffer;
+            ClassReader.this.sbp = sbp;
+            ClassReader.this.readingClassAttr = readingClassAttr;
+        }
+    }
+
     private MethodSymbol lookupMethod(TypeSymbol tsym, Name name, List<Type> argtypes) {
         for (Symbol s : tsym.members().getSymbolsByName(name, s -> s.kind == MTH)) {
             if (types.isSameTypes(s.type.getParameterTypes(), argtypes)) {
@@ -2670,6 +2867,19 @@ public class ClassReader {
         readClass(c);
     }
 
+    // AndroidIDE changed: Read the class file straight into buf if the file object supports it.
+    private boolean readClassFileBytes(JavaFileObject classfile) throws IOException {
+        if (classfile instanceof PathFileObject) {
+            int length = ((PathFileObject) classfile).readAllBytes(
+                    size -> buf.elems = ArrayUtils.ensureCapacity(buf.elems, size));
+            if (length >= 0) {
+                buf.length = length;
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void readClassFile(ClassSymbol c) {
         currentOwner = c;
         currentClassFile = c.classfile;
@@ -2680,7 +2890,13 @@ public class ClassReader {
         try {
             bp = 0;
             buf.reset();
-            buf.appendStream(c.classfile.openInputStream());
+            // AndroidIDE changed: Use the contents read ahead by the prefetcher, if any.
+            byte[] staged = prefetcher.take(c.classfile);
+            if (staged != null) {
+                buf.appendBytes(staged);
+            } else if (!readClassFileBytes(c.classfile)) {
+                buf.appendStream(c.classfile.openInputStream());
+            }
             readClassBuffer(c);
             if (!missingTypeVariables.isEmpty() && !foundTypeVariables.isEmpty()) {
                 List<Type> missing = missingTypeVariables;
@@ -242,6 +242,18 @@ public class JavaCompiler {
      */
     protected ClassReader reader;
 
+    /** The class file prefetcher.
+     */
+    protected ClassFilePrefetcher prefetcher;
+
+    /** The cache of the analysis of unchanged method bodies.
+     */
+    protected MethodAttributionCache methodCache;
+
+    /** The parser of compilation units on several threads.
+     */
+    protected ParallelParser parallelParser;
+
     /** The class writer.
      */
     protected ClassWriter writer;
@@ -389,6 +401,9 @@ public class JavaCompiler {
         diagFactory = JCDiagnostic.Factory.instance(context);
         finder = ClassFinder.instance(context);
         reader = ClassReader.instance(context);
+        prefetcher = ClassFilePrefetcher.instance(context);
+        methodCache = MethodAttributionCache.instance(context);
+        parallelParser = ParallelParser.instance(context);
         make = TreeMaker.instance(context);
         writer = ClassWriter.instance(context);
         jniWriter = JNIWriter.instance(context);
@@ -679,6 +694,34 @@ public class JavaCompiler {
         }
     }
 
+    /** Parse a compilation unit again after an edit of its source. If the
+     *  edit is confined to the body of a method, only that body is parsed and
+     *  the unit is updated in place, see {@link IncrementalParser}. Otherwise
+     *  the whole content is parsed into a new compilation unit.
+     *  @param unit           The compilation unit parsed before the edit.
+     *  @param content        The source after the edit.
+     *  @param offset         The offset of the edit.
+     *  @param removedLength  The number of characters removed at offset.
+     *  @param insertedLength The number of characters inserted at offset.
+     */
+    public JCCompilationUnit reparse(JCCompilationUnit unit, CharSequence content,
+                                     int offset, int removedLength, int insertedLength) {
+        // AndroidIDE changed: Added for incremental parsing in editors.
+        JavaFileObject filename = unit.sourcefile;
+        log.clearSource(filename);
+        JavaFileObject prev = log.useSource(filename);
+        try {
+            JCCompilationUnit t = unit;
+            if (!IncrementalParser.instance(context).reparse(unit, content, offset, removedLength, insertedLength))
+                t = parse(filename, content);
+            if (t.endPositions != null)
+                log.setEndPosTable(filename, t.endPositions);
+            return t;
+        } finally {
+            log.useSource(prev);
+        }
+    }
+
     /** Resolve an identifier which may be the binary name of a class or
      * the Java name of a class or package.
      * @param name      The name to resolve
@@ -1073,6 +1116,10 @@ public class JavaCompiler {
        if (!force && shouldStop(CompileState.PARSE))
            return List.nil();
 
+        // AndroidIDE changed: Parse on several threads with -XDparallelParse.
+        if (parallelParser.isEnabled() && taskListener.isEmpty() && !verbose)
+            return parseFilesInParallel(fileObjects);
+
         //parse all files
         ListBuffer<JCCompilationUnit> trees = new ListBuffer<>();
         Set<JavaFileObject> filesSoFar = new HashSet<>();
@@ -1085,6 +1132,25 @@ public class JavaCompiler {
         return trees.toList();
     }
 
+    private List<JCCompilationUnit> parseFilesInParallel(Iterable<JavaFileObject> fileObjects) {
+        ListBuffer<JavaFileObject> files = new ListBuffer<>();
+        Set<JavaFileObject> filesSoFar = new HashSet<>();
+        for (JavaFileObject fileObject : fileObjects) {
+            if (filesSoFar.add(fileObject)) {
+                files.append(fileObject);
+            }
+        }
+        if (files.size() < 2)
+            return files.isEmpty() ? List.nil() : List.of(parse(files.first()));
+        List<JCCompilationUnit> trees = parallelParser.parse(files.toList(), this::readSource,
+                keepComments(), genEndPos, lineDebugInfo);
+        for (JCCompilationUnit t : trees) {
+            if (t.endPositions != null)
+                log.setEndPosTable(t.sourcefile, t.endPositions);
+        }
+        return trees;
+    }
+
    /**
     * Returns true iff the compilation will continue after annotation processing
     * is done.
@@ -1119,6 +1185,12 @@ public class JavaCompiler {
 
         enterDone();
 
+        // AndroidIDE changed: Read the class files needed next in parallel, if enabled.
+        prefetcher.prefetch(roots);
+
+        // AndroidIDE changed: Key the reused method bodies by the entered declarations.
+        methodCache.entered(roots);
+
         if (!taskListener.isEmpty()) {
             for (JCCompilationUnit unit: roots) {
                 TaskEvent e = new TaskEvent(TaskEvent.Kind.ENTER, unit);
@@ -1880,6 +1952,12 @@ public class JavaCompiler {
         rootClasses = null;
         finder = null;
         reader = null;
+        if (prefetcher != null)
+            prefetcher.close();
+        prefetcher = null;
+        if (parallelParser != null)
+            parallelParser.close();
+        parallelParser = null;
         make = null;
         writer = null;
         enter = null;
@@ -1969,9 +2047,13 @@ public class JavaCompiler {
     public void newRound() {
         inputFiles.clear();
         todo.clear();
+        // AndroidIDE changed: Drop the class files read ahead and not used.
+        prefetcher.clear();
     }
 
     public void newRound(final Set<? extends JCCompilationUnit> treesToClean) {
+        // AndroidIDE changed: Drop the class files read ahead and not used.
+        prefetcher.clear();
         for (JCCompilationUnit treeToClean : treesToClean) {
             if (treeToClean.sourcefile != null) {
                 inputFiles.remove(treeToClean.sourcefile);
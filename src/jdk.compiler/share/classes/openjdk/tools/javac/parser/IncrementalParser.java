@@ -0,0 +1,294 @@
+package openjdk.tools.javac.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.parser.JavacParser.SimpleEndPosTable;
+import openjdk.tools.javac.parser.LazyBodyParser.LazyBlock;
+import openjdk.tools.javac.parser.LazyDocCommentTable.Entry;
+import openjdk.tools.javac.parser.Tokens.Comment;
+import openjdk.tools.javac.parser.Tokens.Token;
+import openjdk.tools.javac.tree.EndPosTable;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCBlock;
+import openjdk.tools.javac.tree.JCTree.JCClassDecl;
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.tree.JCTree.JCErroneous;
+import openjdk.tools.javac.tree.JCTree.JCMethodDecl;
+import openjdk.tools.javac.tree.JCTree.JCSwitch;
+import openjdk.tools.javac.tree.JCTree.JCSwitchExpression;
+import openjdk.tools.javac.tree.JCTree.JCVariableDecl;
+import openjdk.tools.javac.tree.TreeScanner;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.Position;
+
+import static openjdk.tools.javac.parser.Tokens.TokenKind.RBRACE;
+
+/**
+ * Parses the body of a single method again after an edit of the source of
+ * a compilation unit, and updates the compilation unit in place.
+ *
+ * <p>The method body that encloses the edit is parsed from the new source,
+ * starting at its opening brace. All other trees are kept; the positions,
+ * end positions and doc comments after the edit are shifted by the
+ * difference in length. If the edit is not confined to one method body,
+ * or the new body does not end where the old one ended (for example because
+ * a brace or an unterminated comment was typed), the unit is left unchanged
+ * and the whole source has to be parsed again.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class IncrementalParser {
+
+    protected static final Context.Key<IncrementalParser> incrementalParserKey = new Context.Key<>();
+
+    public static IncrementalParser instance(Context context) {
+        IncrementalParser instance = context.get(incrementalParserKey);
+        if (instance == null)
+            instance = new IncrementalParser(context);
+        return instance;
+    }
+
+    private final ParserFactory parserFactory;
+    private final Log log;
+
+    protected IncrementalParser(Context context) {
+        context.put(incrementalParserKey, this);
+        parserFactory = ParserFactory.instance(context);
+        log = Log.instance(context);
+    }
+
+    /**
+     * Update the given compilation unit for an edit of its source, if the
+     * edit is confined to the body of a method.
+     *
+     * @param unit the compilation unit parsed from the source before the edit
+     * @param content the source after the edit
+     * @param offset the offset of the edit
+     * @param removedLength the number of characters removed at offset
+     * @param insertedLength the number of characters inserted at offset
+     * @return true if the unit was updated, false if the whole source has
+     *         to be parsed again
+     */
+    public boolean reparse(JCCompilationUnit unit, CharSequence content,
+                           int offset, int removedLength, int insertedLength) {
+        if (offset < 0 || removedLength < 0 || insertedLength < 0
+                || offset + insertedLength > content.length()) {
+            return false;
+        }
+        EndPosTable endPositions = unit.endPositions;
+        if (endPositions != null && !(endPositions instanceof SimpleEndPosTable)
+                && !(endPositions instanceof JavacParser.EmptyEndPosTable)) {
+            return false;
+        }
+        if (unit.docComments != null && !(unit.docComments instanceof LazyDocCommentTable)) {
+            return false;
+        }
+        int from = offset + removedLength;
+        JCMethodDecl method = findMethod(unit.defs, offset, from);
+        if (method == null) {
+            return false;
+        }
+        JCBlock oldBody = method.body;
+        int delta = insertedLength - removedLength;
+        int expectedEnd = oldBody.endpos + delta;
+        char[] buf = content.toString().toCharArray();
+        if (buf[oldBody.pos] != '{' || expectedEnd >= buf.length || buf[expectedEnd] != '}') {
+            return false;
+        }
+
+        // diagnostics are reported only if the new body is used
+        boolean keepDocComments = unit.docComments != null;
+        boolean keepEndPositions = endPositions instanceof SimpleEndPosTable;
+        JavaFileObject prevSource = log.useSource(unit.sourcefile);
+        Log.DeferredDiagnosticHandler diags = new Log.DeferredDiagnosticHandler(log);
+        JavacParser parser;
+        JCBlock body;
+        try {
+            Lexer lexer = parserFactory.scannerFactory.newScanner(buf, oldBody.pos, buf.length, keepDocComments);
+            parser = new JavacParser(parserFactory, lexer, keepDocComments, false, keepEndPositions);
+            parser.skipBodies = false;
+            body = parser.block();
+        } finally {
+            log.popDiagnosticHandler(diags);
+            log.useSource(prevSource);
+        }
+        Token last = parser.S.prevToken();
+        if (body.endpos != expectedEnd || last.kind != RBRACE || last.pos != expectedEnd) {
+            return false;
+        }
+
+        // errors at the positions of errors reported before the edit are
+        // reported again; the diagnostics for the tokens read after the body
+        // were reported before
+        int nerrors = log.nerrors;
+        int nwarnings = log.nwarnings;
+        log.startPartialReparse();
+        try {
+            diags.reportDeferredDiagnostics(d -> d.getPosition() <= expectedEnd);
+        } finally {
+            log.endPartialReparse();
+            log.nerrors += nerrors;
+            log.nwarnings += nwarnings;
+        }
+
+        List<JCTree> removed = new ArrayList<>();
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree != null) {
+                    removed.add(tree);
+                    tree.accept(this);
+                }
+            }
+        }.scan(oldBody);
+        if (keepEndPositions) {
+            SimpleEndPosTable table = (SimpleEndPosTable) endPositions;
+            for (JCTree t : removed) {
+                table.removeEndPos(t);
+            }
+            table.shift(from, delta);
+            table.putAll((SimpleEndPosTable) parser.endPosTable);
+        }
+        if (keepDocComments) {
+            Map<JCTree, Entry> table = ((LazyDocCommentTable) unit.docComments).table;
+            for (JCTree t : removed) {
+                table.remove(t);
+            }
+            // a comment is on the same side of the edited body as its tree
+            for (Map.Entry<JCTree, Entry> e : table.entrySet()) {
+                if (e.getKey().pos >= from) {
+                    e.setValue(new Entry(ShiftedComment.shift(e.getValue().comment, delta)));
+                }
+            }
+            table.putAll(((LazyDocCommentTable) parser.getDocComments()).table);
+        }
+        new PositionShifter(from, delta, oldBody, buf).scan(unit);
+        method.body = body;
+        if (unit.lineMap != null) {
+            unit.lineMap = Position.makeLineMap(buf, buf.length, false);
+        }
+        return true;
+    }
+
+    // Finds the method whose body strictly encloses the edit from start to
+    // end, looking into member classes but not into method bodies.
+    private static JCMethodDecl findMethod(openjdk.tools.javac.util.List<JCTree> defs, int start, int end) {
+        for (JCTree def : defs) {
+            if (def instanceof JCClassDecl) {
+                JCMethodDecl m = findMethod(((JCClassDecl) def).defs, start, end);
+                if (m != null) {
+                    return m;
+                }
+            } else if (def instanceof JCMethodDecl) {
+                JCBlock body = ((JCMethodDecl) def).body;
+                if (body != null && body.pos < start && end <= body.endpos) {
+                    return (JCMethodDecl) def;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Shifts the positions at or after a given position, and makes the bodies
+    // skipped by the parser refer to the new source. Trees may be shared by
+    // several parents, e.g. the type of "int a, b;", so every tree is shifted
+    // at most once.
+    private static class PositionShifter extends TreeScanner {
+        private final int from;
+        private final int delta;
+        private final JCTree skip;
+        private final char[] buf;
+        private final Set<JCTree> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        PositionShifter(int from, int delta, JCTree skip, char[] buf) {
+            this.from = from;
+            this.delta = delta;
+            this.skip = skip;
+            this.buf = buf;
+        }
+
+        @Override
+        public void scan(JCTree tree) {
+            if (tree == null || tree == skip || !seen.add(tree)) {
+                return;
+            }
+            tree.pos = shift(tree.pos);
+            tree.storedEndPos = shift(tree.storedEndPos);
+            if (tree instanceof LazyBlock) {
+                LazyBlock lazy = (LazyBlock) tree;
+                lazy.bracePos = shift(lazy.bracePos);
+                lazy.input.buf = buf;
+            }
+            if (tree instanceof JCBlock) {
+                ((JCBlock) tree).endpos = shift(((JCBlock) tree).endpos);
+            } else if (tree instanceof JCSwitch) {
+                ((JCSwitch) tree).endpos = shift(((JCSwitch) tree).endpos);
+            } else if (tree instanceof JCSwitchExpression) {
+                ((JCSwitchExpression) tree).endpos = shift(((JCSwitchExpression) tree).endpos);
+            } else if (tree instanceof JCVariableDecl) {
+                ((JCVariableDecl) tree).startPos = shift(((JCVariableDecl) tree).startPos);
+            }
+            tree.accept(this);
+        }
+
+        @Override
+        public void visitErroneous(JCErroneous tree) {
+            scan(tree.errs);
+        }
+
+        private int shift(int pos) {
+            return pos >= from ? pos + delta : pos;
+        }
+    }
+
+    // A comment whose source positions are shifted by a delta.
+    private static class ShiftedComment implements Comment {
+        private final Comment comment;
+        private final int delta;
+
+        static Comment shift(Comment c, int delta) {
+            if (c instanceof ShiftedComment) {
+                ShiftedComment s = (ShiftedComment) c;
+                return new ShiftedComment(s.comment, s.delta + delta);
+            }
+            return new ShiftedComment(c, delta);
+        }
+
+        private ShiftedComment(Comment comment, int delta) {
+            this.comment = comment;
+            this.delta = delta;
+        }
+
+        @Override
+        public String getText() {
+            return comment.getText();
+        }
+
+        @Override
+        public int getSourcePos(int index) {
+            int pos = comment.getSourcePos(index);
+            return pos < 0 ? pos : pos + delta;
+        }
+
+        @Override
+        public CommentStyle getStyle() {
+            return comment.getStyle();
+        }
+
+        @Override
+        public boolean isDeprecated() {
+            return comment.isDeprecated();
+        }
+    }
+}
@@ -38,6 +38,7 @@ import openjdk.tools.javac.util.*;
 import openjdk.tools.javac.util.JCDiagnostic.*;
 
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -164,7 +165,21 @@ public class JavaTokenizer extends UnicodeReader {
      * @param length  The length of the meaningful content in the array.
      */
     protected JavaTokenizer(ScannerFactory fac, char[] array, int length) {
-        super(fac, array, length);
+        this(fac, array, 0, length);
+    }
+
+    /**
+     * Construct a Java token scanner from the input character array,
+     * starting at the given position.
+     *
+     * @param fac     the factory which created this Scanner
+     * @param array   the input character array.
+     * @param start   the position of the first character to scan.
+     * @param length  The length of the meaningful content in the array.
+     */
+    protected JavaTokenizer(ScannerFactory fac, char[] array, int start, int length) {
+        // AndroidIDE changed: Added for IncrementalParser.
+        super(fac, array, start, length);
         this.fac = fac;
         this.log = fac.log;
         this.names = fac.names;
@@ -822,7 +837,19 @@ public class JavaTokenizer extends UnicodeReader {
      * Read an identifier. (Spec. 3.8)
      */
     private void scanIdent() {
-        putThenNext();
+        // AndroidIDE changed: Take the name of a plain ASCII identifier straight from the buffer.
+        int start = position();
+        int end = skipPlainIdentifierChars();
+        if (end != -1) {
+            if (isIdentifierEnd()) {
+                name = plainName(names, start, end);
+                tk = tokens.lookupKind(name);
+                return;
+            }
+            sb.append(getRawCharacters(start, end));
+        } else {
+            putThenNext();
+        }
 
         do {
             switch (get()) {
@@ -889,6 +916,18 @@ public class JavaTokenizer extends UnicodeReader {
         } while (true);
     }
 
+    /**
+     * Return true if the current character is ASCII and ends an identifier.
+     */
+    private boolean isIdentifierEnd() {
+        char ch = get();
+        if (!isASCII() || Character.isJavaIdentifierPart(ch)) {
+            // letters, digits, '$', '_' and identifier ignorable characters
+            return ch == EOI && !isAvailable();
+        }
+        return true;
+    }
+
     /**
      * Return true if ch can be part of an operator.
      *
@@ -1307,6 +1346,11 @@ public class JavaTokenizer extends UnicodeReader {
                                 + "|");
         }
 
+        // AndroidIDE changed: Only record the position of the comment in lazy mode.
+        if (fac.lazyComments) {
+            return new LazyComment(style, fac, getBuffer(), pos, endPos, false);
+        }
+
         char[] buf = getRawCharacters(pos, endPos);
 
         return new BasicComment(style, fac, buf, pos);
@@ -1505,6 +1549,109 @@ public class JavaTokenizer extends UnicodeReader {
             }
         }
     }
+    /**
+     * A comment that only records its position in the source buffer. The
+     * characters of the comment are read from the buffer when its text or its
+     * source positions are asked for, or when it may contain a
+     * {@code @deprecated} tag. Only the results are kept.
+     */
+    protected static class LazyComment implements Comment {
+        private static final char[] DEPRECATED = "@deprecated".toCharArray();
+
+        private final CommentStyle cs;
+        private final ScannerFactory fac;
+        private final char[] buf;
+        private final int pos;
+        private final int endPos;
+        private final boolean javadoc;
+        private boolean scanned;
+        private boolean deprecatedFlag;
+        private String text;
+        private JavadocTokenizer.OffsetMap offsetMap;
+
+        /**
+         * Constructor.
+         *
+         * @param cs       comment style
+         * @param fac      scan factory.
+         * @param buf      the source buffer, which must not change afterwards.
+         * @param pos      position of the opening / in the source buffer.
+         * @param endPos   position + 1 of the closing / in the source buffer.
+         * @param javadoc  whether the text of Javadoc comments is extracted.
+         */
+        protected LazyComment(CommentStyle cs, ScannerFactory fac, char[] buf, int pos, int endPos, boolean javadoc) {
+            this.cs = cs;
+            this.fac = fac;
+            this.buf = buf;
+            this.pos = pos;
+            this.endPos = endPos;
+            this.javadoc = javadoc;
+        }
+
+        private void scan() {
+            char[] chars = Arrays.copyOfRange(buf, pos, endPos);
+            if (javadoc) {
+                JavadocTokenizer.JavadocComment c = new JavadocTokenizer.JavadocComment(cs, fac, chars, pos);
+                text = c.getText();
+                deprecatedFlag = c.isDeprecated();
+                offsetMap = c.offsetMap;
+                offsetMap.trim();
+            } else {
+                deprecatedFlag = new BasicComment(cs, fac, chars, pos).isDeprecated();
+            }
+            scanned = true;
+        }
+
+        public String getText() {
+            if (!scanned && javadoc && cs == CommentStyle.JAVADOC) {
+                scan();
+            }
+            return text;
+        }
+
+        public int getSourcePos(int pos) {
+            if (pos == Position.NOPOS || getText() == null) {
+                return Position.NOPOS;
+            }
+            if (pos < 0 || pos > text.length()) {
+                throw new StringIndexOutOfBoundsException(String.valueOf(pos));
+            }
+            return offsetMap.getSourcePos(pos);
+        }
+
+        public CommentStyle getStyle() {
+            return cs;
+        }
+
+        public boolean isDeprecated() {
+            if (!scanned && cs == CommentStyle.JAVADOC && mayBeDeprecated()) {
+                scan();
+            }
+            return deprecatedFlag;
+        }
+
+        // Without unicode escapes, a deprecated comment has the tag as is.
+        private boolean mayBeDeprecated() {
+            int last = endPos - DEPRECATED.length;
+            for (int i = pos; i < endPos; i++) {
+                char c = buf[i];
+                if (c == '\\') {
+                    return true;
+                }
+                if (c == '@' && i <= last) {
+                    int j = 1;
+                    while (j < DEPRECATED.length && buf[i + j] == DEPRECATED[j]) {
+                        j++;
+                    }
+                    if (j == DEPRECATED.length) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
     public static class StringShim {
         /**
          * Returns a string whose value is this string, with incidental
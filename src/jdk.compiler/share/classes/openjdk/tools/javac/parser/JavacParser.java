@@ -87,7 +87,6 @@ import openjdk.tools.javac.tree.TreeInfo;
 import openjdk.tools.javac.tree.TreeMaker;
 import openjdk.tools.javac.util.Assert;
 import openjdk.tools.javac.util.Convert;
-import openjdk.tools.javac.util.IntHashTable;
 import openjdk.tools.javac.util.JCDiagnostic;
 import openjdk.tools.javac.util.JCDiagnostic.DiagnosticFlag;
 import openjdk.tools.javac.util.JCDiagnostic.Error;
@@ -361,7 +360,8 @@ public class JavacParser implements Parser {
         this.docComments = newDocCommentTable(keepDocComments, fac, endPosTable);
         this.allowRecords = Feature.RECORDS.allowedInSource(source);
         this.allowSealedTypes = Feature.SEALED_CLASSES.allowedInSource(source);
-
+        // AndroidIDE changed: Skip bodies for LazyBodyParser.
+        this.skipBodies = fac.options.isSet("skipMethodBodies") && S instanceof Scanner;
     }
 
     protected AbstractEndPosTable newEndPosTable(boolean keepEndPositions) {
@@ -389,6 +389,15 @@ public class JavacParser implements Parser {
      */
     protected boolean keepLineMap;
 
+    /**
+     * Switch: should we skip the bodies of methods, initializers and lambdas
+     * in class bodies? See {@link LazyBodyParser}.
+     */
+    boolean skipBodies;
+
+    /** The source and tables for the skipped bodies, set with the first one. */
+    private LazyBodyParser.Input lazyInput;
+
     /**
      * Switch: is "this" allowed as an identifier? This is needed to parse
      * receiver types.
@@ -2307,7 +2316,8 @@ public class JavacParser implements Parser {
     }
 
     JCExpression lambdaStatement(List<JCVariableDecl> args, int pos, int pos2) {
-        JCBlock block = block(pos2, 0);
+        // AndroidIDE changed: The body may be skipped.
+        JCBlock block = bodyBlock(pos2, 0);
         return toP(F.at(pos).Lambda(args, block));
     }
 
@@ -2935,6 +2945,36 @@ public class JavacParser implements Parser {
         return block(token.pos, 0);
     }
 
+    /**
+     * The body of a method, initializer or lambda. If bodies are skipped, it
+     * is skipped by matching braces, and a placeholder is returned that is
+     * parsed by {@link LazyBodyParser}.
+     */
+    JCBlock bodyBlock(int pos, long flags) {
+        // AndroidIDE changed: Added for LazyBodyParser.
+        if (!skipBodies) {
+            return block(pos, flags);
+        }
+        if (lazyInput == null) {
+            lazyInput = new LazyBodyParser.Input(((Scanner) S).getRawCharacters(),
+                    log.currentSourceFile(), endPosTable, docComments);
+        }
+        LazyBodyParser.LazyBlock t = new LazyBodyParser.LazyBlock(flags, token.pos, lazyInput);
+        t.pos = pos;
+        int depth = 0;
+        while (token.kind != EOF) {
+            if (token.kind == LBRACE) {
+                depth++;
+            } else if (token.kind == RBRACE && --depth == 0) {
+                break;
+            }
+            nextToken();
+        }
+        t.endpos = token.pos;
+        accept(RBRACE);
+        return toP(t);
+    }
+
     /**
      * BlockStatements = { BlockStatement } BlockStatement =
      * LocalVariableDeclarationStatement | ClassOrInterfaceOrEnumDeclaration |
@@ -4918,7 +4958,8 @@ public class JavacParser implements Parser {
         } else if (token.kind == LBRACE
                 && (mods.flags & Flags.StandardFlags & ~Flags.STATIC) == 0
                 && mods.annotations.isEmpty()) {
-            return List.<JCTree>of(block(pos, mods.flags));
+            // AndroidIDE changed: The body may be skipped.
+            return List.<JCTree>of(bodyBlock(pos, mods.flags));
         } else {
             pos = token.pos;
             List<JCTypeParameter> typarams = typeParametersOpt();
@@ -5053,7 +5094,8 @@ public class JavacParser implements Parser {
                 } else if (isRecord && (mods.flags & Flags.STATIC) == 0) {
                     log.error(DiagnosticFlag.SYNTAX, token.pos, Errors.InstanceInitializerNotAllowedInRecords);
                 }
-                return List.of(block(pos, mods.flags));
+                // AndroidIDE changed: The body may be skipped.
+                return List.of(bodyBlock(pos, mods.flags));
             } else {
                 pos = token.pos;
                 List<JCTypeParameter> typarams = typeParametersOpt();
@@ -5195,7 +5237,8 @@ public class JavacParser implements Parser {
                 } else if (isRecord && (mods.flags & Flags.STATIC) == 0) {
                     log.error(DiagnosticFlag.SYNTAX, token.pos, Errors.InstanceInitializerNotAllowedInRecords);
                 }
-                return List.of(block(pos, mods.flags));
+                // AndroidIDE changed: The body may be skipped.
+                return List.of(bodyBlock(pos, mods.flags));
             } else {
                 pos = token.pos;
                 List<JCTypeParameter> typarams = typeParametersOpt();
@@ -5449,7 +5492,8 @@ public class JavacParser implements Parser {
             JCBlock body = null;
             JCExpression defaultValue;
             if (token.kind == LBRACE) {
-                body = block();
+                // AndroidIDE changed: The body may be skipped.
+                body = bodyBlock(token.pos, 0);
                 defaultValue = null;
             } else {
                 if (token.kind == DEFAULT) {
@@ -5922,11 +5966,10 @@ public class JavacParser implements Parser {
      */
     protected static class SimpleEndPosTable extends AbstractEndPosTable {
 
-        private final IntHashTable endPosMap;
-
+        // AndroidIDE changed: The end positions are stored in the trees
+        // themselves rather than in a hash table keyed by tree.
         protected SimpleEndPosTable(JavacParser parser) {
             super(parser);
-            endPosMap = new IntHashTable();
         }
 
         public void storeEnd(JCTree tree, int endpos) {
@@ -5944,11 +5987,12 @@ public class JavacParser implements Parser {
                     return;
                 }
             }
-            endPosMap.put(tree, Math.max(errorEndPos, endpos));
+            tree.storedEndPos = Math.max(errorEndPos, endpos);
         }
 
-        private void removeEndPos(JCTree tree) {
-            endPosMap.remove(tree);
+        // AndroidIDE changed: Package-private for IncrementalParser.
+        void removeEndPos(JCTree tree) {
+            tree.storedEndPos = Position.NOPOS;
         }
 
         protected <T extends JCTree> T to(T t) {
@@ -5962,19 +6006,30 @@ public class JavacParser implements Parser {
         }
 
         public int getEndPos(JCTree tree) {
-            int value = endPosMap.get(tree);
-            // As long as Position.NOPOS==-1, this just returns value.
-            return (value == -1) ? Position.NOPOS : value;
+            return tree.storedEndPos;
         }
 
         public int replaceTree(JCTree oldTree, JCTree newTree) {
-            int pos = endPosMap.remove(oldTree);
-            if (pos != -1) {
+            int pos = oldTree.storedEndPos;
+            if (pos != Position.NOPOS) {
+                oldTree.storedEndPos = Position.NOPOS;
                 storeEnd(newTree, pos);
                 return pos;
             }
             return Position.NOPOS;
         }
+
+        // AndroidIDE changed: Support for IncrementalParser. The end
+        // positions stored in the trees are shifted with the trees.
+        void shift(int from, int delta) {
+            if (errorEndPos >= from) {
+                errorEndPos += delta;
+            }
+        }
+
+        void putAll(SimpleEndPosTable other) {
+            setErrorEndPos(other.errorEndPos);
+        }
     }
 
     /*
@@ -77,8 +77,27 @@ public class JavadocTokenizer extends JavaTokenizer {
         this.fac = fac;
     }
 
+    /**
+     * Create a tokenizer from the input array, starting at the given
+     * position.
+     *
+     * @param fac     factory which created this Scanner
+     * @param array   input character array.
+     * @param start   position of the first character to scan.
+     * @param length  length of the meaningful content in the array.
+     */
+    protected JavadocTokenizer(ScannerFactory fac, char[] array, int start, int length) {
+        // AndroidIDE changed: Added for IncrementalParser.
+        super(fac, array, start, length);
+        this.fac = fac;
+    }
+
     @Override
     protected Comment processComment(int pos, int endPos, CommentStyle style) {
+        // AndroidIDE changed: Only record the position of the comment in lazy mode.
+        if (fac.lazyComments) {
+            return new LazyComment(style, fac, getBuffer(), pos, endPos, true);
+        }
         char[] buf = getRawCharacters(pos, endPos);
         return new JavadocComment(style, fac, buf, pos);
     }
@@ -411,6 +430,15 @@ public class JavadocTokenizer extends JavaTokenizer {
             }
         }
 
+        /**
+         * Releases the unused space of the map. No entries can be added
+         * afterwards.
+         */
+        void trim() {
+            // AndroidIDE changed: Added for JavaTokenizer.LazyComment.
+            map = Arrays.copyOf(map, size);
+        }
+
         /**
          * Binary search to find the entry for which the string index is less
          * than pos. Since the map is a list of pairs of integers we must make
@@ -0,0 +1,147 @@
+package openjdk.tools.javac.parser;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.parser.JavacParser.SimpleEndPosTable;
+import openjdk.tools.javac.tree.DocCommentTable;
+import openjdk.tools.javac.tree.EndPosTable;
+import openjdk.tools.javac.tree.JCTree;
+import openjdk.tools.javac.tree.JCTree.JCBlock;
+import openjdk.tools.javac.tree.JCTree.JCClassDecl;
+import openjdk.tools.javac.tree.TreeTranslator;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.List;
+import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.Options;
+
+/**
+ * Parses the bodies that were skipped by the parser.
+ *
+ * <p>With {@code -XDskipMethodBodies}, the parser does not parse the bodies
+ * of methods, initializers and lambdas in class bodies. It skips them by
+ * matching braces, and keeps a {@link LazyBlock} without statements in their
+ * place, so that the trees of a compilation unit only hold its declarations.
+ * The placeholders of a class are replaced by the parsed bodies before the
+ * class is attributed, or when {@link #expand} is called. Syntax errors in
+ * a skipped body are reported when it is parsed.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class LazyBodyParser {
+
+    protected static final Context.Key<LazyBodyParser> lazyBodyParserKey = new Context.Key<>();
+
+    public static LazyBodyParser instance(Context context) {
+        LazyBodyParser instance = context.get(lazyBodyParserKey);
+        if (instance == null)
+            instance = new LazyBodyParser(context);
+        return instance;
+    }
+
+    private final ParserFactory parserFactory;
+    private final Log log;
+    private final boolean enabled;
+
+    protected LazyBodyParser(Context context) {
+        context.put(lazyBodyParserKey, this);
+        parserFactory = ParserFactory.instance(context);
+        log = Log.instance(context);
+        enabled = Options.instance(context).isSet("skipMethodBodies");
+    }
+
+    /**
+     * Replace the skipped bodies in the given tree by their parsed trees.
+     *
+     * @param tree the tree
+     * @param nestedClasses whether the bodies in the classes declared in a
+     *        class tree are parsed too; they are parsed when those classes
+     *        are attributed otherwise
+     */
+    public void expand(JCTree tree, boolean nestedClasses) {
+        if (!enabled) {
+            return;
+        }
+        new TreeTranslator() {
+            @Override
+            public void visitClassDef(JCClassDecl c) {
+                if (c == tree || nestedClasses) {
+                    super.visitClassDef(c);
+                } else {
+                    result = c;
+                }
+            }
+
+            @Override
+            public void visitBlock(JCBlock b) {
+                if (b instanceof LazyBlock) {
+                    result = parse((LazyBlock) b);
+                } else {
+                    super.visitBlock(b);
+                }
+            }
+        }.translate(tree);
+    }
+
+    /**
+     * Parse a skipped body. The end positions and doc comments of the parsed
+     * trees are added to the tables of the compilation unit.
+     */
+    public JCBlock parse(LazyBlock block) {
+        Input input = block.input;
+        JavaFileObject prevSource = log.useSource(input.file);
+        try {
+            boolean keepDocComments = input.docComments != null;
+            boolean keepEndPositions = input.endPositions instanceof SimpleEndPosTable;
+            Lexer lexer = parserFactory.scannerFactory.newScanner(input.buf, block.bracePos, input.buf.length, keepDocComments);
+            JavacParser parser = new JavacParser(parserFactory, lexer, keepDocComments, false, keepEndPositions);
+            parser.skipBodies = false;
+            JCBlock body = parser.block(block.pos, block.flags);
+            if (keepEndPositions) {
+                SimpleEndPosTable table = (SimpleEndPosTable) input.endPositions;
+                table.removeEndPos(block);
+                table.putAll((SimpleEndPosTable) parser.endPosTable);
+            }
+            if (keepDocComments) {
+                ((LazyDocCommentTable) input.docComments).table.putAll(
+                        ((LazyDocCommentTable) parser.getDocComments()).table);
+            }
+            return body;
+        } finally {
+            log.useSource(prevSource);
+        }
+    }
+
+    /**
+     * A body that was skipped by the parser, from its opening brace at
+     * {@code bracePos} to its closing brace at {@code endpos}.
+     */
+    public static class LazyBlock extends JCBlock {
+        public int bracePos;
+        final Input input;
+
+        LazyBlock(long flags, int bracePos, Input input) {
+            super(flags, List.nil());
+            this.bracePos = bracePos;
+            this.input = input;
+        }
+    }
+
+    // The source and the tables of the compilation unit the skipped bodies
+    // belong to.
+    static class Input {
+        char[] buf;
+        final JavaFileObject file;
+        final EndPosTable endPositions;
+        final DocCommentTable docComments;
+
+        Input(char[] buf, JavaFileObject file, EndPosTable endPositions, DocCommentTable docComments) {
+            this.buf = buf;
+            this.file = file;
+            this.endPositions = endPositions;
+            this.docComments = docComments;
+        }
+    }
+}
@@ -26,6 +26,7 @@
 package openjdk.tools.javac.parser;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import openjdk.tools.javac.parser.Tokens.Comment;
@@ -53,6 +54,32 @@ public class LazyDocCommentTable implements DocCommentTable {
     }
 
 
+    /**
+     * The most recently used doc comment trees of a context, used instead of
+     * keeping the tree of every parsed comment with its entry. Evicted trees
+     * are parsed again from their comment when they are asked for.
+     */
+    static class TreeCache {
+        private final Map<Entry, DCDocComment> trees;
+
+        TreeCache(int maxSize) {
+            trees = new LinkedHashMap<Entry, DCDocComment>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Entry, DCDocComment> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        DCDocComment get(Entry e) {
+            return trees.get(e);
+        }
+
+        void put(Entry e, DCDocComment tree) {
+            trees.put(e, tree);
+        }
+    }
+
     private final ParserFactory fac;
     private final boolean breakOnError;
     private final EndPosTable ept;
@@ -90,9 +117,23 @@ public class LazyDocCommentTable implements DocCommentTable {
         Entry e = table.get(tree);
         if (e == null)
             return null;
-        if (e.tree == null)
-            e.tree = new DocCommentParser(fac, breakOnError, ept, diagSource, e.comment, false).parse();
-        return e.tree;
+        // AndroidIDE changed: Keep the parsed tree in the bounded cache if there is one.
+        TreeCache cache = fac.docCommentTrees;
+        if (cache == null) {
+            if (e.tree == null)
+                e.tree = parse(e);
+            return e.tree;
+        }
+        DCDocComment doc = cache.get(e);
+        if (doc == null) {
+            doc = parse(e);
+            cache.put(e, doc);
+        }
+        return doc;
+    }
+
+    private DCDocComment parse(Entry e) {
+        return new DocCommentParser(fac, breakOnError, ept, diagSource, e.comment, false).parse();
     }
 
     @Override
@@ -0,0 +1,187 @@
+package openjdk.tools.javac.parser;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit;
+import openjdk.tools.javac.util.Abort;
+import openjdk.tools.javac.util.Context;
+import openjdk.tools.javac.util.List;
+import openjdk.tools.javac.util.ListBuffer;
+import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.Log.DeferredDiagnosticHandler;
+import openjdk.tools.javac.util.Log.DeferredLog;
+import openjdk.tools.javac.util.Options;
+
+/**
+ * Parses compilation units in parallel.
+ *
+ * <p>Enabled with {@code -XDparallelParse} or
+ * {@code -XDparallelParse=<threads>}. The sources are read on the compiler
+ * thread, and each compilation unit is parsed on a fork-join pool by its own
+ * scanner and parser. The parsers share the name table, which is a
+ * {@link openjdk.tools.javac.util.ConcurrentNameTable} with this option, and
+ * report to a {@link DeferredLog} each. The trees are
+ * returned, and the diagnostics reported, in the order of the files, as if the
+ * files had been parsed one after the other. The pool is created on first use
+ * and kept until the parser is closed; its idle workers stop by themselves.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class ParallelParser {
+
+    protected static final Context.Key<ParallelParser> parallelParserKey = new Context.Key<>();
+
+    public static ParallelParser instance(Context context) {
+        ParallelParser instance = context.get(parallelParserKey);
+        if (instance == null)
+            instance = new ParallelParser(context);
+        return instance;
+    }
+
+    private final ParserFactory parserFactory;
+    private final Log log;
+
+    /** The number of worker threads, 0 if parallel parsing is disabled. */
+    private final int threads;
+
+    /** The workers, created on first use. */
+    private ForkJoinPool pool;
+
+    protected ParallelParser(Context context) {
+        context.put(parallelParserKey, this);
+        parserFactory = ParserFactory.instance(context);
+        log = Log.instance(context);
+        Options options = Options.instance(context);
+        String opt = options.get("parallelParse");
+        int n = 0;
+        if (opt != null) {
+            try {
+                n = Integer.parseInt(opt);
+            } catch (NumberFormatException ex) {
+                n = Runtime.getRuntime().availableProcessors();
+            }
+        }
+        // preview warnings are collected in shared state by the parser
+        threads = parserFactory.preview.isEnabled() ? 0 : Math.max(n, 0);
+    }
+
+    public boolean isEnabled() {
+        return threads > 0;
+    }
+
+    /**
+     * Parse the given files.
+     *
+     * @param files the files, without duplicates
+     * @param reader reads the content of a file on the compiler thread, or
+     *        returns null if the file cannot be read
+     * @return the compilation units, in the order of the files; the unit of a
+     *         file that cannot be read is empty
+     */
+    public List<JCCompilationUnit> parse(List<JavaFileObject> files, Function<JavaFileObject, CharSequence> reader,
+                                         boolean keepDocComments, boolean keepEndPos, boolean keepLineMap) {
+        ForkJoinPool pool = pool();
+        ListBuffer<Job> jobs = new ListBuffer<>();
+        try {
+            for (JavaFileObject file : files) {
+                Job job = new Job(file, new DeferredDiagnosticHandler(log));
+                CharSequence content;
+                JavaFileObject prev = log.useSource(file);
+                try {
+                    content = reader.apply(file);
+                } finally {
+                    log.popDiagnosticHandler(job.readDiagnostics);
+                    log.useSource(prev);
+                }
+                if (content != null) {
+                    boolean moduleInfo = file.isNameCompatible("module-info", JavaFileObject.Kind.SOURCE);
+                    ParserFactory fac = new ParserFactory(parserFactory, job.parserLog);
+                    job.result = pool.submit(() -> fac.newParser(content, keepDocComments, keepEndPos,
+                            keepLineMap, moduleInfo).parseCompilationUnit());
+                }
+                jobs.append(job);
+            }
+
+            ListBuffer<JCCompilationUnit> trees = new ListBuffer<>();
+            for (Job job : jobs) {
+                JCCompilationUnit tree;
+                if (job.result == null) {
+                    tree = parserFactory.F.TopLevel(List.nil());
+                } else {
+                    try {
+                        tree = job.result.get();
+                    } catch (ExecutionException ex) {
+                        Throwable cause = ex.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        throw new Abort(cause);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new Abort(ex);
+                    }
+                }
+                job.readDiagnostics.reportDeferredDiagnostics();
+                job.parserLog.flush();
+                tree.sourcefile = job.parserLog.currentSourceFile();
+                trees.append(tree);
+            }
+            return trees.toList();
+        } finally {
+            for (Job job : jobs) {
+                if (job.result != null) {
+                    job.result.cancel(true);
+                }
+            }
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads, p -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("javac parser " + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    public void close() {
+        ForkJoinPool p;
+        synchronized (this) {
+            p = pool;
+            pool = null;
+        }
+        if (p != null) {
+            p.shutdownNow();
+        }
+    }
+
+    // The state of one file: the diagnostics reported while it was read,
+    // the log of its parser, and the parse on the pool.
+    private class Job {
+        final DeferredDiagnosticHandler readDiagnostics;
+        final DeferredLog parserLog;
+        ForkJoinTask<JCCompilationUnit> result;
+
+        Job(JavaFileObject file, DeferredDiagnosticHandler readDiagnostics) {
+            this.readDiagnostics = readDiagnostics;
+            this.parserLog = new DeferredLog(log, file);
+        }
+    }
+}
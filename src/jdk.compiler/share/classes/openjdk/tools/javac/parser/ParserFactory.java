@@ -67,6 +67,8 @@ public class ParserFactory {
     final Options options;
     final ScannerFactory scannerFactory;
     final Locale locale;
+    // AndroidIDE changed: Bounded cache of parsed doc comments, or null.
+    final LazyDocCommentTable.TreeCache docCommentTrees;
 
     protected ParserFactory(Context context) {
         super();
@@ -81,6 +83,39 @@ public class ParserFactory {
         this.options = Options.instance(context);
         this.scannerFactory = ScannerFactory.instance(context);
         this.locale = context.get(Locale.class);
+        this.docCommentTrees = newDocCommentTreeCache(options.get("docCommentTreeCacheSize"));
+    }
+
+    /**
+     * Create a parser factory like the given one for a parser on another
+     * thread. It reports to the given log, and has its own tree maker.
+     */
+    protected ParserFactory(ParserFactory fac, Log log) {
+        // AndroidIDE changed: Added for ParallelParser.
+        this.F = fac.F.forToplevel(null);
+        this.docTreeMaker = fac.docTreeMaker;
+        this.log = log;
+        this.names = fac.names;
+        this.tokens = fac.tokens;
+        this.source = fac.source;
+        this.preview = fac.preview;
+        this.options = fac.options;
+        this.scannerFactory = new ScannerFactory(fac.scannerFactory, log);
+        this.locale = fac.locale;
+        this.docCommentTrees = fac.docCommentTrees;
+    }
+
+    private static LazyDocCommentTable.TreeCache newDocCommentTreeCache(String size) {
+        // AndroidIDE changed: With -XDdocCommentTreeCacheSize=<n>, only the
+        // n most recently used doc comment trees are kept.
+        if (size != null) {
+            try {
+                return new LazyDocCommentTable.TreeCache(Math.max(1, Integer.parseInt(size)));
+            } catch (NumberFormatException e) {
+                // keep every tree
+            }
+        }
+        return null;
     }
 
     public JavacParser newParser(CharSequence input, boolean keepDocComments, boolean keepEndPos, boolean keepLineMap) {
@@ -127,6 +127,11 @@ public class Scanner implements Lexer {
         return tokenizer.getLineMap();
     }
 
+    public char[] getRawCharacters() {
+        // AndroidIDE changed: Added for LazyBodyParser.
+        return tokenizer.getRawCharacters();
+    }
+
     public int errPos() {
         return tokenizer.errPos();
     }
@@ -33,6 +33,7 @@ import openjdk.tools.javac.code.Source;
 import openjdk.tools.javac.util.Context;
 import openjdk.tools.javac.util.Log;
 import openjdk.tools.javac.util.Names;
+import openjdk.tools.javac.util.Options;
 
 
 /**
@@ -61,6 +62,8 @@ public class ScannerFactory {
     final Preview preview;
     final Tokens tokens;
     final Lint lint;
+    // AndroidIDE changed: Comments only record their positions, see JavaTokenizer.LazyComment.
+    final boolean lazyComments;
 
     /** Create a new scanner factory. */
     protected ScannerFactory(Context context) {
@@ -71,6 +74,19 @@ public class ScannerFactory {
         this.preview = Preview.instance(context);
         this.tokens = Tokens.instance(context);
         this.lint = Lint.instance(context);
+        this.lazyComments = Options.instance(context).isSet("lazyComments");
+    }
+
+    /** Create a scanner factory like the given one that reports to the given log. */
+    protected ScannerFactory(ScannerFactory fac, Log log) {
+        // AndroidIDE changed: Added for ParallelParser.
+        this.log = log;
+        this.names = fac.names;
+        this.source = fac.source;
+        this.preview = fac.preview;
+        this.tokens = fac.tokens;
+        this.lint = fac.lint;
+        this.lazyComments = fac.lazyComments;
     }
 
     public Scanner newScanner(CharSequence input, boolean keepDocComments) {
@@ -92,4 +108,21 @@ public class ScannerFactory {
         else
             return new Scanner(this, input, inputLength);
     }
+
+    public Scanner newScanner(char[] input, int start, int inputLength, boolean keepDocComments) {
+        // AndroidIDE changed: Scan from the middle of the input, for IncrementalParser.
+        if (keepDocComments)
+            return new Scanner(this, new JavadocTokenizer(this, input, start, inputLength));
+        else
+            return new Scanner(this, new JavaTokenizer(this, input, start, inputLength));
+    }
+
+    /**
+     * Lex the given input into a {@link TokenCache}, which can be updated
+     * after edits of the input.
+     */
+    public TokenCache newTokenCache(CharSequence input) {
+        // AndroidIDE changed: Added for editors.
+        return new TokenCache(this, input);
+    }
 }
@@ -0,0 +1,492 @@
+package openjdk.tools.javac.parser;
+
+import java.util.Arrays;
+
+import jdkx.tools.JavaFileObject;
+
+import openjdk.tools.javac.parser.Tokens.Comment;
+import openjdk.tools.javac.parser.Tokens.Comment.CommentStyle;
+import openjdk.tools.javac.parser.Tokens.NamedToken;
+import openjdk.tools.javac.parser.Tokens.NumericToken;
+import openjdk.tools.javac.parser.Tokens.StringToken;
+import openjdk.tools.javac.parser.Tokens.Token;
+import openjdk.tools.javac.parser.Tokens.TokenKind;
+import openjdk.tools.javac.util.JCDiagnostic;
+import openjdk.tools.javac.util.JCDiagnostic.DiagnosticFlag;
+import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.Name;
+
+/**
+ * The tokens of a source, kept in compact arrays, that can be updated after
+ * an edit of the source by lexing only the edited region again.
+ *
+ * <p>The kind, radix, start and end of every token are packed into an
+ * {@code int[]}; names and literal values are kept in a parallel array, and
+ * the ranges of comments in another {@code int[]}. While lexing, the line
+ * starts that are not inside a comment or a token are recorded as
+ * checkpoints: the lexer has no state besides its position there, so it can
+ * resume lexing at a checkpoint. After an edit, lexing resumes at the last
+ * checkpoint before the edit and stops as soon as a token ends at the same
+ * place as an old token (shifted by the length difference of the edit);
+ * the remaining tokens are kept and shifted. A token may depend on the
+ * text after it: an unclosed text block is lexed up to the end of the input
+ * and then ends at its first line. No checkpoint is recorded within the
+ * text such a token has read, and lexing does not stop until it is passed.
+ *
+ * <p>Diagnostics of the lexer are discarded; they are reported when the
+ * source is parsed.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class TokenCache {
+
+    private static final TokenKind[] KINDS = TokenKind.values();
+    private static final CommentStyle[] STYLES = CommentStyle.values();
+
+    private final ScannerFactory fac;
+    private Run run;
+    private int updateStart;
+    private int updateEnd;
+
+    TokenCache(ScannerFactory fac, CharSequence content) {
+        this.fac = fac;
+        char[] buf = content.toString().toCharArray();
+        run = new Run(256);
+        run.addCheckpoint(0, 0);
+        lex(buf, 0, run, -1, 0, 0);
+        updateStart = 0;
+        updateEnd = run.count;
+    }
+
+    /** The number of tokens, including the final EOF token. */
+    public int size() {
+        return run.count;
+    }
+
+    public TokenKind kind(int index) {
+        return KINDS[run.tokens[index * 3] & 0xFF];
+    }
+
+    public int startPos(int index) {
+        return run.tokens[index * 3 + 1];
+    }
+
+    public int endPos(int index) {
+        return run.tokens[index * 3 + 2];
+    }
+
+    /** The name of an identifier token, or null. */
+    public Name name(int index) {
+        Object v = run.values[index];
+        return v instanceof Name ? (Name) v : null;
+    }
+
+    /** The value of a literal token, or null. */
+    public String stringVal(int index) {
+        Object v = run.values[index];
+        return v instanceof String ? (String) v : null;
+    }
+
+    /** The radix of a numeric literal token, or 0. */
+    public int radix(int index) {
+        return run.tokens[index * 3] >>> 8;
+    }
+
+    /** A token equivalent to the given one produced by the lexer, without comments. */
+    public Token token(int index) {
+        TokenKind kind = kind(index);
+        int pos = startPos(index);
+        int endPos = endPos(index);
+        switch (kind.tag) {
+            case NAMED:
+                return new NamedToken(kind, pos, endPos, name(index), null);
+            case STRING:
+                return new StringToken(kind, pos, endPos, stringVal(index), null);
+            case NUMERIC:
+                return new NumericToken(kind, pos, endPos, stringVal(index), radix(index), null);
+            default:
+                return new Token(kind, pos, endPos, null);
+        }
+    }
+
+    /**
+     * The index of the token that contains the given position, or of the
+     * first token after it.
+     */
+    public int indexOf(int pos) {
+        // the first token that ends after pos
+        int lo = 0;
+        int hi = run.count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (endPos(mid) <= pos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public int commentCount() {
+        return run.commentCount;
+    }
+
+    public int commentStartPos(int index) {
+        return run.comments[index * 3];
+    }
+
+    public int commentEndPos(int index) {
+        return run.comments[index * 3 + 1];
+    }
+
+    public CommentStyle commentStyle(int index) {
+        return STYLES[run.comments[index * 3 + 2]];
+    }
+
+    /**
+     * The position of the last line start at or before the given position
+     * at which lexing can resume.
+     */
+    public int checkpoint(int pos) {
+        return run.checkpoints[findCheckpoint(pos) * 2];
+    }
+
+    /** The index of the first token lexed again by the last update. */
+    public int lastUpdateStart() {
+        return updateStart;
+    }
+
+    /** The index after the last token lexed again by the last update. */
+    public int lastUpdateEnd() {
+        return updateEnd;
+    }
+
+    /**
+     * Update the tokens after an edit of the source.
+     *
+     * @param content the source after the edit
+     * @param offset the offset of the edit
+     * @param removedLength the number of characters removed at offset
+     * @param insertedLength the number of characters inserted at offset
+     */
+    public void update(CharSequence content, int offset, int removedLength, int insertedLength) {
+        if (offset < 0 || removedLength < 0 || insertedLength < 0
+                || offset + insertedLength > content.length()) {
+            throw new IllegalArgumentException();
+        }
+        char[] buf = content.toString().toCharArray();
+        int delta = insertedLength - removedLength;
+        Run old = run;
+        int cp = findCheckpoint(offset);
+        int from = old.checkpoints[cp * 2];
+        int first = old.checkpoints[cp * 2 + 1];
+
+        Run relexed = new Run(16);
+        int last = lex(buf, from, relexed, offset + insertedLength, delta, first);
+        // last is the index of the old token the last new token replaces,
+        // or -1 if lexing went on to the end
+        int oldEnd = last == -1 ? old.count : last + 1;
+        int oldEndPos = last == -1 ? Integer.MAX_VALUE : old.tokens[last * 3 + 2];
+
+        Run result = new Run(old.count - (oldEnd - first) + relexed.count);
+        result.append(old, 0, first, 0);
+        result.append(relexed, 0, relexed.count, 0);
+        result.append(old, oldEnd, old.count, delta);
+
+        // comments and checkpoints before the resumed line start are kept, the
+        // ones up to the end of the last replaced token are replaced
+        int c1 = 0;
+        while (c1 < old.commentCount && old.comments[c1 * 3] < from) {
+            c1++;
+        }
+        int c2 = c1;
+        while (c2 < old.commentCount && old.comments[c2 * 3] < oldEndPos) {
+            c2++;
+        }
+        result.appendComments(old, 0, c1, 0);
+        result.appendComments(relexed, 0, relexed.commentCount, 0);
+        result.appendComments(old, c2, old.commentCount, delta);
+
+        int k = cp + 1;
+        while (k < old.checkpointCount && old.checkpoints[k * 2] <= oldEndPos) {
+            k++;
+        }
+        result.appendCheckpoints(old, 0, cp + 1, 0, 0);
+        result.appendCheckpoints(relexed, 0, relexed.checkpointCount, 0, first);
+        result.appendCheckpoints(old, k, old.checkpointCount, delta, relexed.count - (oldEnd - first));
+
+        int r1 = 0;
+        while (r1 < old.reachCount && old.reaches[r1 * 2] < first) {
+            r1++;
+        }
+        int r2 = r1;
+        while (r2 < old.reachCount && old.reaches[r2 * 2] < oldEnd) {
+            r2++;
+        }
+        result.appendReaches(old, 0, r1, 0, 0);
+        result.appendReaches(relexed, 0, relexed.reachCount, 0, first);
+        result.appendReaches(old, r2, old.reachCount, delta, relexed.count - (oldEnd - first));
+
+        run = result;
+        updateStart = first;
+        updateEnd = first + relexed.count;
+    }
+
+    // The index of the last checkpoint at or before pos.
+    private int findCheckpoint(int pos) {
+        int lo = 0;
+        int hi = run.checkpointCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (run.checkpoints[mid * 2] <= pos) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Lexes buf from the given position into the given run. If syncPos is not
+    // negative, stops at the first token that ends at or after syncPos, at
+    // the same place as an old token shifted by delta, past the text read
+    // for the new tokens and for the old ones from index first, and returns
+    // the index of that old token; returns -1 if the end of the input was
+    // reached.
+    private int lex(char[] buf, int from, Run into, int syncPos, int delta, int first) {
+        // diagnostics need a source, even though they are discarded
+        JavaFileObject prevSource = fac.log.useSource(fac.log.currentSourceFile());
+        Log.DiagnosticHandler discard = new Log.DiscardDiagnosticHandler(fac.log);
+        try {
+            Recorder tokenizer = new Recorder(fac, buf, from, buf.length, into);
+            int gapStart = from;
+            while (true) {
+                int comments = into.commentCount;
+                tokenizer.lookahead = -1;
+                Token t = tokenizer.readToken();
+                addCheckpoints(buf, gapStart, t.pos, into, comments, tokenizer.reach);
+                into.addToken(t);
+                if (tokenizer.lookahead > t.endPos) {
+                    into.addReach(into.count - 1, tokenizer.lookahead);
+                    tokenizer.reach = Math.max(tokenizer.reach, tokenizer.lookahead);
+                }
+                gapStart = t.endPos;
+                if (t.kind == TokenKind.EOF) {
+                    return -1;
+                }
+                if (syncPos >= 0 && t.endPos >= syncPos && t.endPos > tokenizer.reach) {
+                    int old = findEnd(t.endPos - delta);
+                    if (old != -1 && reach(first, old) < t.endPos - delta) {
+                        return old;
+                    }
+                }
+            }
+        } finally {
+            fac.log.popDiagnosticHandler(discard);
+            fac.log.useSource(prevSource);
+        }
+    }
+
+    // The index of the token of this cache that ends at pos, or -1. The EOF
+    // token is never returned, an error token may end at the same position.
+    private int findEnd(int pos) {
+        int i = indexOf(pos - 1);
+        return i < run.count - 1 && endPos(i) == pos ? i : -1;
+    }
+
+    // The furthest position read for the tokens of this cache from index
+    // first to index last, or -1 if no token was read beyond its end.
+    private int reach(int first, int last) {
+        int reach = -1;
+        for (int i = 0; i < run.reachCount && run.reaches[i * 2] <= last; i++) {
+            if (run.reaches[i * 2] >= first) {
+                reach = Math.max(reach, run.reaches[i * 2 + 1]);
+            }
+        }
+        return reach;
+    }
+
+    // Records the line starts after the line terminators in the gap from
+    // start to end that are after reach and not inside one of the comments
+    // lexed since the given comment index.
+    private static void addCheckpoints(char[] buf, int start, int end, Run into, int comments, int reach) {
+        for (int i = Math.max(start, reach); i < end; i++) {
+            char c = buf[i];
+            if (c == '\n' || (c == '\r' && (i + 1 >= buf.length || buf[i + 1] != '\n'))) {
+                int line = i + 1;
+                boolean inComment = false;
+                for (int k = comments; k < into.commentCount; k++) {
+                    if (into.comments[k * 3] < line && line < into.comments[k * 3 + 1]) {
+                        inComment = true;
+                        break;
+                    }
+                }
+                if (!inComment) {
+                    into.addCheckpoint(line, into.count);
+                }
+            }
+        }
+    }
+
+    // Records the comments read by the tokenizer, and how far it has read
+    // when reporting an error.
+    private static class Recorder extends JavaTokenizer {
+        private final Run into;
+        int lookahead = -1;     // for the current token
+        int reach = -1;         // for all tokens
+
+        Recorder(ScannerFactory fac, char[] buf, int start, int length, Run into) {
+            super(fac, buf, start, length);
+            this.into = into;
+        }
+
+        @Override
+        protected Comment processComment(int pos, int endPos, CommentStyle style) {
+            into.addComment(pos, endPos, style);
+            return super.processComment(pos, endPos, style);
+        }
+
+        @Override
+        protected void lexError(int pos, JCDiagnostic.Error key) {
+            lookahead = Math.max(lookahead, position());
+            super.lexError(pos, key);
+        }
+
+        @Override
+        protected void lexError(DiagnosticFlag flags, int pos, JCDiagnostic.Error key) {
+            lookahead = Math.max(lookahead, position());
+            super.lexError(flags, pos, key);
+        }
+    }
+
+    // A sequence of tokens, comments and checkpoints.
+    private static class Run {
+        int[] tokens;       // kind | radix << 8, start, end
+        Object[] values;    // Name or String
+        int count;
+        int[] comments = new int[48];     // start, end, style
+        int commentCount;
+        int[] checkpoints = new int[64];  // position, token index
+        int checkpointCount;
+        int[] reaches = new int[0];       // token index, position read
+        int reachCount;
+
+        Run(int capacity) {
+            capacity = Math.max(capacity, 4);
+            tokens = new int[capacity * 3];
+            values = new Object[capacity];
+        }
+
+        void addToken(Token t) {
+            ensureTokens(count + 1);
+            Object value = null;
+            int radix = 0;
+            switch (t.kind.tag) {
+                case NAMED:
+                    value = t.name();
+                    break;
+                case NUMERIC:
+                    radix = t.radix();
+                    // fall through
+                case STRING:
+                    value = t.stringVal();
+                    break;
+            }
+            tokens[count * 3] = t.kind.ordinal() | radix << 8;
+            tokens[count * 3 + 1] = t.pos;
+            tokens[count * 3 + 2] = t.endPos;
+            values[count] = value;
+            count++;
+        }
+
+        void addComment(int pos, int endPos, CommentStyle style) {
+            if (comments.length < (commentCount + 1) * 3) {
+                comments = Arrays.copyOf(comments, comments.length * 2);
+            }
+            comments[commentCount * 3] = pos;
+            comments[commentCount * 3 + 1] = endPos;
+            comments[commentCount * 3 + 2] = style.ordinal();
+            commentCount++;
+        }
+
+        void addCheckpoint(int pos, int token) {
+            if (checkpoints.length < (checkpointCount + 1) * 2) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+            }
+            checkpoints[checkpointCount * 2] = pos;
+            checkpoints[checkpointCount * 2 + 1] = token;
+            checkpointCount++;
+        }
+
+        void addReach(int token, int pos) {
+            if (reaches.length < (reachCount + 1) * 2) {
+                reaches = Arrays.copyOf(reaches, Math.max(reaches.length * 2, 8));
+            }
+            reaches[reachCount * 2] = token;
+            reaches[reachCount * 2 + 1] = pos;
+            reachCount++;
+        }
+
+        void append(Run r, int from, int to, int delta) {
+            int n = to - from;
+            ensureTokens(count + n);
+            System.arraycopy(r.tokens, from * 3, tokens, count * 3, n * 3);
+            System.arraycopy(r.values, from, values, count, n);
+            if (delta != 0) {
+                for (int i = count * 3, end = (count + n) * 3; i < end; i += 3) {
+                    tokens[i + 1] += delta;
+                    tokens[i + 2] += delta;
+                }
+            }
+            count += n;
+        }
+
+        void appendComments(Run r, int from, int to, int delta) {
+            int n = to - from;
+            if (comments.length < (commentCount + n) * 3) {
+                comments = Arrays.copyOf(comments, Math.max(comments.length * 2, (commentCount + n) * 3));
+            }
+            System.arraycopy(r.comments, from * 3, comments, commentCount * 3, n * 3);
+            if (delta != 0) {
+                for (int i = commentCount * 3, end = (commentCount + n) * 3; i < end; i += 3) {
+                    comments[i] += delta;
+                    comments[i + 1] += delta;
+                }
+            }
+            commentCount += n;
+        }
+
+        void appendCheckpoints(Run r, int from, int to, int delta, int tokenDelta) {
+            int n = to - from;
+            if (checkpoints.length < (checkpointCount + n) * 2) {
+                checkpoints = Arrays.copyOf(checkpoints, Math.max(checkpoints.length * 2, (checkpointCount + n) * 2));
+            }
+            System.arraycopy(r.checkpoints, from * 2, checkpoints, checkpointCount * 2, n * 2);
+            if (delta != 0 || tokenDelta != 0) {
+                for (int i = checkpointCount * 2, end = (checkpointCount + n) * 2; i < end; i += 2) {
+                    checkpoints[i] += delta;
+                    checkpoints[i + 1] += tokenDelta;
+                }
+            }
+            checkpointCount += n;
+        }
+
+        void appendReaches(Run r, int from, int to, int delta, int tokenDelta) {
+            for (int i = from; i < to; i++) {
+                addReach(r.reaches[i * 2] + tokenDelta, r.reaches[i * 2 + 1] + delta);
+            }
+        }
+
+        private void ensureTokens(int n) {
+            if (values.length < n) {
+                int capacity = Math.max(values.length * 2, n);
+                tokens = Arrays.copyOf(tokens, capacity * 3);
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+    }
+}
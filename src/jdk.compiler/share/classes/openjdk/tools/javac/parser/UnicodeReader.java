@@ -34,6 +34,8 @@ import openjdk.tools.javac.util.JCDiagnostic.SimpleDiagnosticPosition;
 
 
 import openjdk.tools.javac.util.Log;
+import openjdk.tools.javac.util.Name;
+import openjdk.tools.javac.util.Names;
 
 import static openjdk.tools.javac.util.LayoutCharacters.EOI;
 import static openjdk.tools.javac.util.LayoutCharacters.tabulate;
@@ -94,6 +96,13 @@ public class UnicodeReader {
 
     int seek;
 
+    /**
+     * The characters from plainStart to plainEnd are neither backslashes nor
+     * high surrogates, so each of them is read as is.
+     */
+    private int plainStart;
+    private int plainEnd;
+
     /**
      * Log for error reporting.
      */
@@ -107,9 +116,22 @@ public class UnicodeReader {
      * @param length  length of meaningful content in buffer.
      */
     protected UnicodeReader(ScannerFactory sf, char[] array, int length) {
+        this(sf, array, 0, length);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sf      scan factory.
+     * @param array   array containing contents of source.
+     * @param start   position of the first character to read.
+     * @param length  length of meaningful content in buffer.
+     */
+    protected UnicodeReader(ScannerFactory sf, char[] array, int start, int length) {
+        // AndroidIDE changed: Allow reading from the middle of the source, for IncrementalParser.
         this.buffer = array;
         this.length = length;
-        this.position = 0;
+        this.position = start;
         this.width = 0;
         this.character = '\0';
         this.codepoint = 0;
@@ -195,8 +217,21 @@ public class UnicodeReader {
      * then converts to a codepoint.
      */
     private void nextCodePoint() {
+        // AndroidIDE changed: Read plain characters without looking for unicode escapes.
+        int index = position + width;
+        if (index < plainEnd && plainStart <= index && !wasBackslash) {
+            position = index;
+            width = 1;
+            character = buffer[index];
+            codepoint = character;
+            return;
+        }
+
         // Next unicode character.
         nextUnicodeInputCharacter();
+        if (position + width > plainEnd) {
+            findPlainCharacters(position + width);
+        }
 
         // Return early if ASCII or not a surrogate pair.
         if (isASCII() || !Character.isHighSurrogate(character)) {
@@ -228,6 +263,58 @@ public class UnicodeReader {
         }
     }
 
+    /**
+     * Finds the plain characters from the given index up to the next
+     * backslash or high surrogate.
+     */
+    private void findPlainCharacters(int index) {
+        int end = index;
+        while (end < length && buffer[end] != '\\' && !Character.isHighSurrogate(buffer[end])) {
+            end++;
+        }
+        plainStart = index;
+        plainEnd = end;
+    }
+
+    /**
+     * Skips the ASCII letters, digits, '$' and '_' from the current position,
+     * if the current character is one of them and was not read from an
+     * unicode escape. These characters can be taken from the buffer as is.
+     *
+     * @return the position after the skipped characters, or -1 if none were
+     *         skipped. The current position may be after a broken unicode
+     *         escape that follows them.
+     */
+    protected int skipPlainIdentifierChars() {
+        int index = position;
+        if (index < plainStart || wasBackslash) {
+            return -1;
+        }
+        while (index < plainEnd && isPlainIdentifierChar(buffer[index])) {
+            index++;
+        }
+        if (index == position) {
+            return -1;
+        }
+        position = index;
+        width = 0;
+        nextCodePoint();
+        return index;
+    }
+
+    private static boolean isPlainIdentifierChar(char ch) {
+        return ('a' <= ch && ch <= 'z') || ('A' <= ch && ch <= 'Z')
+                || ('0' <= ch && ch <= '9') || ch == '_' || ch == '$';
+    }
+
+    /**
+     * Returns the name of the characters from start to end, taken from the
+     * buffer as is.
+     */
+    protected Name plainName(Names names, int start, int end) {
+        return names.fromChars(buffer, start, end - start);
+    }
+
     /**
      * Converts an unicode escape into a character.
      *
@@ -576,6 +663,17 @@ public class UnicodeReader {
         return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
     }
 
+    /**
+     * Returns the input buffer itself, without copying it. The buffer may
+     * contain extraneous characters beyond the length of the content.
+     *
+     * @return the input buffer.
+     */
+    protected char[] getBuffer() {
+        // AndroidIDE changed: Added for comments that read the buffer on demand.
+        return buffer;
+    }
+
     /**
      * Returns a copy of a character array subset of the input buffer.
      * The returned array begins at the {@code beginIndex} and
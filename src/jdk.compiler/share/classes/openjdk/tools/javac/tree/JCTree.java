@@ -424,6 +424,12 @@ public abstract class JCTree implements Tree, Cloneable, DiagnosticPosition {
      */
     public int pos;
 
+    /* The end position of this node stored by the parser's end position
+     * table, or Position.NOPOS. @see EndPosTable
+     */
+    // AndroidIDE changed: Kept in the tree instead of a hash table.
+    public int storedEndPos = Position.NOPOS;
+
     /* The type of this node.
      */
     public Type type;
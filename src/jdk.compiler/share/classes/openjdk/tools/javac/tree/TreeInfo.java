@@ -582,6 +582,10 @@ public class TreeInfo {
             return endPos(tree);
         }
 
+        // AndroidIDE changed: Read the end position stored in the tree first.
+        if (tree.storedEndPos != Position.NOPOS)
+            return tree.storedEndPos;
+
         int mapPos = endPosTable.getEndPos(tree);
         if (mapPos != Position.NOPOS)
             return mapPos;
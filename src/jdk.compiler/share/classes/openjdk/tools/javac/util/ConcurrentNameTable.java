@@ -0,0 +1,266 @@
+package openjdk.tools.javac.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import openjdk.tools.javac.util.DefinedBy.Api;
+
+/**
+ * Implementation of Name.Table that can be used by several threads at once,
+ * e.g. by the parsers of {@code -XDparallelParse}.
+ *
+ * <p>The hash table is split into stripes, chosen by the hash of a name.
+ * A lookup does not lock: the buckets are immutable chains of entries, and
+ * names only have final fields. A name that is not found is added under the
+ * lock of its stripe, which looks in the bucket again first, so that there
+ * is exactly one name for the same bytes. The bytes of the names of a stripe
+ * are appended to chunks that are never moved, and the bytes of a name are
+ * never written again, so a name keeps its array and offset.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class ConcurrentNameTable extends Name.Table {
+
+    /** The number of stripes is 1 << STRIPE_BITS.
+     */
+    private static final int STRIPE_BITS = 5;
+
+    /** The size of a chunk of name bytes.
+     */
+    private static final int CHUNK_SIZE = 0x2000;
+
+    /** Names longer than this get an array of their own.
+     */
+    private static final int MAX_CHUNKED_LENGTH = CHUNK_SIZE / 16;
+
+    private Stripe[] stripes;
+
+    /** Index counter for names in this table.
+     */
+    private final AtomicInteger index = new AtomicInteger();
+
+    /** Allocator
+     *  @param names The main name table
+     *  @param hashSize the initial size of the hash table, a power of two;
+     *                  the buckets of a stripe are doubled as needed
+     */
+    public ConcurrentNameTable(Names names, Context context, int hashSize) {
+        super(names, context);
+        stripes = new Stripe[1 << STRIPE_BITS];
+        int buckets = Math.max(hashSize >> STRIPE_BITS, 16);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(buckets);
+        }
+    }
+
+    public ConcurrentNameTable(Names names, Context context) {
+        this(names, context, 0x8000);
+    }
+
+    @Override
+    public Name fromChars(char[] cs, int start, int len) {
+        // An ASCII name has the same bytes as chars, so it is looked up
+        // without being encoded first.
+        int h = 0;
+        for (int i = start, end = start + len; i < end; i++) {
+            char c = cs[i];
+            if (c == 0 || c >= 0x80) {
+                byte[] bytes = new byte[len * 3];
+                int nbytes = Convert.chars2utf(cs, start, bytes, 0, len);
+                return fromUtf(bytes, 0, nbytes);
+            }
+            h = (h << 5) - h + c;
+        }
+        h = spread(h);
+        Stripe stripe = stripes[h & ((1 << STRIPE_BITS) - 1)];
+        NameImpl n = stripe.lookup(h, cs, start, len);
+        if (n == null) {
+            synchronized (stripe) {
+                n = stripe.lookup(h, cs, start, len);
+                if (n == null) {
+                    int offset = stripe.reserve(len);
+                    byte[] bytes = stripe.target;
+                    for (int i = 0; i < len; i++) {
+                        bytes[offset + i] = (byte) cs[start + i];
+                    }
+                    n = stripe.add(h, bytes, offset, len);
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public Name fromUtf(byte[] cs, int start, int len) {
+        int h = spread(hashValue(cs, start, len));
+        Stripe stripe = stripes[h & ((1 << STRIPE_BITS) - 1)];
+        NameImpl n = stripe.lookup(h, cs, start, len);
+        if (n == null) {
+            synchronized (stripe) {
+                n = stripe.lookup(h, cs, start, len);
+                if (n == null) {
+                    int offset = stripe.reserve(len);
+                    byte[] bytes = stripe.target;
+                    System.arraycopy(cs, start, bytes, offset, len);
+                    n = stripe.add(h, bytes, offset, len);
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void dispose() {
+        stripes = null;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** A bucket chain. Entries are never changed; a resize makes new ones.
+     */
+    private static class Entry {
+        final NameImpl name;
+        final Entry next;
+
+        Entry(NameImpl name, Entry next) {
+            this.name = name;
+            this.next = next;
+        }
+    }
+
+    /** The buckets and the name bytes of one stripe. The buckets are read
+     *  without the lock; everything else is used under the lock.
+     */
+    private class Stripe {
+        volatile Entry[] buckets;
+        int count;
+        byte[] chunk = new byte[0];
+        int used;
+        byte[] target;
+
+        Stripe(int buckets) {
+            this.buckets = new Entry[buckets];
+        }
+
+        NameImpl lookup(int h, byte[] cs, int start, int len) {
+            Entry[] b = buckets;
+            for (Entry e = b[(h >>> STRIPE_BITS) & (b.length - 1)]; e != null; e = e.next) {
+                NameImpl n = e.name;
+                if (n.hash == h && n.length == len && Name.Table.equals(n.bytes, n.offset, cs, start, len)) {
+                    return n;
+                }
+            }
+            return null;
+        }
+
+        NameImpl lookup(int h, char[] cs, int start, int len) {
+            Entry[] b = buckets;
+            for (Entry e = b[(h >>> STRIPE_BITS) & (b.length - 1)]; e != null; e = e.next) {
+                NameImpl n = e.name;
+                if (n.hash == h && n.length == len) {
+                    byte[] bytes = n.bytes;
+                    int i = 0;
+                    while (i < len && bytes[n.offset + i] == cs[start + i]) {
+                        i++;
+                    }
+                    if (i == len) {
+                        return n;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /** Reserve len bytes for a new name, in target at the returned offset.
+         */
+        int reserve(int len) {
+            if (len > MAX_CHUNKED_LENGTH) {
+                target = new byte[len];
+                return 0;
+            }
+            if (used + len > chunk.length) {
+                chunk = new byte[CHUNK_SIZE];
+                used = 0;
+            }
+            target = chunk;
+            used += len;
+            return used - len;
+        }
+
+        NameImpl add(int h, byte[] bytes, int offset, int len) {
+            NameImpl n = new NameImpl(ConcurrentNameTable.this, bytes, offset, len, h, index.getAndIncrement());
+            Entry[] b = buckets;
+            if (++count > b.length - (b.length >> 2)) {
+                b = resize(b);
+            }
+            int i = (h >>> STRIPE_BITS) & (b.length - 1);
+            b[i] = new Entry(n, b[i]);
+            return n;
+        }
+
+        private Entry[] resize(Entry[] old) {
+            Entry[] b = new Entry[old.length * 2];
+            for (Entry head : old) {
+                for (Entry e = head; e != null; e = e.next) {
+                    int i = (e.name.hash >>> STRIPE_BITS) & (b.length - 1);
+                    b[i] = new Entry(e.name, b[i]);
+                }
+            }
+            buckets = b;
+            return b;
+        }
+    }
+
+    static class NameImpl extends Name {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final int hash;
+        final int index;
+
+        NameImpl(ConcurrentNameTable table, byte[] bytes, int offset, int length, int hash, int index) {
+            super(table);
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+            this.index = index;
+        }
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public int getByteLength() {
+            return length;
+        }
+
+        @Override
+        public byte getByteAt(int i) {
+            return bytes[offset + i];
+        }
+
+        @Override
+        public byte[] getByteArray() {
+            return bytes;
+        }
+
+        @Override
+        public int getByteOffset() {
+            return offset;
+        }
+
+        /** Return the hash value of this name.
+         */
+        @DefinedBy(Api.LANGUAGE_MODEL)
+        public int hashCode() {
+            return index;
+        }
+    }
+}
@@ -282,6 +282,15 @@ public class JCDiagnostic implements Diagnostic<JavaFileObject> {
                 LintCategory lc, Set<DiagnosticFlag> flags, DiagnosticSource source, DiagnosticPosition pos, DiagnosticInfo diagnosticInfo) {
             return new JCDiagnostic(formatter, normalize(diagnosticInfo), lc, flags, source, pos);
         }
+
+        // AndroidIDE changed: Lets a warning key be kept after its compilation.
+        /**
+         * Detach the arguments of a warning key, as {@link JCDiagnostic#detach} does.
+         */
+        public Warning detach(Warning warnKey) {
+            JCDiagnostic diag = create(null, EnumSet.noneOf(DiagnosticFlag.class), null, null, warnKey);
+            return (Warning) diag.detach(diag.diagnosticInfo);
+        }
         //where
             DiagnosticInfo normalize(DiagnosticInfo diagnosticInfo) {
                 //replace all nested FragmentKey with full-blown JCDiagnostic objects
@@ -616,6 +625,46 @@ public class JCDiagnostic implements Diagnostic<JavaFileObject> {
         this(original.defaultFormatter, original.diagnosticInfo, original.lintCategory, original.flags, original.source, original.position);
     }
 
+    // AndroidIDE changed: Lets a recorded diagnostic be reported again, at
+    // the position its tree has moved to.
+    /**
+     * Create a copy of this diagnostic with the given source and position.
+     */
+    public JCDiagnostic withPosition(DiagnosticSource source, DiagnosticPosition pos) {
+        return new JCDiagnostic(defaultFormatter, diagnosticInfo, lintCategory, copyFlags(), source, pos);
+    }
+
+    // AndroidIDE changed: Lets a diagnostic be kept after its compilation.
+    /**
+     * Create a copy of this diagnostic that does not refer to its compilation:
+     * it has no source and no position, and its arguments other than strings,
+     * names, numbers, enums and diagnostics are replaced by their text, as
+     * formatted by {@link #getMessage} in the default locale.
+     */
+    public JCDiagnostic detach() {
+        return new JCDiagnostic(defaultFormatter, detach(diagnosticInfo), lintCategory, copyFlags(), null, null);
+    }
+    //where
+        DiagnosticInfo detach(DiagnosticInfo info) {
+            Object[] args = info.args.clone();
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if (arg instanceof JCDiagnostic) {
+                    args[i] = ((JCDiagnostic) arg).detach();
+                } else if (arg != null && !(arg instanceof String) && !(arg instanceof Name)
+                        && !(arg instanceof Number) && !(arg instanceof Enum)) {
+                    args[i] = defaultFormatter instanceof AbstractDiagnosticFormatter
+                            ? ((AbstractDiagnosticFormatter) defaultFormatter).formatArgument(this, arg, null)
+                            : String.valueOf(arg);
+                }
+            }
+            return DiagnosticInfo.of(info.type, info.prefix, info.code, args);
+        }
+
+        private Set<DiagnosticFlag> copyFlags() {
+            return flags.isEmpty() ? EnumSet.noneOf(DiagnosticFlag.class) : EnumSet.copyOf(flags);
+        }
+
     /**
      * Get the type of this diagnostic.
      * @return the type of this diagnostic
@@ -838,6 +887,22 @@ public class JCDiagnostic implements Diagnostic<JavaFileObject> {
             this.subdiagnostics = subdiagnostics;
         }
 
+        @Override
+        public JCDiagnostic withPosition(DiagnosticSource source, DiagnosticPosition pos) {
+            // AndroidIDE changed: Keep the subdiagnostics.
+            return new MultilineDiagnostic(super.withPosition(source, pos), subdiagnostics);
+        }
+
+        @Override
+        public JCDiagnostic detach() {
+            // AndroidIDE changed: Detach the subdiagnostics too.
+            ListBuffer<JCDiagnostic> detached = new ListBuffer<>();
+            for (JCDiagnostic d : subdiagnostics) {
+                detached.add(d.detach());
+            }
+            return new MultilineDiagnostic(super.detach(), detached.toList());
+        }
+
         @Override
         public List<JCDiagnostic> getSubdiagnostics() {
             return subdiagnostics;
@@ -390,6 +390,55 @@ public class Log extends AbstractLog {
             return 100;
         }
 
+    /**
+     * Creates a log that shares the writers and messages of the given log,
+     * but is not registered in a context.
+     */
+    private Log(Log log) {
+        // AndroidIDE changed: Added for DeferredLog.
+        super(log.diags);
+        this.writers = log.writers;
+        this.messages = log.messages;
+        this.diagFormatter = log.diagFormatter;
+        this.MaxErrors = log.MaxErrors;
+        this.MaxWarnings = log.MaxWarnings;
+        this.emitWarnings = log.emitWarnings;
+        this.suppressNotes = log.suppressNotes;
+    }
+
+    /**
+     * A log for a parser that runs on another thread. It reports to one
+     * source of the log it was created from, and keeps the diagnostics until
+     * {@link #flush} reports them to that log on the compiler thread.
+     * The diagnostic source is looked up when the log is created, so the
+     * source map of the compiler log is not used by the other thread.
+     */
+    public static class DeferredLog extends Log {
+        private final Log log;
+        private final ListBuffer<JCDiagnostic> deferred = new ListBuffer<>();
+
+        public DeferredLog(Log log, JavaFileObject file) {
+            super(log);
+            this.log = log;
+            source = log.getSource(file);
+            sourceMap.put(file, source);
+            new DiagnosticHandler() {
+                @Override
+                public void report(JCDiagnostic diag) {
+                    deferred.add(diag);
+                }
+            }.install(this);
+        }
+
+        /** Report the kept diagnostics to the compiler log. */
+        public void flush() {
+            for (JCDiagnostic d : deferred) {
+                log.report(d);
+            }
+            deferred.clear();
+        }
+    }
+
     /** The number of errors encountered so far.
      */
     public int nerrors = 0;
@@ -426,6 +475,17 @@ public class Log extends AbstractLog {
         getSource(name).setEndPosTable(endPosTable);
     }
 
+    /** Forget the source of the given file, including its content and end
+     *  positions, after the file was changed.
+     */
+    public void clearSource(JavaFileObject file) {
+        // AndroidIDE changed: Added for incremental parsing.
+        sourceMap.remove(file);
+        if (source != null && source.getFile() == file) {
+            source = getSource(file);
+        }
+    }
+
     public void startPartialReparse () {
         assert partialReparseRecorded.isEmpty();
         this.nerrors = 0;
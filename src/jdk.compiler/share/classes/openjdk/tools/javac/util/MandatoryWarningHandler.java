@@ -127,6 +127,9 @@ public class MandatoryWarningHandler {
      * Report a mandatory warning.
      */
     public void report(DiagnosticPosition pos, Warning warnKey) {
+        // AndroidIDE changed: Let the listener record the warning.
+        if (listener != null)
+            listener.report(this, pos, warnKey);
         JavaFileObject currentSource = log.currentSourceFile();
 
         if (verbose) {
@@ -275,6 +278,22 @@ public class MandatoryWarningHandler {
             log.note(file, new Note("compiler", msg, args));
     }
 
+    // AndroidIDE changed: Lets the reported warnings be recorded, so that
+    // they can be reported again later.
+    public interface Listener {
+        /**
+         * Called before a mandatory warning is handled, whether it is
+         * logged or only counted for the deferred diagnostic.
+         */
+        void report(MandatoryWarningHandler handler, DiagnosticPosition pos, Warning warnKey);
+    }
+
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
     public void clear() {
         sourcesWithReportedWarnings = null;
         deferredDiagnosticKind = null;
@@ -397,6 +397,10 @@ public class Names {
 
     protected Name.Table createTable(Context context) {
         Options options = Options.instance(context);
+        // AndroidIDE changed: The parser threads of -XDparallelParse create
+        // names concurrently.
+        if (options.isSet("useConcurrentTable") || options.isSet("parallelParse"))
+            return new ConcurrentNameTable(this, context);
         boolean useUnsharedTable = options.isSet("useUnsharedTable");
         if (useUnsharedTable)
             return UnsharedNameTable.create(this, context);